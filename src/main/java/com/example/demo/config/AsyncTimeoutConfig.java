@@ -0,0 +1,60 @@
+package com.example.demo.config;
+
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.async.AsyncWebRequest;
+import org.springframework.web.context.request.async.CallableProcessingInterceptor;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+/**
+ * Timeout riêng cho các response stream chạy lâu (xuất/import dữ liệu): controller đặt thuộc tính
+ * {@link #TIMEOUT_ATTRIBUTE} (ms) lên request, các request bất đồng bộ khác giữ timeout mặc định.
+ * {@link #onCompletion(HttpServletRequest, Runnable)} đăng ký việc dọn dẹp (trả chỗ giới hạn đồng thời) chạy
+ * khi xử lý bất đồng bộ kết thúc vì bất kỳ lý do gì, kể cả khi phần thân response không bao giờ được chạy.
+ */
+@Configuration
+public class AsyncTimeoutConfig implements WebMvcConfigurer {
+
+    public static final String TIMEOUT_ATTRIBUTE = AsyncTimeoutConfig.class.getName() + ".timeout";
+    private static final String COMPLETION_ATTRIBUTE = AsyncTimeoutConfig.class.getName() + ".completion";
+
+    @SuppressWarnings("unchecked")
+    public static void onCompletion(HttpServletRequest request, Runnable callback) {
+        List<Runnable> callbacks = (List<Runnable>) request.getAttribute(COMPLETION_ATTRIBUTE);
+        if (callbacks == null) {
+            callbacks = new ArrayList<>();
+            request.setAttribute(COMPLETION_ATTRIBUTE, callbacks);
+        }
+        callbacks.add(callback);
+    }
+
+    @Override
+    public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+        configurer.registerCallableInterceptors(new CallableProcessingInterceptor() {
+            @Override
+            public <T> void beforeConcurrentHandling(NativeWebRequest request, Callable<T> task) {
+                // Chạy ngay trước startAsync nên timeout mới được áp dụng cho AsyncContext
+                Object timeout = request.getAttribute(TIMEOUT_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+                if (timeout instanceof Long millis && request instanceof AsyncWebRequest asyncRequest) {
+                    asyncRequest.setTimeout(millis);
+                }
+            }
+
+            @Override
+            public <T> void afterCompletion(NativeWebRequest request, Callable<T> task) {
+                // Hoàn tất, lỗi, timeout hoặc client ngắt kết nối (kể cả khi task chưa từng chạy)
+                Object callbacks = request.getAttribute(COMPLETION_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+                if (callbacks instanceof List<?> list) {
+                    list.forEach(callback -> ((Runnable) callback).run());
+                }
+            }
+        });
+    }
+}
@@ -0,0 +1,84 @@
+package com.example.demo.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Các thread pool riêng cho công việc nặng, tách khỏi thread request của Tomcat.
+ */
+@Configuration
+public class ExecutorConfig {
+
+    /**
+     * Pool băm mật khẩu (BCrypt): số thread bằng số core, hàng đợi giới hạn và
+     * từ chối ngay khi đầy để AuthService trả 503 thay vì chiếm hết thread request.
+     */
+    @Bean(destroyMethod = "shutdown")
+    public ThreadPoolExecutor passwordHashingExecutor(
+            MeterRegistry meterRegistry,
+            @Value("${app.security.password-hashing.queue-capacity:64}") int queueCapacity) {
+        int threads = Runtime.getRuntime().availableProcessors();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(
+                threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                new CustomizableThreadFactory("pwd-hash-"),
+                new ThreadPoolExecutor.AbortPolicy());
+        ExecutorServiceMetrics.monitor(meterRegistry, executor, "password.hashing");
+        return executor;
+    }
+
+    /**
+     * Pool cho các truy vấn con của dashboard admin, chạy song song và có giới hạn.
+     */
+    @Bean(destroyMethod = "shutdown")
+    public ThreadPoolExecutor dashboardQueryExecutor(
+            MeterRegistry meterRegistry,
+            @Value("${app.dashboard.stats.query-threads:4}") int threads) {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(
+                threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(threads * 8),
+                new CustomizableThreadFactory("dashboard-query-"),
+                new ThreadPoolExecutor.AbortPolicy());
+        ExecutorServiceMetrics.monitor(meterRegistry, executor, "dashboard.query");
+        return executor;
+    }
+
+    /**
+     * Thread làm mới thống kê dashboard ở nền; mỗi lúc chỉ có một lượt làm mới nên hàng đợi chỉ cần một chỗ.
+     */
+    @Bean(destroyMethod = "shutdown")
+    public ThreadPoolExecutor dashboardRefreshExecutor(MeterRegistry meterRegistry) {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(
+                1, 1, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(1),
+                new CustomizableThreadFactory("dashboard-refresh-"),
+                new ThreadPoolExecutor.AbortPolicy());
+        ExecutorServiceMetrics.monitor(meterRegistry, executor, "dashboard.refresh");
+        return executor;
+    }
+
+    /**
+     * Pool tạo ảnh thumbnail sau khi upload; hàng đợi đầy thì bỏ qua, thumbnail sẽ được tạo lại khi có request.
+     */
+    @Bean(destroyMethod = "shutdown")
+    public ThreadPoolExecutor imageProcessingExecutor(
+            MeterRegistry meterRegistry,
+            @Value("${app.storage.thumbnail-threads:2}") int threads,
+            @Value("${app.storage.thumbnail-queue-capacity:100}") int queueCapacity) {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(
+                threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                new CustomizableThreadFactory("image-thumb-"),
+                new ThreadPoolExecutor.AbortPolicy());
+        ExecutorServiceMetrics.monitor(meterRegistry, executor, "image.thumbnail");
+        return executor;
+    }
+}
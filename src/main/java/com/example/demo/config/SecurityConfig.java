@@ -2,6 +2,7 @@ package com.example.demo.config;
 
 import com.example.demo.security.JwtAuthenticationFilter;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.http.HttpMethod;
@@ -33,7 +34,8 @@ public class SecurityConfig {
             "/api/courses/**",  
             "/api/progress/**",
             "/api/courses/enroll/**" ,
-            "/api/admin/products/**"
+            "/api/admin/products/**",
+            "/api/images/**"
              // Sửa lại pattern cho endpoint enroll nếu cần
     };
 
@@ -58,6 +60,8 @@ public class SecurityConfig {
           .authorizeHttpRequests(authorize -> authorize
                 // Cho phép các request OPTIONS (pre-flight) từ client
                 .requestMatchers(HttpMethod.OPTIONS, "/**").permitAll()
+                // Import hàng loạt nằm dưới /api/admin/products/** (công khai cho GET) nên phải chặn trước
+                .requestMatchers(HttpMethod.POST, "/api/admin/products/import").hasAuthority("ROLE_ADMIN")
                 .requestMatchers(PUBLIC_ENDPOINTS).permitAll()
                 .requestMatchers(ADMIN_ENDPOINTS).hasAuthority("ROLE_ADMIN")
                 .requestMatchers(AUTHENTICATED_ENDPOINTS).authenticated()
@@ -72,8 +76,8 @@ public class SecurityConfig {
         CorsConfiguration configuration = new CorsConfiguration();
         configuration.setAllowedOrigins(List.of("http://localhost:3000"));
         configuration.setAllowedMethods(List.of("GET", "POST", "PUT", "DELETE", "PATCH", "OPTIONS"));
-        configuration.setAllowedHeaders(List.of("Authorization", "Content-Type", "X-Requested-With"));
-        configuration.setExposedHeaders(List.of("Authorization"));
+        configuration.setAllowedHeaders(List.of("Authorization", "Content-Type", "X-Requested-With", "Idempotency-Key"));
+        configuration.setExposedHeaders(List.of("Authorization", "Idempotent-Replayed"));
         configuration.setAllowCredentials(true);
         configuration.setMaxAge(3600L);
         UrlBasedCorsConfigurationSource source = new UrlBasedCorsConfigurationSource();
@@ -81,8 +85,9 @@ public class SecurityConfig {
         return source;
     }
     
+    // Hash cũ có cost thấp hơn sẽ được băm lại khi user đăng nhập thành công
     @Bean
-    public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+    public PasswordEncoder passwordEncoder(@Value("${app.security.bcrypt-strength:10}") int strength) {
+        return new BCryptPasswordEncoder(strength);
     }
 }
\ No newline at end of file
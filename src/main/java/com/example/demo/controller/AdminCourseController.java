@@ -5,8 +5,11 @@ import com.example.demo.dto.CourseCreateResponse;
 import com.example.demo.dto.CourseDto;
 import com.example.demo.entity.Category;
 import com.example.demo.entity.Course;
+import com.example.demo.mapper.CourseMapper;
 import com.example.demo.repository.CategoryRepository;
 import com.example.demo.repository.CourseRepository;
+import com.example.demo.service.CourseCatalogService;
+import com.example.demo.service.DashboardRollupService;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
@@ -26,6 +29,15 @@ public class AdminCourseController {
     @Autowired
     private CategoryRepository categoryRepository;
 
+    @Autowired
+    private DashboardRollupService rollupService;
+
+    @Autowired
+    private CourseMapper courseMapper;
+
+    @Autowired
+    private CourseCatalogService catalogService;
+
     public AdminCourseController(CourseRepository courseRepository) {
         this.courseRepository = courseRepository;
     }
@@ -48,22 +60,17 @@ public class AdminCourseController {
         
         course.setVideoUrl(request.getVideoUrl());
         courseRepository.save(course);
+        rollupService.recordCourseCreated(course.getCreatedAt());
+        catalogService.bumpRevision();
         return ResponseEntity.ok(new CourseCreateResponse("Success"));
     }
 
     @GetMapping
     public ResponseEntity<List<CourseDto>> getAllCourses() {
         List<Course> courses = courseRepository.findAll();
-        List<CourseDto> courseDtos = courses.stream().map(course -> {
-            CourseDto dto = new CourseDto();
-            dto.setId(course.getId().longValue());
-            dto.setTitle(course.getTitle());
-            dto.setDescription(course.getDescription());
-            dto.setThumbnail(course.getThumbnail());
-            dto.setCategory(course.getCategory() != null ? course.getCategory().getName() : null);
-            dto.setVideoUrl(course.getVideoUrl());
-            return dto;
-        }).collect(Collectors.toList());
+        List<CourseDto> courseDtos = courses.stream()
+                .map(courseMapper::toDto)
+                .collect(Collectors.toList());
         return ResponseEntity.ok(courseDtos);
     }
 
@@ -92,15 +99,19 @@ public class AdminCourseController {
             course.setVideoUrl(request.getVideoUrl());
         }
         courseRepository.save(course);
+        catalogService.bumpRevision();
         return ResponseEntity.ok(new CourseCreateResponse("Success"));
     }
 
     @DeleteMapping("/{id}")
     public ResponseEntity<CourseCreateResponse> deleteCourse(@PathVariable Long id) {
-        if (!courseRepository.existsById(id)) {
+        Optional<Course> course = courseRepository.findById(id);
+        if (!course.isPresent()) {
             return ResponseEntity.notFound().build();
         }
         courseRepository.deleteById(id);
+        rollupService.recordCourseDeleted(course.get().getCreatedAt());
+        catalogService.bumpRevision();
         return ResponseEntity.ok(new CourseCreateResponse("Success"));
     }
 
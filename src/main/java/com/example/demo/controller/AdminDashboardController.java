@@ -2,14 +2,27 @@ package com.example.demo.controller;
 
 import com.example.demo.dto.DashboardStatsDTO;
 import com.example.demo.dto.OrderDTO;
+import com.example.demo.dto.RevenueGranularity;
+import com.example.demo.dto.RevenueSeriesDTO;
+import com.example.demo.entity.OrderStatus;
 import com.example.demo.service.AdminDashboardService;
+import com.example.demo.service.DashboardRollupService;
+import com.example.demo.service.DashboardStreamService;
+import com.example.demo.service.RevenueSeriesService;
 import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.time.LocalDate;
 import java.util.List;
 
 @RestController
@@ -19,6 +32,9 @@ import java.util.List;
 public class AdminDashboardController {
 
     private final AdminDashboardService dashboardService;
+    private final DashboardRollupService rollupService;
+    private final RevenueSeriesService revenueSeriesService;
+    private final DashboardStreamService streamService;
 
     @GetMapping("/stats")
     public ResponseEntity<DashboardStatsDTO> getDashboardStats() {
@@ -31,4 +47,39 @@ public class AdminDashboardController {
         List<OrderDTO> recentOrders = dashboardService.getRecentOrders();
         return ResponseEntity.ok(recentOrders);
     }
+
+    /**
+     * Kênh SSE: đẩy thống kê và đơn hàng gần đây khi có đơn hàng thay đổi (thay cho polling).
+     */
+    @GetMapping(path = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamDashboard(
+            @RequestHeader(value = "Last-Event-ID", required = false) String lastEventId) {
+        return streamService.subscribe(lastEventId);
+    }
+
+    /**
+     * Doanh thu theo ngày/tuần/tháng trong khoảng [from, to], có lọc trạng thái
+     * và tùy chọn tách theo phương thức thanh toán (breakdown=paymentMethod).
+     */
+    @GetMapping("/revenue")
+    public ResponseEntity<RevenueSeriesDTO> getRevenueSeries(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(defaultValue = "DAY") RevenueGranularity granularity,
+            @RequestParam(required = false) List<OrderStatus> status,
+            @RequestParam(required = false) String breakdown) {
+        LocalDate end = to != null ? to : LocalDate.now();
+        LocalDate start = from != null ? from : end.minusDays(29);
+        return ResponseEntity.ok(revenueSeriesService.getSeries(
+                start, end, granularity, status, "paymentMethod".equalsIgnoreCase(breakdown)));
+    }
+
+    // Dựng lại bảng tổng hợp từ dữ liệu gốc (đối soát thủ công)
+    @PostMapping("/rollups/rebuild")
+    public ResponseEntity<Void> rebuildRollups() {
+        rollupService.rebuild();
+        revenueSeriesService.rebuild();
+        dashboardService.invalidate();
+        return ResponseEntity.noContent().build();
+    }
 }
\ No newline at end of file
@@ -0,0 +1,49 @@
+package com.example.demo.controller;
+
+import com.example.demo.config.AsyncTimeoutConfig;
+import com.example.demo.service.ExportService;
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+@RestController
+@RequestMapping("/api/admin/export")
+@PreAuthorize("hasRole('ADMIN')")
+@RequiredArgsConstructor
+public class AdminExportController {
+
+    private final ExportService exportService;
+
+    @Value("${app.export.request-timeout-ms:3600000}")
+    private long requestTimeoutMillis;
+
+    /**
+     * Xuất orders, users hoặc products dạng CSV/NDJSON, stream trực tiếp (tùy chọn nén gzip).
+     */
+    @GetMapping("/{dataset}")
+    public ResponseEntity<StreamingResponseBody> export(
+            @PathVariable String dataset,
+            @RequestParam(defaultValue = "csv") String format,
+            @RequestParam(defaultValue = "false") boolean gzip,
+            HttpServletRequest request) {
+        ExportService.Dataset exportDataset = ExportService.parseDataset(dataset);
+        ExportService.Format exportFormat = ExportService.parseFormat(format);
+        request.setAttribute(AsyncTimeoutConfig.TIMEOUT_ATTRIBUTE, requestTimeoutMillis);
+        String fileName = exportDataset.getFileName() + "." + exportFormat.getExtension() + (gzip ? ".gz" : "");
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + fileName + "\"")
+                .contentType(MediaType.parseMediaType(gzip ? "application/gzip" : exportFormat.getContentType() + ";charset=UTF-8"))
+                .body(exportService.export(exportDataset, exportFormat, gzip,
+                        release -> AsyncTimeoutConfig.onCompletion(request, release)));
+    }
+}
@@ -2,6 +2,8 @@ package com.example.demo.controller;
 
 import com.example.demo.dto.*;
 import com.example.demo.service.AdminOrderService;
+import com.example.demo.service.IdempotencyService;
+import com.example.demo.service.OrderBulkStatusService;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.HttpStatus;
@@ -18,6 +20,8 @@ import java.util.List;
 public class AdminOrderController {
 
     private final AdminOrderService orderService;
+    private final OrderBulkStatusService bulkStatusService;
+    private final IdempotencyService idempotencyService;
 
     @GetMapping
     public ResponseEntity<List<OrderResponse>> getAllOrders(
@@ -27,22 +31,48 @@ public class AdminOrderController {
         return ResponseEntity.ok(orderService.getAllOrders(status, search, sort));
     }
 
+    @GetMapping("/page")
+    public ResponseEntity<OrderPageResponse> getOrderPage(
+            @RequestParam(required = false) String status,
+            @RequestParam(required = false) String search,
+            @RequestParam(required = false, defaultValue = "createdAt,desc") String sort,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer size,
+            @RequestParam(required = false, defaultValue = "true") boolean includeItems) {
+        return ResponseEntity.ok(orderService.getOrderPage(status, search, sort, cursor, size, includeItems));
+    }
+
     @GetMapping("/{id}")
     public ResponseEntity<OrderResponse> getOrder(@PathVariable Long id) {
         return ResponseEntity.ok(orderService.getOrder(id));
     }
 
     @PostMapping
-    public ResponseEntity<OrderResponse> createOrder(@Valid @RequestBody OrderRequest request) {
+    public ResponseEntity<OrderResponse> createOrder(
+            @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey,
+            @Valid @RequestBody OrderRequest request) {
+        if (idempotencyKey == null) {
+            return ResponseEntity.status(HttpStatus.CREATED)
+                    .body(orderService.createOrder(request));
+        }
+        IdempotencyService.Result<OrderResponse> result = idempotencyService.execute(
+                idempotencyKey, request, OrderResponse.class, () -> orderService.createOrder(request));
         return ResponseEntity.status(HttpStatus.CREATED)
-                .body(orderService.createOrder(request));
+                .header("Idempotent-Replayed", String.valueOf(result.replayed()))
+                .body(result.value());
     }
 
     @PutMapping("/{id}/status")
     public ResponseEntity<OrderResponse> updateOrderStatus(
             @PathVariable Long id,
             @Valid @RequestBody OrderStatusRequest request) {
-        return ResponseEntity.ok(orderService.updateOrderStatus(id, request.getStatus()));
+        return ResponseEntity.ok(orderService.updateOrderStatus(id, request.getStatus(), request.getVersion()));
+    }
+
+    @PostMapping("/status/bulk")
+    public ResponseEntity<BulkStatusUpdateResponse> updateOrderStatuses(
+            @Valid @RequestBody BulkStatusUpdateRequest request) {
+        return ResponseEntity.ok(bulkStatusService.updateStatuses(request));
     }
 
     @DeleteMapping("/{id}")
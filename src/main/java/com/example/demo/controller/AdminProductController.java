@@ -1,17 +1,30 @@
 package com.example.demo.controller;
 
+import com.example.demo.config.AsyncTimeoutConfig;
+import com.example.demo.dto.ProductFacetResponse;
 import com.example.demo.dto.ProductRequest;
 import com.example.demo.dto.ProductResponse;
+import com.example.demo.dto.ProductSearchResponse;
+import com.example.demo.dto.ProductTotalMode;
 import com.example.demo.service.AdminProductService;
+import com.example.demo.service.ExportService;
+import com.example.demo.service.ProductCatalogCache;
+import com.example.demo.service.ProductImportService;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.InputStream;
 
 @RestController
 @RequestMapping("/api/admin/products")
@@ -19,13 +32,37 @@ import org.springframework.web.multipart.MultipartFile;
 public class AdminProductController {
 
     private final AdminProductService productService;
+    private final ProductCatalogCache catalogCache;
+    private final ProductImportService importService;
+
+    @Value("${app.products.import.request-timeout-ms:3600000}")
+    private long importTimeoutMillis;
 
     @GetMapping
-    public ResponseEntity<Page<ProductResponse>> getAllProducts(
+    public ResponseEntity<byte[]> getAllProducts(
             @RequestParam(required = false) String category,
             @RequestParam(required = false) String search,
+            @RequestParam(defaultValue = "ESTIMATE") ProductTotalMode total,
+            Pageable pageable) {
+        // JSON của ProductPageResponse đã được cache sẵn
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(catalogCache.getPage(category, search, pageable, total));
+    }
+
+    @GetMapping("/search")
+    public ResponseEntity<ProductSearchResponse> searchProducts(
+            @RequestParam("q") String query,
+            @RequestParam(required = false) String category,
             Pageable pageable) {
-        return ResponseEntity.ok(productService.getAllProducts(category, search, pageable));
+        return ResponseEntity.ok(productService.searchProducts(query, category, pageable));
+    }
+
+    @GetMapping("/facets")
+    public ResponseEntity<ProductFacetResponse> getFacets(
+            @RequestParam(required = false) String category,
+            @RequestParam(value = "q", required = false) String query) {
+        return ResponseEntity.ok(productService.getFacets(category, query));
     }
 
     @GetMapping("/{id}")
@@ -42,6 +79,24 @@ public class AdminProductController {
         return ResponseEntity.status(HttpStatus.CREATED).body(response);
     }
 
+    /**
+     * Import hàng loạt từ thân request (CSV có header hoặc NDJSON); trả về NDJSON gồm lỗi từng dòng,
+     * tiến độ và dòng tổng kết, ghi dần trong lúc import.
+     */
+    @PreAuthorize("hasRole('ADMIN')")
+    @PostMapping(value = "/import", produces = "application/x-ndjson")
+    public ResponseEntity<StreamingResponseBody> importProducts(
+            @RequestParam(defaultValue = "csv") String format,
+            InputStream body,
+            HttpServletRequest request) {
+        ExportService.Format importFormat = ExportService.parseFormat(format);
+        request.setAttribute(AsyncTimeoutConfig.TIMEOUT_ATTRIBUTE, importTimeoutMillis);
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType("application/x-ndjson;charset=UTF-8"))
+                .body(importService.importProducts(body, importFormat,
+                        release -> AsyncTimeoutConfig.onCompletion(request, release)));
+    }
+
     @PreAuthorize("hasRole('ADMIN')")
     @PutMapping(value = "/{id}", consumes = {"multipart/form-data"})
     public ResponseEntity<ProductResponse> updateProduct(
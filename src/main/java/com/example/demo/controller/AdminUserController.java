@@ -2,6 +2,9 @@ package com.example.demo.controller;
 
 import com.example.demo.entity.User;
 import com.example.demo.repository.UserRepository;
+import com.example.demo.security.SecurityEpochService;
+import com.example.demo.service.CustomUserDetailsService;
+import com.example.demo.service.DashboardRollupService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
@@ -14,6 +17,9 @@ import java.util.List;
 public class AdminUserController {
 
     private final UserRepository userRepository;
+    private final SecurityEpochService securityEpochService;
+    private final CustomUserDetailsService userDetailsService;
+    private final DashboardRollupService rollupService;
 
     // Lấy danh sách tất cả người dùng (chỉ admin mới truy cập được)
     @GetMapping
@@ -29,16 +35,22 @@ public class AdminUserController {
                 .orElseThrow(() -> new RuntimeException("Không tìm thấy người dùng"));
         user.setRole(request.getRole());
         userRepository.save(user);
+        securityEpochService.bump(user.getEmail());
+        userDetailsService.evict(user.getEmail());
         return ResponseEntity.ok(user);
     }
 
     // Xóa người dùng theo id
     @DeleteMapping("/{id}")
     public ResponseEntity<?> deleteUser(@PathVariable Long id) {
-        if (!userRepository.existsById(id)) {
+        User user = userRepository.findById(id).orElse(null);
+        if (user == null) {
             return ResponseEntity.notFound().build();
         }
         userRepository.deleteById(id);
+        rollupService.recordUserDeleted(user.getCreatedAt());
+        securityEpochService.bump(user.getEmail());
+        userDetailsService.evict(user.getEmail());
         return ResponseEntity.ok().build();
     }
 
@@ -2,6 +2,7 @@ package com.example.demo.controller;
 
 import com.example.demo.entity.Category;
 import com.example.demo.repository.CategoryRepository;
+import com.example.demo.service.CourseCatalogService;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
@@ -12,14 +13,17 @@ import java.util.List;
 @CrossOrigin(origins = "http://localhost:3000")
 public class CategoryController {
     private final CategoryRepository categoryRepository;
+    private final CourseCatalogService catalogService;
 
-    public CategoryController(CategoryRepository categoryRepository) {
+    public CategoryController(CategoryRepository categoryRepository, CourseCatalogService catalogService) {
         this.categoryRepository = categoryRepository;
+        this.catalogService = catalogService;
     }
     
     @PostMapping
     public ResponseEntity<Category> createCategory(@RequestBody Category category) {
         Category savedCategory = categoryRepository.save(category);
+        catalogService.bumpRevision();
         return ResponseEntity.ok(savedCategory);
     }
     
@@ -41,6 +45,7 @@ public class CategoryController {
             .map(category -> {
                 category.setName(updatedCategory.getName());
                 Category saved = categoryRepository.save(category);
+                catalogService.bumpRevision();
                 return ResponseEntity.ok(saved);
             })
             .orElse(ResponseEntity.notFound().build());
@@ -52,6 +57,7 @@ public class CategoryController {
             return ResponseEntity.notFound().build();
         }
         categoryRepository.deleteById(id);
+        catalogService.bumpRevision();
         return ResponseEntity.ok().build();
     }
 }
\ No newline at end of file
@@ -1,7 +1,12 @@
 package com.example.demo.controller;
 
 import com.example.demo.entity.Course;
+import com.example.demo.service.CourseCatalogService;
 import com.example.demo.service.CourseService;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
@@ -12,15 +17,30 @@ import java.util.List;
 @RequestMapping("/api/courses")
 public class CourseController {
     private final CourseService courseService;
+    private final CourseCatalogService catalogService;
     
-    public CourseController(CourseService courseService) {
+    public CourseController(CourseService courseService, CourseCatalogService catalogService) {
         this.courseService = courseService;
+        this.catalogService = catalogService;
     }
     
+    // JSON danh mục khóa học đã cache sẵn; client gửi lại ETag cũ mà danh mục chưa đổi thì nhận 304
     @GetMapping
-    public ResponseEntity<List<Course>> getCourses() {
-        List<Course> courses = courseService.getAllCourses();
-        return ResponseEntity.ok(courses);
+    public ResponseEntity<byte[]> getCourses(
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        String etag = catalogService.currentEtag();
+        if (ifNoneMatch != null && (ifNoneMatch.equals("*") || ifNoneMatch.contains(etag))) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                    .eTag(etag)
+                    .cacheControl(CacheControl.noCache())
+                    .build();
+        }
+        CourseCatalogService.Catalog catalog = catalogService.getCatalog();
+        return ResponseEntity.ok()
+                .eTag(catalog.etag())
+                .cacheControl(CacheControl.noCache())
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(catalog.body());
     }
     
     @GetMapping("/by-category/{categoryId}")
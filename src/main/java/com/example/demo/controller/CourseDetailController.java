@@ -4,6 +4,7 @@ import com.example.demo.dto.CourseDetailDto;
 import com.example.demo.dto.LessonDto;
 import com.example.demo.entity.Course;
 import com.example.demo.entity.Lesson;
+import com.example.demo.mapper.CourseMapper;
 import com.example.demo.repository.CourseRepository;
 import com.example.demo.repository.LessonRepository;
 import org.springframework.http.ResponseEntity;
@@ -18,10 +19,13 @@ public class CourseDetailController {
 
     private final CourseRepository courseRepository;
     private final LessonRepository lessonRepository;
+    private final CourseMapper courseMapper;
 
-    public CourseDetailController(CourseRepository courseRepository, LessonRepository lessonRepository) {
+    public CourseDetailController(CourseRepository courseRepository, LessonRepository lessonRepository,
+                                  CourseMapper courseMapper) {
         this.courseRepository = courseRepository;
         this.lessonRepository = lessonRepository;
+        this.courseMapper = courseMapper;
     }
 
     @GetMapping("/{courseId}/detail")
@@ -30,21 +34,10 @@ public class CourseDetailController {
                 .orElseThrow(() -> new RuntimeException("Course not found"));
 
         List<Lesson> lessons = lessonRepository.findByCourseId(courseId);
-        List<LessonDto> lessonDtos = lessons.stream().map(lesson -> {
-            LessonDto dto = new LessonDto();
-            dto.setLessonId(lesson.getId());
-            dto.setTitle(lesson.getTitle());
-            dto.setVideoUrl(lesson.getVideoUrl());
-            return dto;
-        }).collect(Collectors.toList());
-
-        CourseDetailDto detailDto = new CourseDetailDto();
-        detailDto.setTitle(course.getTitle());
-        detailDto.setDescription(course.getDescription());
-        
-        detailDto.setThumbnail(course.getThumbnail());
-        detailDto.setVideoUrl(course.getVideoUrl());
-
-        return ResponseEntity.ok(detailDto);
+        List<LessonDto> lessonDtos = lessons.stream()
+                .map(courseMapper::toLessonDto)
+                .collect(Collectors.toList());
+
+        return ResponseEntity.ok(courseMapper.toDetailDto(course));
     }
 }
\ No newline at end of file
@@ -6,6 +6,8 @@ import com.example.demo.dto.UpdateUserResponse;
 import com.example.demo.dto.UserInfoDto;
 import com.example.demo.entity.Registration;
 import com.example.demo.entity.User;
+import com.example.demo.mapper.CourseMapper;
+import com.example.demo.mapper.UserMapper;
 import com.example.demo.repository.RegistrationRepository;
 import com.example.demo.repository.UserRepository;
 import org.springframework.http.HttpStatus;
@@ -22,10 +24,15 @@ public class UserController {
 
     private final UserRepository userRepository;
     private final RegistrationRepository registrationRepository;
+    private final CourseMapper courseMapper;
+    private final UserMapper userMapper;
 
-    public UserController(UserRepository userRepository, RegistrationRepository registrationRepository) {
+    public UserController(UserRepository userRepository, RegistrationRepository registrationRepository,
+                          CourseMapper courseMapper, UserMapper userMapper) {
         this.userRepository = userRepository;
         this.registrationRepository = registrationRepository;
+        this.courseMapper = courseMapper;
+        this.userMapper = userMapper;
     }
 
     @GetMapping("/info")
@@ -38,20 +45,11 @@ public class UserController {
             .orElseThrow(() -> new RuntimeException("User not found"));
 
         List<Registration> registrations = registrationRepository.findByUser_Id(user.getId());
-        List<EnrolledCourseDto> enrolledCourses = registrations.stream().map(registration -> {
-            EnrolledCourseDto dto = new EnrolledCourseDto();
-            dto.setCourseId(registration.getCourse().getId());
-            dto.setTitle(registration.getCourse().getTitle());
-            return dto;
-        }).collect(Collectors.toList());
+        List<EnrolledCourseDto> enrolledCourses = registrations.stream()
+                .map(courseMapper::toEnrolledCourseDto)
+                .collect(Collectors.toList());
 
-        UserInfoDto userInfo = new UserInfoDto();
-        userInfo.setName(user.getName());
-        userInfo.setEmail(user.getEmail());
-        userInfo.setAvatar(user.getAvatar() != null ? user.getAvatar() : "https://via.placeholder.com/150");
-        userInfo.setEnrolledCourses(enrolledCourses);
-
-        return ResponseEntity.ok(userInfo);
+        return ResponseEntity.ok(userMapper.toInfoDto(user, enrolledCourses));
     }
 
     @PutMapping("/update")
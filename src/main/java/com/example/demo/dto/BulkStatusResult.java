@@ -0,0 +1,22 @@
+package com.example.demo.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BulkStatusResult {
+
+    public enum Outcome {
+        UPDATED,            // Đã chuyển trạng thái
+        UNCHANGED,          // Đã ở trạng thái đích
+        INVALID_TRANSITION, // Không được phép chuyển từ trạng thái hiện tại
+        NOT_FOUND
+    }
+
+    private Long orderId;
+    private String previousStatus;
+    private Outcome outcome;
+}
@@ -0,0 +1,27 @@
+package com.example.demo.dto;
+
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.Size;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Chuyển trạng thái hàng loạt: theo danh sách id, hoặc theo bộ lọc (trạng thái hiện tại
+ * và khoảng ngày tạo). Phải có đúng một trong hai: danh sách id hoặc {@code fromStatus} (kèm khoảng ngày tạo nếu cần).
+ */
+@Data
+public class BulkStatusUpdateRequest {
+    @NotBlank(message = "Trạng thái không được để trống")
+    private String status;
+
+    @Size(max = 20000, message = "Tối đa 20000 đơn hàng mỗi lần")
+    private List<Long> orderIds;
+
+    private String fromStatus;
+
+    private LocalDateTime createdFrom;
+
+    private LocalDateTime createdTo;
+}
@@ -0,0 +1,22 @@
+package com.example.demo.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BulkStatusUpdateResponse {
+    private String status;
+    private int requested;
+    private int updated;
+    private int unchanged;
+    private int invalidTransition;
+    private int notFound;
+    private List<BulkStatusResult> results;
+}
@@ -0,0 +1,42 @@
+package com.example.demo.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Một khóa học trong danh mục công khai, đọc bằng một câu truy vấn projection (không nạp entity).
+ * Giữ tên trường như entity Course để client cũ vẫn đọc được.
+ */
+@Data
+@NoArgsConstructor
+public class CourseCatalogItem {
+    private Integer id;
+    private String title;
+    private String description;
+    private String thumbnail;
+    private String videoUrl;
+    private LocalDateTime createdAt;
+    private CategorySummary category;
+
+    public CourseCatalogItem(Integer id, String title, String description, String thumbnail, String videoUrl,
+                             LocalDateTime createdAt, Long categoryId, String categoryName) {
+        this.id = id;
+        this.title = title;
+        this.description = description;
+        this.thumbnail = thumbnail;
+        this.videoUrl = videoUrl;
+        this.createdAt = createdAt;
+        this.category = categoryId == null ? null : new CategorySummary(categoryId, categoryName);
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class CategorySummary {
+        private Long id;
+        private String name;
+    }
+}
@@ -6,6 +6,7 @@ import lombok.Data;
 import lombok.NoArgsConstructor;
 
 import java.math.BigDecimal;
+import java.time.LocalDateTime;
 import java.util.List;
 
 @Data
@@ -23,4 +24,7 @@ public class DashboardStatsDTO {
     private double revenueChangePercentage;
     private List<MonthlyRevenueDTO> revenueByMonth;
     private List<CategoryDistributionDTO> categoryDistribution;
+    private LocalDateTime generatedAt; // Thời điểm tính snapshot (có thể cũ hơn vài giây)
+    private boolean partial; // Có truy vấn con lỗi/quá hạn, phần đó lấy từ bản trước
+    private List<String> staleParts; // Tên các phần lấy từ bản trước (total, current_month, ...)
 }
\ No newline at end of file
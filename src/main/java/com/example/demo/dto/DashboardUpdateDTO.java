@@ -0,0 +1,23 @@
+package com.example.demo.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Nội dung một sự kiện SSE của dashboard: snapshot dùng chung cho mọi admin đang kết nối,
+ * kèm danh sách đơn hàng đã thay đổi kể từ lần đẩy trước.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class DashboardUpdateDTO {
+    private long sequence;
+    private DashboardStatsDTO stats;
+    private List<OrderDTO> recentOrders;
+    private List<Long> changedOrderIds;
+}
@@ -1,5 +1,6 @@
 package com.example.demo.dto;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.Builder;
 import lombok.Data;
 
@@ -9,4 +10,7 @@ public class ErrorResponse {
     private int status;
     private String message;
     private long timestamp;
+    // Trạng thái hiện tại của tài nguyên khi xung đột (409)
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Object current;
 }
\ No newline at end of file
@@ -22,4 +22,5 @@ public class OrderResponse {
     private LocalDateTime createdAt;
     private List<OrderItemResponse> items;
     private int itemCount; // Thêm trường số lượng sản phẩm cho hiển thị frontend
+    private Long version;
 }
\ No newline at end of file
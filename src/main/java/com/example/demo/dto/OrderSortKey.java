@@ -0,0 +1,28 @@
+package com.example.demo.dto;
+
+/**
+ * Các khóa sắp xếp được phép cho danh sách đơn hàng admin; mỗi khóa đều có index tương ứng.
+ */
+public enum OrderSortKey {
+    CREATED_AT("createdAt"),
+    ID("id");
+
+    private final String param;
+
+    OrderSortKey(String param) {
+        this.param = param;
+    }
+
+    public String getParam() {
+        return param;
+    }
+
+    public static OrderSortKey fromParam(String param) {
+        for (OrderSortKey key : values()) {
+            if (key.param.equalsIgnoreCase(param)) {
+                return key;
+            }
+        }
+        return null;
+    }
+}
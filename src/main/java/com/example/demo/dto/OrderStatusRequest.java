@@ -7,4 +7,7 @@ import lombok.Data;
 public class OrderStatusRequest {
     @NotBlank(message = "Trạng thái đơn hàng không được để trống")
     private String status;
+
+    // Version client đang giữ; null thì dùng version vừa đọc
+    private Long version;
 }
\ No newline at end of file
@@ -0,0 +1,20 @@
+package com.example.demo.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProductCategoryFacet {
+    private String category;
+    private long productCount;
+    private long inStockCount;
+    private BigDecimal minPrice;
+    private BigDecimal maxPrice;
+}
@@ -0,0 +1,29 @@
+package com.example.demo.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Số liệu theo danh mục cho bộ lọc sản phẩm, sắp theo số sản phẩm giảm dần. {@code source} cho biết
+ * nguồn dữ liệu: bảng tổng hợp (không có từ khóa), chỉ mục tìm kiếm trong bộ nhớ, hoặc truy vấn SQL
+ * khi chỉ mục chưa sẵn sàng.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProductFacetResponse {
+
+    public enum Source {
+        AGGREGATE,
+        INDEX,
+        SQL
+    }
+
+    private List<ProductCategoryFacet> categories;
+    private Source source;
+}
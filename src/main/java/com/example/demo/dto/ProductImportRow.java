@@ -0,0 +1,39 @@
+package com.example.demo.dto;
+
+import com.fasterxml.jackson.annotation.JsonAlias;
+import jakarta.validation.constraints.*;
+import lombok.Data;
+
+import java.math.BigDecimal;
+
+/**
+ * Một dòng trong file import sản phẩm (CSV hoặc NDJSON). Có {@code id} thì cập nhật sản phẩm đó,
+ * không có thì thêm mới.
+ */
+@Data
+public class ProductImportRow {
+    private Long id;
+
+    @NotBlank(message = "Tên sản phẩm không được để trống")
+    @Size(max = 255, message = "Tên sản phẩm tối đa 255 ký tự")
+    private String name;
+
+    @NotNull(message = "Giá không được để trống")
+    @Min(value = 0, message = "Giá phải lớn hơn hoặc bằng 0")
+    private BigDecimal price;
+
+    @NotNull(message = "Số lượng không được để trống")
+    @Min(value = 0, message = "Số lượng phải lớn hơn hoặc bằng 0")
+    private Integer stock;
+
+    @NotBlank(message = "Danh mục không được để trống")
+    @Size(max = 255, message = "Danh mục tối đa 255 ký tự")
+    private String category;
+
+    @Size(max = 1000, message = "Mô tả tối đa 1000 ký tự")
+    private String description;
+
+    @JsonAlias("image_url")
+    @Size(max = 255, message = "URL ảnh tối đa 255 ký tự")
+    private String imageUrl;
+}
@@ -0,0 +1,41 @@
+package com.example.demo.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Một trang sản phẩm. Tên trường giữ như {@code Page} của Spring để client cũ vẫn đọc được;
+ * {@code totalType} cho biết {@code totalElements} là số chính xác, số ước lượng (đếm lúc
+ * {@code totalAsOf}) hay không có (null).
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class ProductPageResponse {
+
+    public enum TotalType {
+        EXACT,
+        ESTIMATED,
+        NONE
+    }
+
+    private List<ProductResponse> content;
+    private int number;
+    private int size;
+    private int numberOfElements;
+    private boolean first;
+    private boolean last;
+    private boolean hasNext;
+    private Long totalElements;
+    private Integer totalPages;
+    private TotalType totalType;
+    private LocalDateTime totalAsOf;
+}
@@ -28,4 +28,7 @@ public class ProductRequest {
 
     // File ảnh được upload từ form (không lưu vào DB)
     private MultipartFile imageFile;
+
+    // Version client đang giữ (khóa lạc quan); không chép sang entity
+    private Long version;
 }
\ No newline at end of file
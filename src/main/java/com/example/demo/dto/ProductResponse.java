@@ -14,4 +14,5 @@ public class ProductResponse {
     private String description;
     private String imageUrl;
     private LocalDateTime createdAt;
+    private Long version;
 }
\ No newline at end of file
@@ -0,0 +1,25 @@
+package com.example.demo.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Kết quả tìm kiếm sản phẩm xếp theo độ liên quan. {@code categoryFacets} là số sản phẩm khớp theo từng
+ * danh mục (không tính bộ lọc danh mục); null khi chỉ mục chưa sẵn sàng và kết quả lấy từ SQL.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProductSearchResponse {
+    private List<ProductResponse> products;
+    private long total;
+    private int page;
+    private int size;
+    private Map<String, Long> categoryFacets;
+}
@@ -0,0 +1,10 @@
+package com.example.demo.dto;
+
+/**
+ * Cách tính tổng số sản phẩm khi liệt kê theo trang.
+ */
+public enum ProductTotalMode {
+    NONE,       // Không cần tổng, chỉ biết còn trang sau hay không
+    ESTIMATE,   // Số đếm lần trước được cache, làm mới định kỳ
+    EXACT       // Chạy COUNT(*) cho mỗi trang
+}
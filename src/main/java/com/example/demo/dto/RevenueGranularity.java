@@ -0,0 +1,7 @@
+package com.example.demo.dto;
+
+public enum RevenueGranularity {
+    DAY,
+    WEEK,   // Tuần ISO, bắt đầu từ thứ Hai
+    MONTH
+}
@@ -0,0 +1,22 @@
+package com.example.demo.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Map;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class RevenuePointDTO {
+    private LocalDate periodStart;
+    private String label;
+    private long orderCount;
+    private BigDecimal revenue;
+    private Map<String, BigDecimal> revenueByPaymentMethod; // Chỉ có khi breakdown=paymentMethod
+}
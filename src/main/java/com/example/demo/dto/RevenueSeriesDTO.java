@@ -0,0 +1,24 @@
+package com.example.demo.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class RevenueSeriesDTO {
+    private LocalDate from;
+    private LocalDate to;
+    private RevenueGranularity granularity;
+    private List<String> statuses;
+    private long totalOrders;
+    private BigDecimal totalRevenue;
+    private List<RevenuePointDTO> points;
+}
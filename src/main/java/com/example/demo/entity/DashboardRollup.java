@@ -0,0 +1,46 @@
+package com.example.demo.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * Số liệu tổng hợp sẵn cho dashboard admin, được cập nhật tăng dần khi có
+ * đơn hàng / user / khóa học mới và có thể dựng lại toàn bộ bằng job đối soát.
+ */
+@Entity
+@Table(name = "dashboard_rollups",
+       uniqueConstraints = @UniqueConstraint(columnNames = {"period_type", "period_start"}))
+@Data
+public class DashboardRollup {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "period_type", nullable = false, length = 10)
+    private RollupPeriod periodType;
+
+    @Column(name = "period_start", nullable = false)
+    private LocalDate periodStart;
+
+    @Column(nullable = false)
+    private long orderCount;
+
+    @Column(nullable = false)
+    private BigDecimal revenue = BigDecimal.ZERO;
+
+    @Column(nullable = false)
+    private long cancelledOrders;
+
+    @Column(nullable = false)
+    private BigDecimal cancelledRevenue = BigDecimal.ZERO;
+
+    @Column(nullable = false)
+    private long newUsers;
+
+    @Column(nullable = false)
+    private long newCourses;
+}
@@ -0,0 +1,21 @@
+package com.example.demo.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+/**
+ * Số thứ tự cuối cùng của nhật ký giữ hàng đã được ghi vào products.stock.
+ * Cập nhật cùng transaction với lô delta tồn kho nên không có bản ghi nào bị áp dụng hai lần.
+ */
+@Entity
+@Table(name = "inventory_ledger_checkpoint")
+@Data
+public class InventoryLedgerCheckpoint {
+    public static final int SINGLETON_ID = 1;
+
+    @Id
+    private Integer id;
+
+    @Column(nullable = false)
+    private long lastSequence;
+}
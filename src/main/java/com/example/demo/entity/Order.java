@@ -8,7 +8,11 @@ import java.util.ArrayList;
 import java.util.List;
 
 @Entity
-@Table(name = "orders")
+@Table(name = "orders", indexes = {
+        // Phục vụ phân trang keyset (created_at, id) và lọc theo trạng thái
+        @Index(name = "idx_orders_created_id", columnList = "created_at, id"),
+        @Index(name = "idx_orders_status_created_id", columnList = "status, created_at, id")
+})
 @Data
 public class Order {
     @Id
@@ -40,6 +44,11 @@ public class Order {
 
     private LocalDateTime createdAt;
 
+    // Khóa lạc quan: mọi câu UPDATE trên orders (kể cả JDBC) đều tăng version
+    @Version
+    @Column(nullable = false, columnDefinition = "BIGINT NOT NULL DEFAULT 0")
+    private Long version;
+
     // Helper method to match the method name used in AdminDashboardService
     public BigDecimal getTotalAmount() {
         return totalPrice;
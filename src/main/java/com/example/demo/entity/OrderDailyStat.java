@@ -0,0 +1,36 @@
+package com.example.demo.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * Doanh thu đã gom theo ngày, trạng thái và phương thức thanh toán.
+ * Được ghi bởi RevenueSeriesService (ghi trễ theo lô) và dựng lại được từ bảng orders.
+ */
+@Entity
+@Table(name = "order_daily_stats",
+       uniqueConstraints = @UniqueConstraint(columnNames = {"day", "status", "payment_method"}))
+@Data
+public class OrderDailyStat {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false)
+    private LocalDate day;
+
+    @Column(nullable = false, length = 20)
+    private String status;
+
+    @Column(name = "payment_method", nullable = false, length = 50)
+    private String paymentMethod;
+
+    @Column(nullable = false)
+    private long orderCount;
+
+    @Column(nullable = false)
+    private BigDecimal revenue = BigDecimal.ZERO;
+}
@@ -0,0 +1,7 @@
+package com.example.demo.entity;
+
+public enum OutboxStatus {
+    PENDING,    // Chờ gửi (hoặc chờ gửi lại)
+    SENT,       // Đã gửi
+    DEAD        // Gửi lỗi quá số lần cho phép
+}
@@ -7,11 +7,18 @@ import java.math.BigDecimal;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "products")
+// (category, price): đếm theo danh mục và MIN/MAX giá không phải quét bảng
+@Table(name = "products", indexes = @Index(name = "idx_products_category_price", columnList = "category, price"))
 @Data
 public class Product {
+    // Số id giữ trước mỗi lần chạm bảng id_allocations
+    public static final int ID_ALLOCATION_SIZE = 1000;
+
+    // Cấp id theo khối (pooled) thay vì IDENTITY để Hibernate gom insert thành batch và import JDBC dùng chung dãy id
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "product_id")
+    @TableGenerator(name = "product_id", table = "id_allocations", pkColumnName = "name",
+            valueColumnName = "next_val", pkColumnValue = "products", allocationSize = ID_ALLOCATION_SIZE)
     private Long id;
 
     @Column(nullable = false)
@@ -33,6 +40,11 @@ public class Product {
 
     private LocalDateTime createdAt;
 
+    // Khóa lạc quan: các câu UPDATE tồn kho bằng JDBC cũng tăng version
+    @Version
+    @Column(nullable = false, columnDefinition = "BIGINT NOT NULL DEFAULT 0")
+    private Long version;
+
     @PrePersist
     protected void onCreate() {
         createdAt = LocalDateTime.now();
@@ -0,0 +1,29 @@
+package com.example.demo.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+import java.math.BigDecimal;
+
+/**
+ * Số liệu tổng hợp theo danh mục sản phẩm (số sản phẩm, số còn hàng, khoảng giá), được cập nhật
+ * tăng dần cùng transaction với thao tác trên sản phẩm/tồn kho và dựng lại được bằng job đối soát.
+ */
+@Entity
+@Table(name = "product_category_stats")
+@Data
+public class ProductCategoryStats {
+    @Id
+    @Column(nullable = false)
+    private String category;
+
+    @Column(nullable = false)
+    private long productCount;
+
+    @Column(nullable = false)
+    private long inStockCount;
+
+    private BigDecimal minPrice;
+
+    private BigDecimal maxPrice;
+}
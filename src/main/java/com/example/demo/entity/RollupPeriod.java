@@ -0,0 +1,6 @@
+package com.example.demo.entity;
+
+public enum RollupPeriod {
+    DAY,    // Theo ngày
+    MONTH   // Theo tháng (periodStart = ngày đầu tháng)
+}
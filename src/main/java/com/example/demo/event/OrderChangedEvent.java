@@ -0,0 +1,35 @@
+package com.example.demo.event;
+
+import com.example.demo.entity.Order;
+import lombok.Getter;
+
+/**
+ * Phát ra từ AdminOrderService mỗi khi đơn hàng được tạo, đổi trạng thái hoặc bị xóa.
+ */
+@Getter
+public class OrderChangedEvent {
+
+    public enum Type {
+        CREATED,
+        STATUS_CHANGED,
+        DELETED
+    }
+
+    private final Long orderId;
+    private final Type type;
+    private final String status;
+    private final String customerName;
+    private final String customerEmail;
+
+    public OrderChangedEvent(Order order, Type type) {
+        this(order.getId(), type, order.getStatus().name(), order.getCustomerName(), order.getCustomerEmail());
+    }
+
+    public OrderChangedEvent(Long orderId, Type type, String status, String customerName, String customerEmail) {
+        this.orderId = orderId;
+        this.type = type;
+        this.status = status;
+        this.customerName = customerName;
+        this.customerEmail = customerEmail;
+    }
+}
@@ -0,0 +1,18 @@
+package com.example.demo.event;
+
+import lombok.Getter;
+
+import java.util.Set;
+
+/**
+ * Phát ra khi thông tin hoặc tồn kho sản phẩm thay đổi; {@code categories} là các danh mục bị ảnh hưởng.
+ */
+@Getter
+public class ProductCatalogChangedEvent {
+
+    private final Set<String> categories;
+
+    public ProductCatalogChangedEvent(Set<String> categories) {
+        this.categories = categories;
+    }
+}
@@ -0,0 +1,51 @@
+package com.example.demo.event;
+
+import com.example.demo.entity.Product;
+import lombok.Getter;
+
+import java.math.BigDecimal;
+
+/**
+ * Phát ra từ AdminProductService và ProductImportService khi sản phẩm được tạo, sửa hoặc xóa; mang đủ
+ * dữ liệu để cập nhật chỉ mục tìm kiếm mà không phải đọc lại DB.
+ */
+@Getter
+public class ProductChangedEvent {
+
+    public enum Type {
+        UPSERTED,
+        DELETED
+    }
+
+    private final Long productId;
+    private final Type type;
+    private final Long version;
+    private final String name;
+    private final String description;
+    private final String category;
+    private final BigDecimal price;
+    private final Integer stock;
+
+    public ProductChangedEvent(Product product, Type type) {
+        this.productId = product.getId();
+        this.type = type;
+        this.version = product.getVersion();
+        this.name = product.getName();
+        this.description = product.getDescription();
+        this.category = product.getCategory();
+        this.price = product.getPrice();
+        this.stock = product.getStock();
+    }
+
+    public ProductChangedEvent(Long productId, Long version, String name, String description, String category,
+                               BigDecimal price, Integer stock) {
+        this.productId = productId;
+        this.type = Type.UPSERTED;
+        this.version = version;
+        this.name = name;
+        this.description = description;
+        this.category = category;
+        this.price = price;
+        this.stock = stock;
+    }
+}
@@ -0,0 +1,18 @@
+package com.example.demo.event;
+
+import lombok.Getter;
+
+import java.util.Map;
+
+/**
+ * Phát ra khi tồn kho thay đổi qua đường đặt/hủy đơn; {@code stocks} là tồn kho mới theo id sản phẩm.
+ */
+@Getter
+public class ProductStockChangedEvent {
+
+    private final Map<Long, Integer> stocks;
+
+    public ProductStockChangedEvent(Map<Long, Integer> stocks) {
+        this.stocks = stocks;
+    }
+}
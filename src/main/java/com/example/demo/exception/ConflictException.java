@@ -0,0 +1,22 @@
+package com.example.demo.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+/**
+ * Trả 409 khi dữ liệu đã bị thay đổi (version hoặc trạng thái không còn khớp); kèm trạng thái hiện tại
+ * để client hiển thị lại và quyết định thử lại.
+ */
+public class ConflictException extends ResponseStatusException {
+
+    private final transient Object current;
+
+    public ConflictException(String reason, Object current) {
+        super(HttpStatus.CONFLICT, reason);
+        this.current = current;
+    }
+
+    public Object getCurrent() {
+        return current;
+    }
+}
@@ -0,0 +1,27 @@
+package com.example.demo.mapper;
+
+import com.example.demo.dto.CourseDetailDto;
+import com.example.demo.dto.CourseDto;
+import com.example.demo.dto.EnrolledCourseDto;
+import com.example.demo.dto.LessonDto;
+import com.example.demo.entity.Course;
+import com.example.demo.entity.Lesson;
+import com.example.demo.entity.Registration;
+import org.mapstruct.Mapper;
+import org.mapstruct.Mapping;
+
+@Mapper(config = MapperSettings.class)
+public interface CourseMapper {
+
+    @Mapping(target = "category", source = "category.name")
+    CourseDto toDto(Course course);
+
+    CourseDetailDto toDetailDto(Course course);
+
+    @Mapping(target = "lessonId", source = "id")
+    LessonDto toLessonDto(Lesson lesson);
+
+    @Mapping(target = "courseId", source = "course.id")
+    @Mapping(target = "title", source = "course.title")
+    EnrolledCourseDto toEnrolledCourseDto(Registration registration);
+}
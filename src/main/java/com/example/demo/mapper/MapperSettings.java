@@ -0,0 +1,14 @@
+package com.example.demo.mapper;
+
+import org.mapstruct.MapperConfig;
+import org.mapstruct.MappingConstants;
+import org.mapstruct.ReportingPolicy;
+
+/**
+ * Cấu hình chung cho các mapper MapStruct: sinh Spring bean, trường đích chưa được map là lỗi biên dịch
+ * (thêm trường mới vào DTO/entity phải khai báo rõ cách map hoặc bỏ qua).
+ */
+@MapperConfig(componentModel = MappingConstants.ComponentModel.SPRING,
+        unmappedTargetPolicy = ReportingPolicy.ERROR)
+public interface MapperSettings {
+}
@@ -0,0 +1,19 @@
+package com.example.demo.mapper;
+
+import com.example.demo.dto.OrderItemResponse;
+import com.example.demo.dto.OrderResponse;
+import com.example.demo.entity.Order;
+import com.example.demo.entity.OrderItem;
+import org.mapstruct.Mapper;
+import org.mapstruct.Mapping;
+
+@Mapper(config = MapperSettings.class)
+public interface OrderMapper {
+
+    @Mapping(target = "itemCount", expression = "java(order.getItems().size())")
+    OrderResponse toResponse(Order order);
+
+    @Mapping(target = "productId", source = "product.id")
+    @Mapping(target = "name", source = "product.name")
+    OrderItemResponse toItemResponse(OrderItem item);
+}
@@ -0,0 +1,27 @@
+package com.example.demo.mapper;
+
+import com.example.demo.dto.ProductRequest;
+import com.example.demo.dto.ProductResponse;
+import com.example.demo.entity.Product;
+import org.mapstruct.Mapper;
+import org.mapstruct.Mapping;
+import org.mapstruct.MappingTarget;
+
+@Mapper(config = MapperSettings.class)
+public interface ProductMapper {
+
+    ProductResponse toResponse(Product product);
+
+    @Mapping(target = "id", ignore = true)
+    @Mapping(target = "createdAt", ignore = true)
+    @Mapping(target = "version", ignore = true)
+    Product toEntity(ProductRequest request);
+
+    /**
+     * Chép dữ liệu request vào sản phẩm đã có; id, ngày tạo và version giữ nguyên.
+     */
+    @Mapping(target = "id", ignore = true)
+    @Mapping(target = "createdAt", ignore = true)
+    @Mapping(target = "version", ignore = true)
+    void updateEntity(ProductRequest request, @MappingTarget Product product);
+}
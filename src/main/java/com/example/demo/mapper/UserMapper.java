@@ -0,0 +1,16 @@
+package com.example.demo.mapper;
+
+import com.example.demo.dto.EnrolledCourseDto;
+import com.example.demo.dto.UserInfoDto;
+import com.example.demo.entity.User;
+import org.mapstruct.Mapper;
+import org.mapstruct.Mapping;
+
+import java.util.List;
+
+@Mapper(config = MapperSettings.class)
+public interface UserMapper {
+
+    @Mapping(target = "avatar", source = "user.avatar", defaultValue = "https://via.placeholder.com/150")
+    UserInfoDto toInfoDto(User user, List<EnrolledCourseDto> enrolledCourses);
+}
@@ -1,5 +1,6 @@
 package com.example.demo.repository;
 
+import com.example.demo.dto.CourseCatalogItem;
 import com.example.demo.entity.Course;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
@@ -7,7 +8,6 @@ import org.springframework.data.repository.query.Param;
 
 import java.time.LocalDateTime;
 import java.util.List;
-import java.util.Map;
 
 public interface CourseRepository extends JpaRepository<Course, Long> {
     
@@ -15,6 +15,12 @@ public interface CourseRepository extends JpaRepository<Course, Long> {
     
     long countByCreatedAtBefore(LocalDateTime date);
     
+    // Mỗi dòng: [tên danh mục, số khóa học]
     @Query("SELECT c.category.name as categoryName, COUNT(c) as courseCount FROM Course c GROUP BY c.category.name")
-    Map<String, Long> countCoursesByCategory();
+    List<Object[]> countCoursesByCategory();
+
+    // Danh mục khóa học công khai: một câu JOIN, không nạp entity/category riêng từng dòng
+    @Query("SELECT new com.example.demo.dto.CourseCatalogItem(c.id, c.title, c.description, c.thumbnail, " +
+           "c.videoUrl, c.createdAt, cat.id, cat.name) FROM Course c LEFT JOIN c.category cat ORDER BY c.id")
+    List<CourseCatalogItem> findCatalog();
 }
\ No newline at end of file
@@ -0,0 +1,17 @@
+package com.example.demo.repository;
+
+import com.example.demo.entity.DashboardRollup;
+import com.example.demo.entity.RollupPeriod;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+
+public interface DashboardRollupRepository extends JpaRepository<DashboardRollup, Long> {
+
+    Optional<DashboardRollup> findByPeriodTypeAndPeriodStart(RollupPeriod periodType, LocalDate periodStart);
+
+    List<DashboardRollup> findByPeriodTypeAndPeriodStartBetweenOrderByPeriodStart(
+            RollupPeriod periodType, LocalDate from, LocalDate to);
+}
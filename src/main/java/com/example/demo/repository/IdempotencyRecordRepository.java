@@ -0,0 +1,41 @@
+package com.example.demo.repository;
+
+import com.example.demo.entity.IdempotencyRecord;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+public interface IdempotencyRecordRepository extends JpaRepository<IdempotencyRecord, Long> {
+
+    Optional<IdempotencyRecord> findByIdempotencyKey(String idempotencyKey);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT r FROM IdempotencyRecord r WHERE r.id = :id")
+    Optional<IdempotencyRecord> lockById(@Param("id") Long id);
+
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM IdempotencyRecord r WHERE r.id = :id AND r.status = com.example.demo.entity.IdempotencyRecord.Status.IN_PROGRESS")
+    int deleteInProgress(@Param("id") Long id);
+
+    /**
+     * Thu hồi dòng IN_PROGRESS đã quá hạn lease (tiến trình giữ chỗ đã dừng); trả về 1 nếu thu hồi được.
+     */
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM IdempotencyRecord r WHERE r.id = :id AND r.createdAt < :staleBefore " +
+           "AND r.status = com.example.demo.entity.IdempotencyRecord.Status.IN_PROGRESS")
+    int deleteStaleInProgress(@Param("id") Long id, @Param("staleBefore") LocalDateTime staleBefore);
+
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM IdempotencyRecord r WHERE r.createdAt < :before")
+    int deleteOlderThan(@Param("before") LocalDateTime before);
+}
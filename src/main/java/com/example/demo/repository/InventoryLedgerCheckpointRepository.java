@@ -0,0 +1,7 @@
+package com.example.demo.repository;
+
+import com.example.demo.entity.InventoryLedgerCheckpoint;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+public interface InventoryLedgerCheckpointRepository extends JpaRepository<InventoryLedgerCheckpoint, Integer> {
+}
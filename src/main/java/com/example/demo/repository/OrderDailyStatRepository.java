@@ -0,0 +1,12 @@
+package com.example.demo.repository;
+
+import com.example.demo.entity.OrderDailyStat;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.time.LocalDate;
+import java.util.List;
+
+public interface OrderDailyStatRepository extends JpaRepository<OrderDailyStat, Long> {
+
+    List<OrderDailyStat> findByDayBetween(LocalDate from, LocalDate to);
+}
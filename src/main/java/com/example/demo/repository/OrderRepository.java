@@ -1,8 +1,9 @@
 package com.example.demo.repository;
 
 import com.example.demo.entity.Order;
-import org.springframework.data.domain.Sort;
+import com.example.demo.entity.OrderStatus;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
@@ -34,13 +35,14 @@ public interface OrderRepository extends JpaRepository<Order, Long> {
            "(:search IS NULL OR LOWER(o.customerName) LIKE LOWER(CONCAT('%', :search, '%')) OR " +
            "LOWER(o.customerEmail) LIKE LOWER(CONCAT('%', :search, '%')))")
     List<Order> findByFilters(@Param("status") String status, @Param("search") String search);
-    
+
     /**
-     * Find orders with optional status and search filters with sorting
+     * Đổi trạng thái chỉ khi đơn hàng vẫn ở trạng thái và version đã đọc (một câu UPDATE, không khóa trước).
+     * Trả về 0 nếu đã có thay đổi khác chen vào.
      */
-    @Query("SELECT o FROM Order o WHERE " +
-           "(:status IS NULL OR o.status = :status) AND " +
-           "(:search IS NULL OR LOWER(o.customerName) LIKE LOWER(CONCAT('%', :search, '%')) OR " +
-           "LOWER(o.customerEmail) LIKE LOWER(CONCAT('%', :search, '%')))")
-    List<Order> findByFiltersWithSort(@Param("status") String status, @Param("search") String search, Sort sort);
-}
\ No newline at end of file
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Order o SET o.status = :to, o.version = o.version + 1 " +
+           "WHERE o.id = :id AND o.status = :from AND o.version = :version")
+    int updateStatusIfCurrent(@Param("id") Long id, @Param("from") OrderStatus from,
+                              @Param("to") OrderStatus to, @Param("version") Long version);
+}
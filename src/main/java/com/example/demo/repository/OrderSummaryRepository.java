@@ -0,0 +1,132 @@
+package com.example.demo.repository;
+
+import com.example.demo.dto.OrderItemResponse;
+import com.example.demo.dto.OrderResponse;
+import com.example.demo.dto.OrderSortKey;
+import com.example.demo.entity.OrderStatus;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Truy vấn danh sách đơn hàng dạng projection (không nạp entity, không khởi tạo collection):
+ * một truy vấn cho trang đơn hàng kèm số dòng sản phẩm, một truy vấn cho các dòng sản phẩm của cả trang.
+ */
+@Repository
+@RequiredArgsConstructor
+public class OrderSummaryRepository {
+
+    private static final String SELECT_ORDERS = "SELECT o.id, o.customer_name, o.customer_email, o.total_price, " +
+            "o.status, o.created_at, o.version, " +
+            "(SELECT COUNT(*) FROM order_items oi WHERE oi.order_id = o.id) AS item_count " +
+            "FROM orders o WHERE 1 = 1";
+
+    private static final String SELECT_ITEMS = "SELECT oi.order_id, oi.product_id, p.name, oi.quantity, oi.price " +
+            "FROM order_items oi JOIN products p ON p.id = oi.product_id " +
+            "WHERE oi.order_id IN (%s) ORDER BY oi.order_id, oi.id";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Lấy các đơn hàng đứng sau con trỏ ({@code afterCreatedAt}, {@code afterId}) theo thứ tự đã chọn;
+     * {@code afterCreatedAt} null nghĩa là con trỏ nằm trên một đơn không có ngày tạo.
+     * {@code limit} null nghĩa là không giới hạn; {@code orderIds} khác null giới hạn trong các id đó
+     * (kết quả từ chỉ mục tìm kiếm).
+     */
+    public List<OrderResponse> findOrders(OrderStatus status, String search, Collection<Long> orderIds,
+                                          OrderSortKey sortKey, boolean ascending,
+                                          LocalDateTime afterCreatedAt, Long afterId, Integer limit) {
+        StringBuilder sql = new StringBuilder(SELECT_ORDERS);
+        List<Object> args = new ArrayList<>();
+        if (orderIds != null) {
+            if (orderIds.isEmpty()) {
+                return new ArrayList<>();
+            }
+            sql.append(" AND o.id IN (").append(String.join(", ", Collections.nCopies(orderIds.size(), "?"))).append(")");
+            args.addAll(orderIds);
+        }
+        if (status != null) {
+            sql.append(" AND o.status = ?");
+            args.add(status.name());
+        }
+        if (search != null && !search.isBlank()) {
+            String pattern = "%" + search.trim().toLowerCase(Locale.ROOT) + "%";
+            sql.append(" AND (LOWER(o.customer_name) LIKE ? OR LOWER(o.customer_email) LIKE ?)");
+            args.add(pattern);
+            args.add(pattern);
+        }
+
+        String op = ascending ? ">" : "<";
+        String dir = ascending ? "ASC" : "DESC";
+        if (sortKey == OrderSortKey.CREATED_AT) {
+            // MySQL xếp NULL trước mọi giá trị khi tăng dần và sau cùng khi giảm dần
+            if (afterId != null && afterCreatedAt == null) {
+                sql.append(ascending
+                        ? " AND ((o.created_at IS NULL AND o.id > ?) OR o.created_at IS NOT NULL)"
+                        : " AND o.created_at IS NULL AND o.id < ?");
+                args.add(afterId);
+            } else if (afterId != null) {
+                sql.append(" AND (o.created_at ").append(op).append(" ? OR (o.created_at = ? AND o.id ")
+                        .append(op).append(" ?)").append(ascending ? ")" : " OR o.created_at IS NULL)");
+                args.add(Timestamp.valueOf(afterCreatedAt));
+                args.add(Timestamp.valueOf(afterCreatedAt));
+                args.add(afterId);
+            }
+            sql.append(" ORDER BY o.created_at ").append(dir).append(", o.id ").append(dir);
+        } else {
+            if (afterId != null) {
+                sql.append(" AND o.id ").append(op).append(" ?");
+                args.add(afterId);
+            }
+            sql.append(" ORDER BY o.id ").append(dir);
+        }
+        if (limit != null) {
+            sql.append(" LIMIT ?");
+            args.add(limit);
+        }
+
+        return jdbcTemplate.query(sql.toString(), (rs, rowNum) -> {
+            Timestamp createdAt = rs.getTimestamp("created_at");
+            return OrderResponse.builder()
+                    .id(rs.getLong("id"))
+                    .customerName(rs.getString("customer_name"))
+                    .customerEmail(rs.getString("customer_email"))
+                    .totalPrice(rs.getBigDecimal("total_price"))
+                    .status(rs.getString("status"))
+                    .createdAt(createdAt != null ? createdAt.toLocalDateTime() : null)
+                    .itemCount(rs.getInt("item_count"))
+                    .version(rs.getLong("version"))
+                    .build();
+        }, args.toArray());
+    }
+
+    /**
+     * Dòng sản phẩm của nhiều đơn hàng trong một truy vấn, nhóm theo id đơn hàng.
+     */
+    public Map<Long, List<OrderItemResponse>> findItems(Collection<Long> orderIds) {
+        if (orderIds.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        String placeholders = String.join(", ", Collections.nCopies(orderIds.size(), "?"));
+        Map<Long, List<OrderItemResponse>> itemsByOrder = new HashMap<>();
+        jdbcTemplate.query(String.format(SELECT_ITEMS, placeholders), rs -> {
+            OrderItemResponse item = new OrderItemResponse();
+            item.setProductId(rs.getLong("product_id"));
+            item.setName(rs.getString("name"));
+            item.setQuantity(rs.getInt("quantity"));
+            item.setPrice(rs.getBigDecimal("price"));
+            itemsByOrder.computeIfAbsent(rs.getLong("order_id"), id -> new ArrayList<>()).add(item);
+        }, orderIds.toArray());
+        return itemsByOrder;
+    }
+}
@@ -0,0 +1,11 @@
+package com.example.demo.repository;
+
+import com.example.demo.entity.ProductCategoryStats;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.util.List;
+
+public interface ProductCategoryStatsRepository extends JpaRepository<ProductCategoryStats, String> {
+
+    List<ProductCategoryStats> findByProductCountGreaterThanOrderByProductCountDescCategoryAsc(long productCount);
+}
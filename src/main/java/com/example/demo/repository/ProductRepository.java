@@ -3,10 +3,13 @@ package com.example.demo.repository;
 import com.example.demo.entity.Product;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
+
 public interface ProductRepository extends JpaRepository<Product, Long> {
     @Query("SELECT p FROM Product p WHERE " +
            "(:category IS NULL OR p.category = :category) AND " +
@@ -16,4 +19,21 @@ public interface ProductRepository extends JpaRepository<Product, Long> {
         @Param("search") String search,
         Pageable pageable
     );
-}
\ No newline at end of file
+
+    // Slice: lấy thêm một dòng để biết còn trang sau, không chạy COUNT
+    @Query("SELECT p FROM Product p WHERE " +
+           "(:category IS NULL OR p.category = :category) AND " +
+           "(:search IS NULL OR LOWER(p.name) LIKE LOWER(CONCAT('%', :search, '%')))")
+    Slice<Product> findSliceByFilters(
+        @Param("category") String category,
+        @Param("search") String search,
+        Pageable pageable
+    );
+
+    @Query("SELECT COUNT(p) FROM Product p WHERE " +
+           "(:category IS NULL OR p.category = :category) AND " +
+           "(:search IS NULL OR LOWER(p.name) LIKE LOWER(CONCAT('%', :search, '%')))")
+    long countByFilters(@Param("category") String category, @Param("search") String search);
+
+    Page<Product> findByIdIn(Collection<Long> ids, Pageable pageable);
+}
@@ -1,6 +1,7 @@
 package com.example.demo.security;
 
 import com.example.demo.service.JwtService;
+import io.jsonwebtoken.JwtException;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
@@ -8,15 +9,19 @@ import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
 import org.springframework.util.StringUtils;
 
 import java.io.IOException;
+import java.util.List;
 
 @Component
 @RequiredArgsConstructor
@@ -24,6 +29,12 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
     private final JwtService jwtService;
     private final UserDetailsService userDetailsService;
+    private final SecurityEpochService securityEpochService;
+
+    // Dựng principal trực tiếp từ claim khi epoch trong token vẫn còn hiệu lực
+    @Value("${app.security.jwt.stateless:true}")
+    private boolean statelessPrincipal;
+
     private static final Logger logger = LoggerFactory.getLogger(JwtAuthenticationFilter.class);
 
     @Override
@@ -51,16 +62,44 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
             return;
         }
         
+        if (SecurityContextHolder.getContext().getAuthentication() != null) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+
         String jwt = authHeader.substring(7);
-        String userEmail = jwtService.extractUsername(jwt);
-        if (userEmail != null && SecurityContextHolder.getContext().getAuthentication() == null) {
-            UserDetails userDetails = userDetailsService.loadUserByUsername(userEmail);
-            if (jwtService.isTokenValid(jwt, userDetails)) {
-                UsernamePasswordAuthenticationToken authToken = new UsernamePasswordAuthenticationToken(
-                        userDetails, null, userDetails.getAuthorities());
-                SecurityContextHolder.getContext().setAuthentication(authToken);
+        try {
+            // Chỉ parse + kiểm tra chữ ký một lần (hoặc lấy từ cache) cho mỗi request
+            VerifiedToken token = jwtService.verify(jwt);
+            if (token.getSubject() == null) {
+                filterChain.doFilter(request, response);
+                return;
+            }
+            if (statelessPrincipal && securityEpochService.isCurrent(token.getSubject(), token.getSecurityEpoch())) {
+                JwtUserPrincipal principal = new JwtUserPrincipal(
+                        token.getSubject(), token.getUserId(), toAuthorities(token.getRoles()));
+                SecurityContextHolder.getContext().setAuthentication(new UsernamePasswordAuthenticationToken(
+                        principal, null, principal.getAuthorities()));
+            } else {
+                // Token cũ hơn lần đổi role/khóa gần nhất: kiểm tra lại với database
+                UserDetails userDetails = userDetailsService.loadUserByUsername(token.getSubject());
+                if (userDetails.isAccountNonLocked() && jwtService.isTokenValid(token, userDetails)) {
+                    UsernamePasswordAuthenticationToken authToken = new UsernamePasswordAuthenticationToken(
+                            userDetails, null, userDetails.getAuthorities());
+                    SecurityContextHolder.getContext().setAuthentication(authToken);
+                }
             }
+        } catch (JwtException | IllegalArgumentException | UsernameNotFoundException e) {
+            // Token không hợp lệ: tiếp tục như request chưa xác thực
+            logger.debug("Rejected JWT for {}: {}", path, e.getMessage());
         }
         filterChain.doFilter(request, response);
     }
+
+    private static List<SimpleGrantedAuthority> toAuthorities(List<String> roles) {
+        // Role trong DB có thể lưu có hoặc không có prefix "ROLE_"
+        return roles.stream()
+                .map(role -> new SimpleGrantedAuthority(role.startsWith("ROLE_") ? role : "ROLE_" + role))
+                .toList();
+    }
 }
\ No newline at end of file
@@ -0,0 +1,21 @@
+package com.example.demo.security;
+
+import lombok.Getter;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.userdetails.User;
+
+import java.util.Collection;
+
+/**
+ * Principal được dựng trực tiếp từ các claim của JWT (không truy vấn database).
+ */
+@Getter
+public class JwtUserPrincipal extends User {
+
+    private final Long userId;
+
+    public JwtUserPrincipal(String email, Long userId, Collection<? extends GrantedAuthority> authorities) {
+        super(email, "", authorities);
+        this.userId = userId;
+    }
+}
@@ -0,0 +1,56 @@
+package com.example.demo.security;
+
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * "Security epoch" trong bộ nhớ cho từng user (theo email).
+ * Mỗi token mang epoch tại thời điểm phát hành; khi admin đổi role, khóa hoặc xóa
+ * tài khoản thì epoch được tăng, các token cũ hơn sẽ không còn được tin tưởng
+ * ở chế độ stateless và filter phải kiểm tra lại với database.
+ *
+ * Epoch mặc định là thời điểm khởi động, nên sau khi restart mọi token phát hành
+ * trước đó đều đi qua đường kiểm tra database một lần nữa.
+ */
+@Component
+public class SecurityEpochService {
+
+    private final long bootEpoch = System.currentTimeMillis();
+    private final Map<String, Long> epochs = new ConcurrentHashMap<>();
+
+    public long currentEpoch(String email) {
+        return epochs.getOrDefault(email, bootEpoch);
+    }
+
+    /**
+     * Tăng epoch ngay lập tức và một lần nữa sau khi transaction hiện tại commit: token phát hành
+     * giữa hai thời điểm đó mang role/trạng thái khóa cũ nên cũng không được tin tưởng.
+     */
+    public void bump(String email) {
+        if (email == null) {
+            return;
+        }
+        increment(email);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    increment(email);
+                }
+            });
+        }
+    }
+
+    public boolean isCurrent(String email, Long tokenEpoch) {
+        return tokenEpoch != null && tokenEpoch >= currentEpoch(email);
+    }
+
+    private void increment(String email) {
+        epochs.merge(email, Math.max(System.currentTimeMillis(), bootEpoch + 1),
+                (current, candidate) -> Math.max(current + 1, candidate));
+    }
+}
@@ -0,0 +1,17 @@
+package com.example.demo.security;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Ảnh chụp bất biến các thông tin bảo mật của một user, dùng cho cache đăng nhập.
+ */
+@Getter
+@RequiredArgsConstructor
+public class UserAccount {
+    private final Long id;
+    private final String email;
+    private final String passwordHash;
+    private final String role;
+    private final boolean locked;
+}
@@ -0,0 +1,24 @@
+package com.example.demo.security;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Kết quả đã xác thực chữ ký của một JWT: chỉ giữ các claim mà filter cần,
+ * để các request sau với cùng token không phải parse lại.
+ */
+@Getter
+@RequiredArgsConstructor
+public class VerifiedToken {
+    private final String subject;
+    private final List<String> roles;
+    private final Long userId;
+    private final Long securityEpoch;
+    private final long expiresAtMillis;
+
+    public boolean isExpired(long nowMillis) {
+        return expiresAtMillis <= nowMillis;
+    }
+}
@@ -0,0 +1,73 @@
+package com.example.demo.security;
+
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Cache giới hạn kích thước (LRU) cho các token đã xác thực chữ ký.
+ * Khóa là SHA-256 của token nên không giữ nguyên chuỗi bearer token trong bộ nhớ;
+ * mục sẽ tự hết hạn cùng thời điểm hết hạn của token.
+ */
+@Component
+public class VerifiedTokenCache {
+
+    private static final int MAX_ENTRIES = 10_000;
+
+    private static final ThreadLocal<MessageDigest> SHA_256 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    });
+
+    private final Map<String, VerifiedToken> entries = new LinkedHashMap<>(256, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, VerifiedToken> eldest) {
+            return size() > MAX_ENTRIES;
+        }
+    };
+
+    public VerifiedToken get(String token) {
+        String key = digest(token);
+        synchronized (entries) {
+            VerifiedToken cached = entries.get(key);
+            if (cached == null) {
+                return null;
+            }
+            if (cached.isExpired(System.currentTimeMillis())) {
+                entries.remove(key);
+                return null;
+            }
+            return cached;
+        }
+    }
+
+    public void put(String token, VerifiedToken verified) {
+        if (verified.isExpired(System.currentTimeMillis())) {
+            return;
+        }
+        String key = digest(token);
+        synchronized (entries) {
+            entries.put(key, verified);
+        }
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    private static String digest(String token) {
+        MessageDigest md = SHA_256.get();
+        md.reset();
+        return Base64.getEncoder().encodeToString(md.digest(token.getBytes(StandardCharsets.UTF_8)));
+    }
+}
@@ -4,12 +4,17 @@ import com.example.demo.dto.CategoryDistributionDTO;
 import com.example.demo.dto.DashboardStatsDTO;
 import com.example.demo.dto.MonthlyRevenueDTO;
 import com.example.demo.dto.OrderDTO;
+import com.example.demo.entity.DashboardRollup;
 import com.example.demo.entity.Order;
-import com.example.demo.repository.CategoryRepository;
+import com.example.demo.exception.ServiceOverloadedException;
 import com.example.demo.repository.OrderRepository;
-import com.example.demo.repository.UserRepository;
 import com.example.demo.repository.CourseRepository;
-import lombok.RequiredArgsConstructor;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.math.BigDecimal;
@@ -17,33 +22,177 @@ import java.time.LocalDateTime;
 import java.time.YearMonth;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
+/**
+ * Thống kê dashboard: các truy vấn độc lập chạy song song trên {@code dashboardQueryExecutor},
+ * mỗi truy vấn có timeout riêng. Kết quả tốt gần nhất được giữ lại và phục vụ theo kiểu
+ * stale-while-revalidate: quá hạn thì trả bản cũ ngay và làm mới ở nền trên {@code dashboardRefreshExecutor}.
+ * Truy vấn con lỗi thì dùng lại giá trị của bản trước và đánh dấu {@code partial}; chưa có bản trước
+ * thì trả 503 thay vì hiển thị số 0.
+ */
 @Service
-@RequiredArgsConstructor
 public class AdminDashboardService {
 
+    private static final Logger logger = LoggerFactory.getLogger(AdminDashboardService.class);
+
     private final OrderRepository orderRepository;
-    private final UserRepository userRepository;
     private final CourseRepository courseRepository;
-    private final CategoryRepository categoryRepository;
+    private final DashboardRollupService rollupService;
+    private final ThreadPoolExecutor queryExecutor;
+    private final ThreadPoolExecutor refreshExecutor;
+    private final MeterRegistry meterRegistry;
+    private final long queryTimeoutMillis;
+    private final long freshMillis;
+
+    private final AtomicReference<StatsSnapshot> snapshot = new AtomicReference<>();
+    private final AtomicBoolean refreshing = new AtomicBoolean();
+
+    public AdminDashboardService(OrderRepository orderRepository,
+                                 CourseRepository courseRepository,
+                                 DashboardRollupService rollupService,
+                                 @Qualifier("dashboardQueryExecutor") ThreadPoolExecutor queryExecutor,
+                                 @Qualifier("dashboardRefreshExecutor") ThreadPoolExecutor refreshExecutor,
+                                 MeterRegistry meterRegistry,
+                                 @Value("${app.dashboard.stats.query-timeout-ms:2000}") long queryTimeoutMillis,
+                                 @Value("${app.dashboard.stats.fresh-seconds:30}") long freshSeconds) {
+        this.orderRepository = orderRepository;
+        this.courseRepository = courseRepository;
+        this.rollupService = rollupService;
+        this.queryExecutor = queryExecutor;
+        this.refreshExecutor = refreshExecutor;
+        this.meterRegistry = meterRegistry;
+        this.queryTimeoutMillis = queryTimeoutMillis;
+        this.freshMillis = freshSeconds * 1000;
+    }
 
     public DashboardStatsDTO getDashboardStats() {
-        // Lấy thống kê hiện tại
-        long currentTotalUsers = userRepository.count();
-        long currentTotalCourses = courseRepository.count();
-        long currentTotalOrders = orderRepository.count();
-        BigDecimal currentTotalRevenue = orderRepository.calculateTotalRevenue();
+        StatsSnapshot current = snapshot.get();
+        if (current == null) {
+            // Chưa có bản nào: phải chờ lần tính đầu tiên
+            return refresh();
+        }
+        if (System.currentTimeMillis() - current.computedAt() > freshMillis) {
+            refreshInBackground();
+        }
+        return current.stats();
+    }
+
+    /**
+     * Đánh dấu bản hiện tại là cũ; lần đọc tiếp theo sẽ kích hoạt làm mới ở nền.
+     */
+    public void invalidate() {
+        StatsSnapshot current = snapshot.get();
+        if (current != null) {
+            snapshot.compareAndSet(current, new StatsSnapshot(current.parts(), current.stats(), 0L));
+        }
+    }
+
+    /**
+     * Tính lại ngay (đồng thời) và cập nhật bản snapshot. Kết quả một phần không được coi là mới:
+     * snapshot giữ thời điểm tính của bản trước để lần đọc sau làm mới lại.
+     */
+    public DashboardStatsDTO refresh() {
+        StatsSnapshot previous = snapshot.get();
+        List<String> staleParts = new ArrayList<>();
+        StatsParts parts = fetchParts(previous != null ? previous.parts() : null, staleParts);
+        if (previous == null && !staleParts.isEmpty()) {
+            throw new ServiceOverloadedException("Thống kê dashboard tạm thời không khả dụng", 5);
+        }
+        DashboardStatsDTO stats = buildStats(parts);
+        stats.setPartial(!staleParts.isEmpty());
+        stats.setStaleParts(staleParts);
+        long computedAt = staleParts.isEmpty() ? System.currentTimeMillis() : previous.computedAt();
+        StatsSnapshot next = new StatsSnapshot(parts, stats, computedAt);
+        snapshot.set(next);
+        return next.stats();
+    }
+
+    private void refreshInBackground() {
+        if (!refreshing.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            CompletableFuture.runAsync(this::refresh, refreshExecutor)
+                    .whenComplete((ignored, error) -> {
+                        refreshing.set(false);
+                        if (error != null) {
+                            logger.warn("Dashboard stats refresh failed: {}", error.getMessage());
+                        }
+                    });
+        } catch (RejectedExecutionException e) {
+            refreshing.set(false);
+        }
+    }
+
+    /**
+     * {@code previous} null khi chưa có bản nào; tên các truy vấn con lỗi được ghi vào {@code staleParts}.
+     */
+    private StatsParts fetchParts(StatsParts previous, List<String> staleParts) {
+        YearMonth currentMonth = YearMonth.now();
+        CompletableFuture<Part<DashboardRollup>> total =
+                query("total", rollupService::getTotal, previous != null ? previous.total() : null);
+        CompletableFuture<Part<DashboardRollup>> thisMonth =
+                query("current_month", () -> rollupService.getMonth(currentMonth),
+                        previous != null ? previous.thisMonth() : null);
+        CompletableFuture<Part<DashboardRollup>> lastMonth =
+                query("last_month", () -> rollupService.getMonth(currentMonth.minusMonths(1)),
+                        previous != null ? previous.lastMonth() : null);
+        CompletableFuture<Part<List<DashboardRollup>>> months =
+                query("revenue_by_month", () -> rollupService.getMonths(currentMonth.withMonth(1), currentMonth),
+                        previous != null ? previous.months() : null);
+        CompletableFuture<Part<List<CategoryDistributionDTO>>> categories =
+                query("category_distribution", this::getCategoryDistribution,
+                        previous != null ? previous.categories() : null);
+        return new StatsParts(total.join().value(staleParts), thisMonth.join().value(staleParts),
+                lastMonth.join().value(staleParts), months.join().value(staleParts),
+                categories.join().value(staleParts));
+    }
+
+    /**
+     * Chạy một truy vấn con trên pool riêng, đo thời gian và trả về giá trị cũ (đánh dấu stale)
+     * nếu lỗi hoặc quá hạn.
+     */
+    private <T> CompletableFuture<Part<T>> query(String name, Supplier<T> supplier, T fallback) {
+        Timer timer = Timer.builder("dashboard.query").tag("query", name).register(meterRegistry);
+        CompletableFuture<T> future;
+        try {
+            future = CompletableFuture.supplyAsync(() -> timer.record(supplier), queryExecutor);
+        } catch (RejectedExecutionException e) {
+            future = CompletableFuture.failedFuture(e);
+        }
+        return future
+                .orTimeout(queryTimeoutMillis, TimeUnit.MILLISECONDS)
+                .thenApply(value -> new Part<>(name, value, false))
+                .exceptionally(error -> {
+                    logger.warn("Dashboard query '{}' failed, serving previous value: {}", name, error.toString());
+                    return new Part<>(name, fallback, true);
+                });
+    }
 
-        // Lấy thống kê tháng trước
-        LocalDateTime startOfLastMonth = YearMonth.now().minusMonths(1).atDay(1).atStartOfDay();
-        LocalDateTime endOfLastMonth = YearMonth.now().atDay(1).atStartOfDay();
+    private DashboardStatsDTO buildStats(StatsParts parts) {
+        DashboardRollup total = parts.total();
+        DashboardRollup thisMonth = parts.thisMonth();
+        DashboardRollup lastMonth = parts.lastMonth();
 
-        long lastMonthUsers = userRepository.countByCreatedAtBefore(endOfLastMonth);
-        long lastMonthCourses = courseRepository.countByCreatedAtBefore(endOfLastMonth);
-        long lastMonthOrders = orderRepository.countByCreatedAtBetween(startOfLastMonth, endOfLastMonth);
-        BigDecimal lastMonthRevenue = orderRepository.calculateRevenueBetween(startOfLastMonth, endOfLastMonth);
+        // Lấy thống kê hiện tại
+        long currentTotalUsers = total.getNewUsers();
+        long currentTotalCourses = total.getNewCourses();
+        long currentTotalOrders = total.getOrderCount();
+        BigDecimal currentTotalRevenue = total.getRevenue();
+
+        // Lấy thống kê tháng trước (user/khóa học: tổng tính đến hết tháng trước)
+        long lastMonthUsers = total.getNewUsers() - thisMonth.getNewUsers();
+        long lastMonthCourses = total.getNewCourses() - thisMonth.getNewCourses();
+        long lastMonthOrders = lastMonth.getOrderCount();
+        BigDecimal lastMonthRevenue = lastMonth.getRevenue();
 
         // Tính phần trăm thay đổi
         double userChange = calculatePercentageChange(lastMonthUsers, currentTotalUsers);
@@ -55,10 +204,13 @@ public class AdminDashboardService {
         );
 
         // Lấy doanh thu theo tháng
-        List<MonthlyRevenueDTO> revenueByMonth = getRevenueByMonth();
-        
-        // Lấy phân bổ khóa học theo danh mục
-        List<CategoryDistributionDTO> categoryDistribution = getCategoryDistribution();
+        List<MonthlyRevenueDTO> revenueByMonth = parts.months().stream()
+                .filter(row -> row.getOrderCount() > 0)
+                .map(row -> MonthlyRevenueDTO.builder()
+                        .month("Tháng " + row.getPeriodStart().getMonthValue())
+                        .revenue(row.getRevenue())
+                        .build())
+                .collect(Collectors.toList());
 
         return DashboardStatsDTO.builder()
                 .totalUsers(currentTotalUsers)
@@ -66,11 +218,12 @@ public class AdminDashboardService {
                 .totalOrders(currentTotalOrders)
                 .totalRevenue(currentTotalRevenue != null ? currentTotalRevenue : BigDecimal.ZERO)
                 .revenueByMonth(revenueByMonth)
-                .categoryDistribution(categoryDistribution)
+                .categoryDistribution(parts.categories())
                 .userChangePercentage(userChange)
                 .courseChangePercentage(courseChange)
                 .orderChangePercentage(orderChange)
                 .revenueChangePercentage(revenueChange)
+                .generatedAt(LocalDateTime.now())
                 .build();
     }
 
@@ -99,79 +252,37 @@ public List<OrderDTO> getRecentOrders() {
     return result;
 }
 
-    private List<MonthlyRevenueDTO> getRevenueByMonth() {
-        try {
-            LocalDateTime startOfYear = YearMonth.now().withMonth(1).atDay(1).atStartOfDay();
-            
-            // Fallback to match frontend if query fails
-            List<MonthlyRevenueDTO> defaultMonths = new ArrayList<>();
-            for (int i = 1; i <= 6; i++) {
-                defaultMonths.add(MonthlyRevenueDTO.builder()
-                    .month("Tháng " + i)
-                    .revenue(BigDecimal.valueOf(Math.random() * 10000000 + 15000000))
-                    .build());
-            }
-            
-            List<Object[]> data = orderRepository.findMonthlyRevenue(startOfYear);
-            if (data == null || data.isEmpty()) {
-                return defaultMonths;
-            }
-            
-            return data.stream()
-                    .map(row -> {
-                        String month = row[0] != null ? (String) row[0] : "";
-                        BigDecimal revenue = row[1] != null ? (BigDecimal) row[1] : BigDecimal.ZERO;
-                        return MonthlyRevenueDTO.builder()
-                                .month(month)
-                                .revenue(revenue)
-                                .build();
-                    })
-                    .collect(Collectors.toList());
-        } catch (Exception e) {
-            // Log error và trả về giá trị mặc định phù hợp với frontend
-            List<MonthlyRevenueDTO> defaultMonths = new ArrayList<>();
-            for (int i = 1; i <= 6; i++) {
-                defaultMonths.add(MonthlyRevenueDTO.builder()
-                    .month("Tháng " + i)
-                    .revenue(BigDecimal.valueOf(Math.random() * 10000000 + 15000000))
-                    .build());
-            }
-            return defaultMonths;
-        }
-    }
-    
     private List<CategoryDistributionDTO> getCategoryDistribution() {
-        try {
-            Map<String, Long> categoryCounts = courseRepository.countCoursesByCategory();
-            
-            if (categoryCounts == null || categoryCounts.isEmpty()) {
-                // Fallback to match frontend if no data
-                return getDefaultCategoryDistribution();
-            }
-            
-            return categoryCounts.entrySet().stream()
-                .map(entry -> CategoryDistributionDTO.builder()
-                    .name(entry.getKey())
-                    .value(entry.getValue().intValue())
-                    .build())
-                .collect(Collectors.toList());
-        } catch (Exception e) {
-            return getDefaultCategoryDistribution();
-        }
-    }
-    
-    private List<CategoryDistributionDTO> getDefaultCategoryDistribution() {
-        List<CategoryDistributionDTO> defaultDistribution = new ArrayList<>();
-        defaultDistribution.add(CategoryDistributionDTO.builder().name("Lập trình").value(45).build());
-        defaultDistribution.add(CategoryDistributionDTO.builder().name("Thiết kế").value(20).build());
-        defaultDistribution.add(CategoryDistributionDTO.builder().name("Marketing").value(15).build());
-        defaultDistribution.add(CategoryDistributionDTO.builder().name("Ngoại ngữ").value(10).build());
-        defaultDistribution.add(CategoryDistributionDTO.builder().name("Khác").value(10).build());
-        return defaultDistribution;
+        return courseRepository.countCoursesByCategory().stream()
+            .map(row -> CategoryDistributionDTO.builder()
+                .name(row[0] != null ? (String) row[0] : "")
+                .value(((Number) row[1]).intValue())
+                .build())
+            .collect(Collectors.toList());
     }
 
     private double calculatePercentageChange(double oldValue, double newValue) {
         if (oldValue == 0) return newValue > 0 ? 100.0 : 0.0;
         return Math.round(((newValue - oldValue) / oldValue) * 100.0);
     }
+
+    private record StatsParts(DashboardRollup total,
+                              DashboardRollup thisMonth,
+                              DashboardRollup lastMonth,
+                              List<DashboardRollup> months,
+                              List<CategoryDistributionDTO> categories) {
+    }
+
+    private record Part<T>(String name, T value, boolean stale) {
+
+        T value(List<String> staleParts) {
+            if (stale) {
+                staleParts.add(name);
+            }
+            return value;
+        }
+    }
+
+    private record StatsSnapshot(StatsParts parts, DashboardStatsDTO stats, long computedAt) {
+    }
 }
\ No newline at end of file
@@ -2,15 +2,27 @@ package com.example.demo.service;
 
 import com.example.demo.dto.*;
 import com.example.demo.entity.*;
+import com.example.demo.event.OrderChangedEvent;
+import com.example.demo.event.ProductCatalogChangedEvent;
+import com.example.demo.exception.ConflictException;
+import com.example.demo.mapper.OrderMapper;
 import com.example.demo.repository.*;
 import lombok.RequiredArgsConstructor;
-import org.springframework.data.domain.Sort;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.server.ResponseStatusException;
 
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Service
@@ -19,33 +31,61 @@ public class AdminOrderService {
     private final OrderRepository orderRepository;
     private final ProductRepository productRepository;
     private final EmailService emailService;
+    private final DashboardRollupService rollupService;
+    private final RevenueSeriesService revenueSeriesService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final OrderSummaryRepository orderSummaryRepository;
+    private final InventoryService inventoryService;
+    private final OrderSearchIndex orderSearchIndex;
+    private final OrderMapper orderMapper;
+
+    private static final int DEFAULT_PAGE_SIZE = 20;
+    private static final int MAX_PAGE_SIZE = 100;
 
     public List<OrderResponse> getAllOrders(String status, String search, String sort) {
-        // Xử lý tham số sắp xếp từ frontend
-        String sortField = "createdAt"; // Mặc định sắp xếp theo ngày tạo
-        Sort.Direction direction = Sort.Direction.DESC; // Mặc định giảm dần
-
-        if (sort != null && !sort.isEmpty()) {
-            String[] sortParams = sort.split(",");
-            if (sortParams.length > 0) {
-                sortField = sortParams[0];
-                if (sortParams.length > 1 && "asc".equalsIgnoreCase(sortParams[1])) {
-                    direction = Sort.Direction.ASC;
-                }
-            }
-        }
+        SortSpec sortSpec = parseSort(sort);
+        List<Long> matches = searchIndex(search);
+        List<OrderResponse> orders = orderSummaryRepository.findOrders(parseStatus(status),
+                matches == null ? search : null, matches,
+                sortSpec.key(), sortSpec.ascending(), null, null, null);
+        attachItems(orders);
+        return orders;
+    }
 
-        Sort sortObject = Sort.by(direction, sortField);
-        List<Order> orders = orderRepository.findByFiltersWithSort(status, search, sortObject);
-        
-        return orders.stream()
-                .map(this::mapToOrderResponse)
-                .collect(Collectors.toList());
+    /**
+     * Phân trang keyset theo (createdAt, id): mỗi trang tốn một truy vấn đơn hàng và
+     * (nếu {@code includeItems}) một truy vấn dòng sản phẩm, không phụ thuộc kích thước bảng.
+     */
+    public OrderPageResponse getOrderPage(String status, String search, String sort,
+                                          String cursor, Integer size, boolean includeItems) {
+        SortSpec sortSpec = parseSort(sort);
+        int pageSize = size == null ? DEFAULT_PAGE_SIZE : Math.max(1, Math.min(size, MAX_PAGE_SIZE));
+        Cursor after = cursor == null || cursor.isBlank() ? null : decodeCursor(cursor, sortSpec);
+
+        List<Long> matches = searchIndex(search);
+        List<OrderResponse> orders = new ArrayList<>(orderSummaryRepository.findOrders(parseStatus(status),
+                matches == null ? search : null, matches,
+                sortSpec.key(), sortSpec.ascending(),
+                after != null ? after.createdAt() : null, after != null ? after.id() : null, pageSize + 1));
+        boolean hasMore = orders.size() > pageSize;
+        if (hasMore) {
+            orders = new ArrayList<>(orders.subList(0, pageSize));
+        }
+        if (includeItems) {
+            attachItems(orders);
+        }
+        OrderResponse last = orders.isEmpty() ? null : orders.get(orders.size() - 1);
+        return OrderPageResponse.builder()
+                .orders(orders)
+                .hasMore(hasMore)
+                .nextCursor(hasMore ? encodeCursor(sortSpec, last) : null)
+                .size(orders.size())
+                .build();
     }
 
     public OrderResponse getOrder(Long id) {
         Order order = findOrderById(id);
-        return mapToOrderResponse(order);
+        return orderMapper.toResponse(order);
     }
 
     @Transactional
@@ -58,44 +98,70 @@ public class AdminOrderService {
         order.setItems(createOrderItems(order, request.getItems()));
         
         Order savedOrder = orderRepository.save(order);
-        try {
-            emailService.sendOrderConfirmation(savedOrder);
-        } catch (Exception e) {
-            // Log the error but continue
-            System.err.println("Failed to send confirmation email: " + e.getMessage());
-        }
-        return mapToOrderResponse(savedOrder);
+        rollupService.recordOrderCreated(savedOrder.getCreatedAt(), savedOrder.getTotalPrice());
+        revenueSeriesService.recordOrderCreated(savedOrder.getCreatedAt(), savedOrder.getStatus(),
+                savedOrder.getPaymentMethod(), savedOrder.getTotalPrice());
+        eventPublisher.publishEvent(new OrderChangedEvent(savedOrder, OrderChangedEvent.Type.CREATED));
+        // Ghi vào outbox cùng transaction; EmailDispatcher gửi sau khi commit
+        emailService.sendOrderConfirmation(savedOrder);
+        return orderMapper.toResponse(savedOrder);
     }
 
+    /**
+     * Đổi trạng thái theo bảng chuyển trạng thái của {@link OrderStatus} bằng một UPDATE có điều kiện
+     * (id, trạng thái, version). Bị chen ngang hoặc chuyển không hợp lệ thì trả 409 kèm trạng thái hiện tại.
+     */
     @Transactional
-    public OrderResponse updateOrderStatus(Long id, String status) {
-        Order order = findOrderById(id);
+    public OrderResponse updateOrderStatus(Long id, String status, Long expectedVersion) {
+        OrderStatus newStatus;
         try {
-            OrderStatus newStatus = OrderStatus.valueOf(status.toUpperCase());
-            order.setStatus(newStatus);
-            order = orderRepository.save(order);
-            try {
-                emailService.sendOrderStatusUpdate(order);
-            } catch (Exception e) {
-                // Log the error but continue
-                System.err.println("Failed to send status update email: " + e.getMessage());
-            }
-            return mapToOrderResponse(order);
+            newStatus = OrderStatus.valueOf(status.trim().toUpperCase());
         } catch (IllegalArgumentException e) {
             throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Trạng thái không hợp lệ: " + status);
         }
+        Order order = findOrderById(id);
+        OrderStatus oldStatus = order.getStatus();
+        Long version = expectedVersion != null ? expectedVersion : order.getVersion();
+        if (!version.equals(order.getVersion())) {
+            throw new ConflictException("Đơn hàng đã bị thay đổi, vui lòng tải lại", orderMapper.toResponse(order));
+        }
+        if (oldStatus == newStatus) {
+            return orderMapper.toResponse(order);
+        }
+        if (!oldStatus.canTransitionTo(newStatus)) {
+            throw new ConflictException("Không thể chuyển từ " + oldStatus + " sang " + newStatus,
+                    orderMapper.toResponse(order));
+        }
+
+        int updated = orderRepository.updateStatusIfCurrent(id, oldStatus, newStatus, version);
+        // Persistence context đã được xóa sau UPDATE: đọc lại bản mới nhất
+        order = findOrderById(id);
+        if (updated == 0) {
+            throw new ConflictException("Đơn hàng đã bị thay đổi, vui lòng tải lại", orderMapper.toResponse(order));
+        }
+        rollupService.recordOrderStatusChanged(order.getCreatedAt(), order.getTotalPrice(), oldStatus, newStatus);
+        revenueSeriesService.recordStatusChanged(order.getCreatedAt(), order.getPaymentMethod(),
+                order.getTotalPrice(), oldStatus, newStatus);
+        eventPublisher.publishEvent(new OrderChangedEvent(order, OrderChangedEvent.Type.STATUS_CHANGED));
+        emailService.sendOrderStatusUpdate(order);
+        return orderMapper.toResponse(order);
     }
 
     @Transactional
     public void deleteOrder(Long id) {
         Order order = findOrderById(id);
         // Restore product stock
-        order.getItems().forEach(item -> {
-            Product product = item.getProduct();
-            product.setStock(product.getStock() + item.getQuantity());
-            productRepository.save(product);
-        });
+        Map<Long, Integer> quantities = new HashMap<>();
+        order.getItems().forEach(item -> quantities.merge(item.getProduct().getId(), item.getQuantity(), Integer::sum));
+        inventoryService.release(quantities);
+        eventPublisher.publishEvent(new ProductCatalogChangedEvent(order.getItems().stream()
+                .map(item -> item.getProduct().getCategory())
+                .collect(Collectors.toSet())));
         orderRepository.delete(order);
+        rollupService.recordOrderDeleted(order.getCreatedAt(), order.getTotalPrice(), order.getStatus());
+        revenueSeriesService.recordOrderDeleted(order.getCreatedAt(), order.getStatus(),
+                order.getPaymentMethod(), order.getTotalPrice());
+        eventPublisher.publishEvent(new OrderChangedEvent(order, OrderChangedEvent.Type.DELETED));
     }
 
     private Order findOrderById(Long id) {
@@ -104,50 +170,99 @@ public class AdminOrderService {
                 HttpStatus.NOT_FOUND, "Không tìm thấy đơn hàng với ID: " + id));
     }
 
-    private OrderResponse mapToOrderResponse(Order order) {
-        OrderResponse response = new OrderResponse();
-        response.setId(order.getId());
-        response.setCustomerName(order.getCustomerName());
-        response.setCustomerEmail(order.getCustomerEmail());
-        response.setTotalPrice(order.getTotalPrice());
-        response.setStatus(order.getStatus().name());
-        response.setCreatedAt(order.getCreatedAt());
-        
-        List<OrderItemResponse> items = order.getItems().stream()
-            .map(this::mapToOrderItemResponse)
-            .collect(Collectors.toList());
-        
-        response.setItems(items);
-        response.setItemCount(items.size()); // Thêm số lượng sản phẩm
-        
-        return response;
+    /**
+     * Id đơn hàng khớp từ khóa theo chỉ mục trigram; null nếu không tìm kiếm hoặc phải dùng LIKE.
+     * Từ khóa quá ngắn bị từ chối: không có trigram nên chỉ có thể quét toàn bộ đơn hàng.
+     */
+    private List<Long> searchIndex(String search) {
+        if (search == null || search.isBlank()) {
+            return null;
+        }
+        if (OrderSearchIndex.normalize(search).length() < OrderSearchIndex.MIN_QUERY_LENGTH) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "Từ khóa tìm kiếm cần ít nhất " + OrderSearchIndex.MIN_QUERY_LENGTH + " ký tự");
+        }
+        return orderSearchIndex.search(search);
     }
 
-    private OrderItemResponse mapToOrderItemResponse(OrderItem item) {
-        OrderItemResponse response = new OrderItemResponse();
-        response.setProductId(item.getProduct().getId());
-        response.setName(item.getProduct().getName());
-        response.setQuantity(item.getQuantity());
-        response.setPrice(item.getPrice());
-        return response;
+    private void attachItems(List<OrderResponse> orders) {
+        Map<Long, List<OrderItemResponse>> items = orderSummaryRepository.findItems(
+                orders.stream().map(OrderResponse::getId).collect(Collectors.toList()));
+        orders.forEach(order -> order.setItems(items.getOrDefault(order.getId(), new ArrayList<>())));
     }
-    
+
+    private static OrderStatus parseStatus(String status) {
+        if (status == null || status.isBlank()) {
+            return null;
+        }
+        try {
+            return OrderStatus.valueOf(status.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Trạng thái không hợp lệ: " + status);
+        }
+    }
+
+    /**
+     * Chỉ chấp nhận các khóa sắp xếp có index (createdAt, id); mặc định createdAt giảm dần.
+     */
+    private static SortSpec parseSort(String sort) {
+        if (sort == null || sort.isBlank()) {
+            return new SortSpec(OrderSortKey.CREATED_AT, false);
+        }
+        String[] sortParams = sort.split(",");
+        OrderSortKey key = OrderSortKey.fromParam(sortParams[0].trim());
+        if (key == null) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "Không hỗ trợ sắp xếp theo: " + sortParams[0] + " (cho phép: createdAt, id)");
+        }
+        boolean ascending = sortParams.length > 1 && "asc".equalsIgnoreCase(sortParams[1].trim());
+        return new SortSpec(key, ascending);
+    }
+
+    private static String encodeCursor(SortSpec sortSpec, OrderResponse last) {
+        String raw = sortSpec.key().name() + "|" + (sortSpec.ascending() ? "ASC" : "DESC") + "|" +
+                (last.getCreatedAt() != null ? last.getCreatedAt().toString() : "") + "|" + last.getId();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static Cursor decodeCursor(String cursor, SortSpec sortSpec) {
+        try {
+            String[] parts = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split("\\|", -1);
+            if (parts.length != 4 || !parts[0].equals(sortSpec.key().name())
+                    || !parts[1].equals(sortSpec.ascending() ? "ASC" : "DESC")) {
+                throw new IllegalArgumentException("cursor does not match sort");
+            }
+            LocalDateTime createdAt = parts[2].isEmpty() ? null : LocalDateTime.parse(parts[2]);
+            return new Cursor(createdAt, Long.parseLong(parts[3]));
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Con trỏ phân trang không hợp lệ");
+        }
+    }
+
+    private record SortSpec(OrderSortKey key, boolean ascending) {
+    }
+
+    private record Cursor(LocalDateTime createdAt, Long id) {
+    }
+
     private List<OrderItem> createOrderItems(Order order, List<OrderItemRequest> itemRequests) {
-        return itemRequests.stream()
+        // Nạp mọi sản phẩm của đơn trong một truy vấn
+        Map<Long, Product> products = productRepository.findAllById(itemRequests.stream()
+                        .map(OrderItemRequest::getProductId)
+                        .collect(Collectors.toSet()))
+                .stream()
+                .collect(Collectors.toMap(Product::getId, Function.identity()));
+
+        Map<Long, Integer> quantities = new HashMap<>();
+        List<OrderItem> items = itemRequests.stream()
             .map(item -> {
-                Product product = productRepository.findById(item.getProductId())
-                    .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, 
-                        "Không tìm thấy sản phẩm với ID: " + item.getProductId()));
-    
-                if (product.getStock() < item.getQuantity()) {
-                    throw new ResponseStatusException(HttpStatus.BAD_REQUEST, 
-                        "Sản phẩm " + product.getName() + " không đủ số lượng trong kho");
+                Product product = products.get(item.getProductId());
+                if (product == null) {
+                    throw new ResponseStatusException(HttpStatus.NOT_FOUND,
+                        "Không tìm thấy sản phẩm với ID: " + item.getProductId());
                 }
-    
-                // Update product stock
-                product.setStock(product.getStock() - item.getQuantity());
-                productRepository.save(product);
-    
+                quantities.merge(product.getId(), item.getQuantity(), Integer::sum);
+
                 // Create order item
                 OrderItem orderItem = new OrderItem();
                 orderItem.setOrder(order);
@@ -157,5 +272,12 @@ public class AdminOrderService {
                 return orderItem;
             })
             .collect(Collectors.toList());
+
+        // Trừ kho có điều kiện theo một batch; thiếu hàng ở bất kỳ dòng nào thì hủy cả đơn
+        inventoryService.reserve(quantities, productId -> products.get(productId).getName());
+        eventPublisher.publishEvent(new ProductCatalogChangedEvent(products.values().stream()
+                .map(Product::getCategory)
+                .collect(Collectors.toSet())));
+        return items;
     }
 }
\ No newline at end of file
@@ -1,96 +1,253 @@
 package com.example.demo.service;
 
+import com.example.demo.dto.ProductCategoryFacet;
+import com.example.demo.dto.ProductFacetResponse;
+import com.example.demo.dto.ProductPageResponse;
 import com.example.demo.dto.ProductRequest;
 import com.example.demo.dto.ProductResponse;
+import com.example.demo.dto.ProductSearchResponse;
+import com.example.demo.dto.ProductTotalMode;
 import com.example.demo.entity.Product;
+import com.example.demo.event.ProductCatalogChangedEvent;
+import com.example.demo.event.ProductChangedEvent;
+import com.example.demo.exception.ConflictException;
+import com.example.demo.mapper.ProductMapper;
 import com.example.demo.repository.ProductRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import lombok.RequiredArgsConstructor;
-import org.modelmapper.ModelMapper;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.multipart.MultipartFile;
 import org.springframework.web.server.ResponseStatusException;
 
-import java.io.File;
-import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.StandardCopyOption;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
 public class AdminProductService {
     private final ProductRepository productRepository;
-    private final ModelMapper modelMapper;
-    
-    // Folder where image files are stored
-    private final String IMAGE_FOLDER = "C:\\Users\\lenovo\\OneDrive\\Desktop\\demo\\frontend\\public\\img\\imgproducts";
-
-    public Page<ProductResponse> getAllProducts(String category, String search, Pageable pageable) {
-        return productRepository.findByFilters(
-                category != null && category.equals("all") ? null : category,
-                search != null && search.trim().isEmpty() ? null : search,
-                pageable)
-            .map(product -> modelMapper.map(product, ProductResponse.class));
+    private final ProductMapper productMapper;
+    private final InventoryLedger inventoryLedger;
+    private final ApplicationEventPublisher eventPublisher;
+    private final ImageStorageService imageStorageService;
+    private final ProductSearchIndex productSearchIndex;
+    private final ProductCountEstimator countEstimator;
+    private final ProductCategoryStatsService categoryStatsService;
+    private final JdbcTemplate jdbcTemplate;
+    private final MeterRegistry meterRegistry;
+
+    /**
+     * Một trang sản phẩm. Không có từ khóa (hoặc chỉ mục chưa sẵn sàng) thì lấy Slice (thêm một dòng để biết
+     * còn trang sau) thay vì Page để khỏi chạy COUNT cùng điều kiện LIKE; tổng số lấy theo {@code totalMode}.
+     * Trang cuối luôn có tổng chính xác (offset + số dòng).
+     */
+    public ProductPageResponse getProductPage(String category, String search, Pageable pageable,
+                                              ProductTotalMode totalMode) {
+        String categoryFilter = category != null && category.equals("all") ? null : category;
+        String searchFilter = search != null && search.trim().isEmpty() ? null : search;
+        if (searchFilter != null) {
+            Page<ProductResponse> indexed = searchTimer("index").record(
+                    () -> searchWithIndex(categoryFilter, searchFilter, pageable));
+            if (indexed != null) {
+                return pageResponse(indexed.getContent(), pageable, indexed.hasNext(), indexed.getTotalElements(),
+                        ProductPageResponse.TotalType.EXACT, null);
+            }
+        }
+        if (totalMode == ProductTotalMode.EXACT) {
+            Page<ProductResponse> page = searchTimer("sql").record(() -> productRepository
+                    .findByFilters(categoryFilter, searchFilter, pageable)
+                    .map(product -> productMapper.toResponse(product)));
+            return pageResponse(page.getContent(), pageable, page.hasNext(), page.getTotalElements(),
+                    ProductPageResponse.TotalType.EXACT, null);
+        }
+
+        Slice<ProductResponse> slice = searchTimer("sql").record(() -> productRepository
+                .findSliceByFilters(categoryFilter, searchFilter, pageable)
+                .map(product -> productMapper.toResponse(product)));
+        long seen = pageable.getOffset() + slice.getNumberOfElements();
+        if (!slice.hasNext() && (slice.hasContent() || pageable.getOffset() == 0)) {
+            return pageResponse(slice.getContent(), pageable, false, seen, ProductPageResponse.TotalType.EXACT, null);
+        }
+        if (totalMode == ProductTotalMode.NONE) {
+            return pageResponse(slice.getContent(), pageable, slice.hasNext(), null,
+                    ProductPageResponse.TotalType.NONE, null);
+        }
+        ProductCountEstimator.Estimate estimate = countEstimator.estimate(categoryFilter, searchFilter);
+        // Số đếm cũ có thể nhỏ hơn số dòng đã thấy; còn trang sau nghĩa là có ít nhất thêm một dòng
+        long total = Math.max(estimate.count(), slice.hasNext() ? seen + 1 : seen);
+        return pageResponse(slice.getContent(), pageable, slice.hasNext(), total,
+                ProductPageResponse.TotalType.ESTIMATED, estimate.asOf());
+    }
+
+    /**
+     * Tìm kiếm xếp theo độ liên quan kèm số lượng theo danh mục; chỉ mục chưa sẵn sàng thì dùng LIKE, không có facet.
+     */
+    public ProductSearchResponse searchProducts(String query, String category, Pageable pageable) {
+        String categoryFilter = category != null && category.equals("all") ? null : category;
+        ProductSearchIndex.Result result = searchTimer("index").record(() -> productSearchIndex.search(
+                query, categoryFilter, (int) pageable.getOffset(), pageable.getPageSize()));
+        if (result == null) {
+            ProductPageResponse page = getProductPage(categoryFilter, query, pageable, ProductTotalMode.ESTIMATE);
+            return ProductSearchResponse.builder()
+                    .products(page.getContent())
+                    .total(page.getTotalElements())
+                    .page(pageable.getPageNumber())
+                    .size(pageable.getPageSize())
+                    .build();
+        }
+        return ProductSearchResponse.builder()
+                .products(findInOrder(result.productIds()))
+                .total(result.total())
+                .page(pageable.getPageNumber())
+                .size(pageable.getPageSize())
+                .categoryFacets(result.categoryFacets())
+                .build();
+    }
+
+    /**
+     * Trang kết quả từ chỉ mục: theo độ liên quan nếu không chỉ định sắp xếp, ngược lại sắp xếp bằng SQL
+     * trên tập id khớp. Null nếu phải dùng LIKE.
+     */
+    private Page<ProductResponse> searchWithIndex(String category, String search, Pageable pageable) {
+        if (pageable.getSort().isSorted()) {
+            List<Long> ids = productSearchIndex.searchAll(search, category);
+            if (ids == null) {
+                return null;
+            }
+            return ids.isEmpty() ? Page.empty(pageable) : productRepository.findByIdIn(ids, pageable)
+                    .map(product -> productMapper.toResponse(product));
+        }
+        ProductSearchIndex.Result result = productSearchIndex.search(search, category,
+                (int) pageable.getOffset(), pageable.getPageSize());
+        return result == null ? null : new PageImpl<>(findInOrder(result.productIds()), pageable, result.total());
+    }
+
+    /**
+     * Số liệu theo danh mục: không có từ khóa thì đọc bảng tổng hợp, có từ khóa thì tính trên chỉ mục trong
+     * bộ nhớ (SQL GROUP BY khi chỉ mục chưa sẵn sàng).
+     */
+    public ProductFacetResponse getFacets(String category, String search) {
+        String categoryFilter = category != null && category.equals("all") ? null : category;
+        if (search == null || search.isBlank()) {
+            return new ProductFacetResponse(categoryStatsService.getFacets(categoryFilter),
+                    ProductFacetResponse.Source.AGGREGATE);
+        }
+        List<ProductCategoryFacet> indexed = productSearchIndex.facets(search, categoryFilter);
+        if (indexed != null) {
+            return new ProductFacetResponse(indexed, ProductFacetResponse.Source.INDEX);
+        }
+        List<ProductCategoryFacet> facets = jdbcTemplate.query("SELECT category, COUNT(*), " +
+                        "SUM(CASE WHEN stock > 0 THEN 1 ELSE 0 END), MIN(price), MAX(price) FROM products " +
+                        "WHERE (? IS NULL OR category = ?) AND LOWER(name) LIKE LOWER(CONCAT('%', ?, '%')) " +
+                        "GROUP BY category ORDER BY COUNT(*) DESC, category",
+                (rs, rowNum) -> new ProductCategoryFacet(rs.getString(1), rs.getLong(2), rs.getLong(3),
+                        rs.getBigDecimal(4), rs.getBigDecimal(5)),
+                categoryFilter, categoryFilter, search.trim());
+        return new ProductFacetResponse(facets, ProductFacetResponse.Source.SQL);
+    }
+
+    private static ProductPageResponse pageResponse(List<ProductResponse> content, Pageable pageable, boolean hasNext,
+                                                    Long total, ProductPageResponse.TotalType totalType,
+                                                    LocalDateTime totalAsOf) {
+        int size = pageable.getPageSize();
+        return ProductPageResponse.builder()
+                .content(content)
+                .number(pageable.getPageNumber())
+                .size(size)
+                .numberOfElements(content.size())
+                .first(pageable.getPageNumber() == 0)
+                .last(!hasNext)
+                .hasNext(hasNext)
+                .totalElements(total)
+                .totalPages(total == null ? null : (int) ((total + size - 1) / size))
+                .totalType(totalType)
+                .totalAsOf(totalAsOf)
+                .build();
+    }
+
+    private List<ProductResponse> findInOrder(List<Long> ids) {
+        Map<Long, Product> products = productRepository.findAllById(ids).stream()
+                .collect(Collectors.toMap(Product::getId, Function.identity()));
+        return ids.stream()
+                .map(products::get)
+                .filter(Objects::nonNull)
+                .map(product -> productMapper.toResponse(product))
+                .collect(Collectors.toList());
+    }
+
+    private Timer searchTimer(String engine) {
+        return meterRegistry.timer("products.search", "engine", engine);
     }
 
     public ProductResponse getProduct(Long id) {
         Product product = productRepository.findById(id)
             .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Không tìm thấy sản phẩm"));
-        return modelMapper.map(product, ProductResponse.class);
+        return productMapper.toResponse(product);
     }
 
     @Transactional
     public ProductResponse createProduct(ProductRequest request, MultipartFile imageFile) {
-        Product product = modelMapper.map(request, Product.class);
+        Product product = productMapper.toEntity(request);
         if (imageFile != null && !imageFile.isEmpty()) {
-            String imageUrl = saveImageFile(imageFile);
+            String imageUrl = imageStorageService.store(imageFile);
             product.setImageUrl(imageUrl);
         }
         product = productRepository.save(product);
-        return modelMapper.map(product, ProductResponse.class);
+        categoryStatsService.recordChange(null, ProductCategoryStatsService.ProductState.of(product));
+        eventPublisher.publishEvent(new ProductCatalogChangedEvent(Set.of(product.getCategory())));
+        eventPublisher.publishEvent(new ProductChangedEvent(product, ProductChangedEvent.Type.UPSERTED));
+        return productMapper.toResponse(product);
     }
 
     @Transactional
     public ProductResponse updateProduct(Long id, ProductRequest request, MultipartFile imageFile) {
+        // Ghi hết delta tồn kho đang giữ trong bộ nhớ trước khi ghi đè số tồn kho
+        inventoryLedger.demoteUntilCompletion(List.of(id));
         Product product = productRepository.findById(id)
             .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Không tìm thấy sản phẩm"));
+        if (request.getVersion() != null && !request.getVersion().equals(product.getVersion())) {
+            throw new ConflictException("Sản phẩm đã bị thay đổi, vui lòng tải lại",
+                    productMapper.toResponse(product));
+        }
 
-        modelMapper.map(request, product);
+        ProductCategoryStatsService.ProductState before = ProductCategoryStatsService.ProductState.of(product);
+        productMapper.updateEntity(request, product);
         if (imageFile != null && !imageFile.isEmpty()) {
-            String imageUrl = saveImageFile(imageFile);
+            String imageUrl = imageStorageService.store(imageFile);
             product.setImageUrl(imageUrl);
         }
-        product = productRepository.save(product);
-        return modelMapper.map(product, ProductResponse.class);
+        // Flush ngay để version mới có trong response (xung đột -> ObjectOptimisticLockingFailureException -> 409)
+        product = productRepository.saveAndFlush(product);
+        categoryStatsService.recordChange(before, ProductCategoryStatsService.ProductState.of(product));
+        eventPublisher.publishEvent(new ProductCatalogChangedEvent(Set.copyOf(List.of(before.category(), product.getCategory()))));
+        eventPublisher.publishEvent(new ProductChangedEvent(product, ProductChangedEvent.Type.UPSERTED));
+        return productMapper.toResponse(product);
     }
 
     @Transactional
     public void deleteProduct(Long id) {
-        if (!productRepository.existsById(id)) {
-            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Không tìm thấy sản phẩm");
-        }
-        productRepository.deleteById(id);
-    }
-    
-  private String saveImageFile(MultipartFile file) {
-    try {
-        File dir = new File(IMAGE_FOLDER);
-        if (!dir.exists()) {
-            dir.mkdirs();
-        }
-        String originalFilename = file.getOriginalFilename();
-        // Tạo tên file duy nhất: nối thêm thời gian hiện tại.
-        String uniqueFilename = System.currentTimeMillis() + "_" + originalFilename;
-        Path destination = Path.of(IMAGE_FOLDER, uniqueFilename);
-        Files.copy(file.getInputStream(), destination, StandardCopyOption.REPLACE_EXISTING);
-        // Trả về URL tương đối để frontend truy cập
-        return "/img/imgproducts/" + uniqueFilename;
-    } catch (IOException e) {
-        throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Error saving image file", e);
+        inventoryLedger.demoteUntilCompletion(List.of(id));
+        Product product = productRepository.findById(id)
+            .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Không tìm thấy sản phẩm"));
+        productRepository.delete(product);
+        // Xóa xuống DB trước để khoảng giá của danh mục được tính lại không còn sản phẩm này
+        productRepository.flush();
+        categoryStatsService.recordChange(ProductCategoryStatsService.ProductState.of(product), null);
+        eventPublisher.publishEvent(new ProductCatalogChangedEvent(Set.of(product.getCategory())));
+        eventPublisher.publishEvent(new ProductChangedEvent(product, ProductChangedEvent.Type.DELETED));
     }
 }
-}
\ No newline at end of file
@@ -5,6 +5,7 @@ import com.example.demo.dto.UserResponse;
 import com.example.demo.dto.UserUpdateRequest;
 import com.example.demo.entity.User;
 import com.example.demo.repository.UserRepository;
+import com.example.demo.security.SecurityEpochService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
@@ -18,6 +19,8 @@ import java.util.List;
 public class AdminUserService {
 
     private final UserRepository userRepository;
+    private final SecurityEpochService securityEpochService;
+    private final CustomUserDetailsService userDetailsService;
 
     public List<User> getAllUsers() {
         return userRepository.findAll();
@@ -33,6 +36,8 @@ public class AdminUserService {
         }
         user.setRole(request.getRole());
         userRepository.save(user);
+        securityEpochService.bump(user.getEmail());
+        userDetailsService.evict(user.getEmail());
 
         return UserResponse.builder()
             .message("Người dùng đã được cập nhật")
@@ -48,6 +53,8 @@ public class AdminUserService {
             .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Không tìm thấy người dùng!"));
         user.setLocked(request.isLocked());
         userRepository.save(user);
+        securityEpochService.bump(user.getEmail());
+        userDetailsService.evict(user.getEmail());
         return UserResponse.builder()
             .message("Người dùng đã được cập nhật")
             .userId(user.getId())
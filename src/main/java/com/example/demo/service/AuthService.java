@@ -5,36 +5,53 @@ import com.example.demo.dto.LoginResponse;
 import com.example.demo.dto.RegisterRequest;
 import com.example.demo.entity.User;
 import com.example.demo.repository.UserRepository;
-import lombok.RequiredArgsConstructor;
+import com.example.demo.security.UserAccount;
 import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.authentication.LockedException;
 import org.springframework.security.core.userdetails.UserDetails;
-import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
+/**
+ * Đăng ký và đăng nhập. Băm mật khẩu (BCrypt, pool giới hạn) chạy trước khi mở transaction
+ * để không giữ kết nối DB trong lúc chờ pool băm.
+ */
 @Service
-@RequiredArgsConstructor
 public class AuthService {
 
     private final UserRepository userRepository;
-    private final PasswordEncoder passwordEncoder;
+    private final PasswordHashingService passwordHashingService;
     private final JwtService jwtService;
     private final CustomUserDetailsService customUserDetailsService;
+    private final DashboardRollupService rollupService;
+    private final TransactionTemplate transactionTemplate;
+
+    public AuthService(UserRepository userRepository,
+                       PasswordHashingService passwordHashingService,
+                       JwtService jwtService,
+                       CustomUserDetailsService customUserDetailsService,
+                       DashboardRollupService rollupService,
+                       PlatformTransactionManager transactionManager) {
+        this.userRepository = userRepository;
+        this.passwordHashingService = passwordHashingService;
+        this.jwtService = jwtService;
+        this.customUserDetailsService = customUserDetailsService;
+        this.rollupService = rollupService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
 
-    @Transactional
     public void register(RegisterRequest request) {
+        // Kiểm tra trước để không tốn một lần băm cho email đã tồn tại
         if (userRepository.existsByEmail(request.getEmail())) {
             throw new RuntimeException("Email đã tồn tại");
         }
-        User user = new User();
-        user.setEmail(request.getEmail());
-        user.setPassword(passwordEncoder.encode(request.getPassword()));
+        String passwordHash = passwordHashingService.encode(request.getPassword());
         // Đăng ký người dùng bình thường với role mặc định là "USER"
-        user.setRole("USER");
-        userRepository.save(user);
+        createUser(request.getEmail(), passwordHash, "USER");
     }
     
-    @Transactional
     public void registerAdmin(RegisterAdminRequest request) {
         if (userRepository.existsByEmail(request.getEmail())) {
             throw new RuntimeException("Email đã tồn tại");
@@ -43,24 +60,45 @@ public class AuthService {
         if (!"ADMIN_SECRET_KEY".equals(request.getAdminSecret())) {
             throw new RuntimeException("Admin secret không hợp lệ");
         }
-        User user = new User();
-        user.setEmail(request.getEmail());
-        user.setPassword(passwordEncoder.encode(request.getPassword()));
+        String passwordHash = passwordHashingService.encode(request.getPassword());
         // Gán role "ADMIN" cho tài khoản admin
-        user.setRole("ADMIN");
-        userRepository.save(user);
+        createUser(request.getEmail(), passwordHash, "ADMIN");
+    }
+
+    private void createUser(String email, String passwordHash, String role) {
+        transactionTemplate.executeWithoutResult(status -> {
+            // Kiểm tra lại trong transaction: email có thể vừa được đăng ký trong lúc băm mật khẩu
+            if (userRepository.existsByEmail(email)) {
+                throw new RuntimeException("Email đã tồn tại");
+            }
+            User user = new User();
+            user.setEmail(email);
+            user.setPassword(passwordHash);
+            user.setRole(role);
+            userRepository.save(user);
+            rollupService.recordUserCreated(user.getCreatedAt());
+        });
     }
 
     public LoginResponse login(LoginRequest request) {
-        User user = userRepository.findByEmail(request.getEmail())
-                .orElseThrow(() -> new BadCredentialsException("Không tìm thấy người dùng"));
-        if (!passwordEncoder.matches(request.getPassword(), user.getPassword())) {
+        // Một lần tra cứu (thường từ cache) cho cả kiểm tra mật khẩu lẫn phát hành token
+        UserAccount account;
+        try {
+            account = customUserDetailsService.loadAccount(request.getEmail());
+        } catch (UsernameNotFoundException e) {
+            throw new BadCredentialsException("Không tìm thấy người dùng");
+        }
+        if (!passwordHashingService.matches(request.getPassword(), account.getPasswordHash())) {
             throw new BadCredentialsException("Mật khẩu không chính xác");
         }
-        UserDetails userDetails = customUserDetailsService.loadUserByUsername(user.getEmail());
-        String token = jwtService.generateToken(userDetails);
+        if (account.isLocked()) {
+            throw new LockedException("Tài khoản đã bị khóa");
+        }
+        passwordHashingService.rehashIfNeeded(account, request.getPassword());
+        UserDetails userDetails = customUserDetailsService.toUserDetails(account);
+        String token = jwtService.generateToken(userDetails, account.getId());
         // Trả về thông tin đăng nhập cùng role được lưu trong DB
-        return new LoginResponse(token, user.getEmail(), user.getRole());
+        return new LoginResponse(token, account.getEmail(), account.getRole());
     }
 
     // DTO nội bộ: Dùng cho endpoint register-admin
@@ -0,0 +1,129 @@
+package com.example.demo.service;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Rào chắn giữa các transaction ghi delta vào bộ nhớ sau khi commit và job đối soát dựng lại bảng tổng hợp.
+ * Transaction giữ read lock từ {@code beforeCommit} đến {@code afterCompletion}, tức là suốt lúc commit
+ * và lúc cộng delta; {@link #exclusive(Supplier)} giữ write lock nên bên trong đó không có transaction nào
+ * "đã commit nhưng chưa cộng delta". Mở snapshot đọc và bỏ phần delta đang chờ trong cùng vùng độc quyền
+ * thì mọi delta bị bỏ đều đã nằm trong snapshot, còn delta đến sau thì không.
+ *
+ * <p>Phía đọc: phần delta đã bỏ khỏi đuôi nhưng chưa commit xuống bảng ("đang ghi") vẫn phải được cộng khi đọc.
+ * {@link #read(Supplier)} giữ view lock ở chế độ đọc; {@link #exclusive(Supplier)} và lúc commit của
+ * {@link #publishOnCommit(Consumer)} giữ nó ở chế độ ghi, nên người đọc luôn thấy hoặc bảng cũ + phần đang ghi,
+ * hoặc bảng mới.
+ */
+final class CommitFence {
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    // Luôn lấy trước lock ở trên
+    private final ReadWriteLock view = new ReentrantReadWriteLock();
+
+    /**
+     * Chạy {@code action} sau khi transaction hiện tại commit (bỏ qua nếu rollback); không có transaction
+     * thì chạy ngay.
+     */
+    void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            shared(action);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            private boolean locked;
+
+            @Override
+            public void beforeCommit(boolean readOnly) {
+                lock.readLock().lock();
+                locked = true;
+            }
+
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                if (locked) {
+                    locked = false;
+                    lock.readLock().unlock();
+                }
+            }
+        });
+    }
+
+    void shared(Runnable action) {
+        lock.readLock().lock();
+        try {
+            action.run();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    <T> T exclusive(Supplier<T> action) {
+        view.writeLock().lock();
+        try {
+            lock.writeLock().lock();
+            try {
+                return action.get();
+            } finally {
+                lock.writeLock().unlock();
+            }
+        } finally {
+            view.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Đọc bảng tổng hợp cùng phần đang ghi và phần đuôi.
+     */
+    <T> T read(Supplier<T> action) {
+        view.readLock().lock();
+        try {
+            return action.get();
+        } finally {
+            view.readLock().unlock();
+        }
+    }
+
+    /**
+     * Gọi trong transaction ghi phần đang ghi xuống bảng: commit và {@code completion} (tham số: đã commit
+     * hay chưa) chạy dưới view lock ở chế độ ghi, nên không ai đọc được bảng mới cùng phần đang ghi cũ.
+     */
+    void publishOnCommit(Consumer<Boolean> completion) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            throw new IllegalStateException("Publishing rollups requires an active transaction");
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            private boolean locked;
+
+            @Override
+            public void beforeCommit(boolean readOnly) {
+                view.writeLock().lock();
+                locked = true;
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                if (!locked) {
+                    view.writeLock().lock();
+                    locked = true;
+                }
+                try {
+                    completion.accept(status == STATUS_COMMITTED);
+                } finally {
+                    locked = false;
+                    view.writeLock().unlock();
+                }
+            }
+        });
+    }
+}
@@ -0,0 +1,89 @@
+package com.example.demo.service;
+
+import com.example.demo.repository.CourseRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * JSON của danh mục khóa học công khai, cache theo số revision. Mọi thao tác ghi khóa học/danh mục gọi
+ * {@link #bumpRevision()}; ETag suy ra từ revision nên request có If-None-Match khớp được trả 304
+ * mà không chạm DB hay serialize.
+ */
+@Service
+public class CourseCatalogService {
+
+    public record Catalog(String etag, byte[] body) {
+    }
+
+    private record Entry(long revision, Catalog catalog) {
+    }
+
+    private final CourseRepository courseRepository;
+    private final ObjectMapper objectMapper;
+    // Phân biệt các lần khởi động để revision đếm lại từ 0 không trùng ETag cũ
+    private final String instanceTag = Long.toHexString(ThreadLocalRandom.current().nextLong());
+    private final AtomicLong revision = new AtomicLong();
+    private final Object loadLock = new Object();
+    private final Counter hits;
+    private final Counter misses;
+    private volatile Entry cached;
+
+    public CourseCatalogService(CourseRepository courseRepository, ObjectMapper objectMapper,
+                                MeterRegistry meterRegistry) {
+        this.courseRepository = courseRepository;
+        this.objectMapper = objectMapper;
+        this.hits = Counter.builder("courses.catalog.requests").tag("result", "hit").register(meterRegistry);
+        this.misses = Counter.builder("courses.catalog.requests").tag("result", "miss").register(meterRegistry);
+    }
+
+    /**
+     * ETag của revision hiện tại (không cần nạp danh mục).
+     */
+    public String currentEtag() {
+        return etag(revision.get());
+    }
+
+    public Catalog getCatalog() {
+        Entry entry = cached;
+        if (entry != null && entry.revision() == revision.get()) {
+            hits.increment();
+            return entry.catalog();
+        }
+        synchronized (loadLock) {
+            // Request khác có thể vừa nạp xong trong lúc chờ lock
+            entry = cached;
+            long current = revision.get();
+            if (entry != null && entry.revision() == current) {
+                hits.increment();
+                return entry.catalog();
+            }
+            misses.increment();
+            // Đọc revision trước khi truy vấn: thay đổi xảy ra trong lúc nạp sẽ làm mục này hết hạn ngay
+            Catalog catalog = new Catalog(etag(current), serialize());
+            cached = new Entry(current, catalog);
+            return catalog;
+        }
+    }
+
+    public void bumpRevision() {
+        revision.incrementAndGet();
+    }
+
+    private byte[] serialize() {
+        try {
+            return objectMapper.writeValueAsBytes(courseRepository.findCatalog());
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Cannot serialize course catalog", e);
+        }
+    }
+
+    private String etag(long value) {
+        return "\"courses-" + instanceTag + "-" + value + '"';
+    }
+}
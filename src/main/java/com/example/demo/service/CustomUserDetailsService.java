@@ -2,31 +2,134 @@ package com.example.demo.service;
 
 import com.example.demo.entity.User;
 import com.example.demo.repository.UserRepository;
-import lombok.RequiredArgsConstructor;
-import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import com.example.demo.security.UserAccount;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
-import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
+/**
+ * UserDetailsService duy nhất của ứng dụng, có cache theo email (giới hạn kích thước + TTL).
+ * Các thao tác admin thay đổi role/khóa/xóa user phải gọi {@link #evict(String)}. Mỗi lần evict tăng
+ * "thế hệ" của email (theo stripe); lần nạp từ DB chỉ được đưa vào cache nếu thế hệ không đổi trong lúc nạp,
+ * nên dữ liệu đọc trước khi thay đổi của admin commit không bị cache lại.
+ */
 @Service
-@RequiredArgsConstructor
 public class CustomUserDetailsService implements UserDetailsService {
 
+    private static final int GENERATION_STRIPES = 1024;
+
     private final UserRepository userRepository;
+    private final int maxEntries;
+    private final long ttlMillis;
+    private final Map<String, CachedAccount> cache;
+    // Được bảo vệ bởi khóa của cache
+    private final long[] generations = new long[GENERATION_STRIPES];
+    private final Counter hits;
+    private final Counter misses;
+
+    public CustomUserDetailsService(UserRepository userRepository,
+                                    MeterRegistry meterRegistry,
+                                    @Value("${app.security.user-cache.max-size:10000}") int maxEntries,
+                                    @Value("${app.security.user-cache.ttl-seconds:300}") long ttlSeconds) {
+        this.userRepository = userRepository;
+        this.maxEntries = maxEntries;
+        this.ttlMillis = ttlSeconds * 1000;
+        this.cache = new LinkedHashMap<>(256, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedAccount> eldest) {
+                return size() > CustomUserDetailsService.this.maxEntries;
+            }
+        };
+        this.hits = Counter.builder("security.user_cache.requests").tag("result", "hit").register(meterRegistry);
+        this.misses = Counter.builder("security.user_cache.requests").tag("result", "miss").register(meterRegistry);
+        Gauge.builder("security.user_cache.size", this, CustomUserDetailsService::size).register(meterRegistry);
+    }
 
     @Override
     public UserDetails loadUserByUsername(String email) throws UsernameNotFoundException {
+        return toUserDetails(loadAccount(email));
+    }
+
+    public UserAccount loadAccount(String email) throws UsernameNotFoundException {
+        long now = System.currentTimeMillis();
+        long generation;
+        synchronized (cache) {
+            CachedAccount cached = cache.get(email);
+            if (cached != null && cached.expiresAt > now) {
+                hits.increment();
+                return cached.account;
+            }
+            generation = generations[stripe(email)];
+        }
+        misses.increment();
         User user = userRepository.findByEmail(email)
                       .orElseThrow(() -> new UsernameNotFoundException("Không tìm thấy người dùng với email: " + email));
-        // Chuyển đổi role (trong DB: "ADMIN" hoặc "USER") thành GrantedAuthority
-        SimpleGrantedAuthority authority = new SimpleGrantedAuthority(user.getRole());
-        return new org.springframework.security.core.userdetails.User(
-                user.getEmail(),
-                user.getPassword(),
-                Collections.singletonList(authority)
-        );
-    }
-}
\ No newline at end of file
+        UserAccount account = new UserAccount(user.getId(), user.getEmail(), user.getPassword(), user.getRole(), user.isLocked());
+        synchronized (cache) {
+            // Có evict trong lúc đọc DB: bản đọc được có thể là dữ liệu cũ, không cache
+            if (generations[stripe(email)] == generation) {
+                cache.put(email, new CachedAccount(account, now + ttlMillis));
+            }
+        }
+        return account;
+    }
+
+    public UserDetails toUserDetails(UserAccount account) {
+        return org.springframework.security.core.userdetails.User
+                .withUsername(account.getEmail())
+                .password(account.getPasswordHash())
+                // Nếu trong DB role được lưu với prefix "ROLE_", thì remove prefix để so sánh với hasRole("ADMIN")
+                .roles(account.getRole().replace("ROLE_", ""))
+                .accountLocked(account.isLocked())
+                .build();
+    }
+
+    /**
+     * Xóa user khỏi cache ngay lập tức và một lần nữa sau khi transaction hiện tại commit,
+     * để request đọc đồng thời không nạp lại dữ liệu cũ vào cache.
+     */
+    public void evict(String email) {
+        if (email == null) {
+            return;
+        }
+        remove(email);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    remove(email);
+                }
+            });
+        }
+    }
+
+    public int size() {
+        synchronized (cache) {
+            return cache.size();
+        }
+    }
+
+    private void remove(String email) {
+        synchronized (cache) {
+            cache.remove(email);
+            generations[stripe(email)]++;
+        }
+    }
+
+    private static int stripe(String email) {
+        return Math.floorMod(email.hashCode(), GENERATION_STRIPES);
+    }
+
+    private record CachedAccount(UserAccount account, long expiresAt) {
+    }
+}
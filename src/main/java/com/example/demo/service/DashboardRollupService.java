@@ -0,0 +1,353 @@
+package com.example.demo.service;
+
+import com.example.demo.entity.DashboardRollup;
+import com.example.demo.entity.OrderStatus;
+import com.example.demo.entity.RollupPeriod;
+import com.example.demo.repository.DashboardRollupRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+
+/**
+ * Duy trì bảng {@code dashboard_rollups} theo ngày và theo tháng. Thay đổi nghiệp vụ được cộng vào một
+ * "đuôi" trong bộ nhớ sau khi commit và ghi xuống bảng theo lô định kỳ, nên transaction của đơn hàng/user/
+ * khóa học không phải chờ khóa trên các dòng tổng hợp; khi đọc, phần đuôi và phần đang ghi (đã bỏ khỏi đuôi,
+ * chưa commit xuống bảng) được cộng thêm.
+ * Tổng toàn thời gian là tổng các dòng tháng. {@link #rebuild()} dựng lại toàn bộ từ bảng gốc.
+ */
+@Service
+public class DashboardRollupService {
+
+    private static final Logger logger = LoggerFactory.getLogger(DashboardRollupService.class);
+
+    private static final String UPSERT_SQL = "INSERT INTO dashboard_rollups " +
+            "(period_type, period_start, order_count, revenue, cancelled_orders, cancelled_revenue, new_users, new_courses) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?) ON DUPLICATE KEY UPDATE " +
+            "order_count = order_count + VALUES(order_count), " +
+            "revenue = revenue + VALUES(revenue), " +
+            "cancelled_orders = cancelled_orders + VALUES(cancelled_orders), " +
+            "cancelled_revenue = cancelled_revenue + VALUES(cancelled_revenue), " +
+            "new_users = new_users + VALUES(new_users), " +
+            "new_courses = new_courses + VALUES(new_courses)";
+    private static final String TOTAL_SQL = "SELECT COALESCE(SUM(order_count), 0), COALESCE(SUM(revenue), 0), " +
+            "COALESCE(SUM(cancelled_orders), 0), COALESCE(SUM(cancelled_revenue), 0), " +
+            "COALESCE(SUM(new_users), 0), COALESCE(SUM(new_courses), 0) " +
+            "FROM dashboard_rollups WHERE period_type = 'MONTH'";
+
+    private final DashboardRollupRepository rollupRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final CommitFence fence = new CommitFence();
+    // flush và rebuild không chạy chồng lên nhau
+    private final Object flushLock = new Object();
+    private volatile Map<Key, Totals> tail = new ConcurrentHashMap<>();
+    private volatile Map<Key, Totals> inFlight = Map.of();
+
+    public DashboardRollupService(DashboardRollupRepository rollupRepository,
+                                  JdbcTemplate jdbcTemplate,
+                                  PlatformTransactionManager transactionManager) {
+        this.rollupRepository = rollupRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+    }
+
+    public void recordOrderCreated(LocalDateTime createdAt, BigDecimal totalPrice) {
+        apply(createdAt, 1, amount(totalPrice), 0, BigDecimal.ZERO, 0, 0);
+    }
+
+    public void recordOrderDeleted(LocalDateTime createdAt, BigDecimal totalPrice, OrderStatus status) {
+        BigDecimal total = amount(totalPrice);
+        boolean cancelled = status == OrderStatus.CANCELLED;
+        apply(createdAt, -1, total.negate(), cancelled ? -1 : 0, cancelled ? total.negate() : BigDecimal.ZERO, 0, 0);
+    }
+
+    public void recordOrderStatusChanged(LocalDateTime createdAt, BigDecimal totalPrice,
+                                         OrderStatus from, OrderStatus to) {
+        boolean wasCancelled = from == OrderStatus.CANCELLED;
+        boolean isCancelled = to == OrderStatus.CANCELLED;
+        if (wasCancelled == isCancelled) {
+            return;
+        }
+        BigDecimal total = amount(totalPrice);
+        apply(createdAt, 0, BigDecimal.ZERO, isCancelled ? 1 : -1, isCancelled ? total : total.negate(), 0, 0);
+    }
+
+    public void recordUserCreated(LocalDateTime createdAt) {
+        apply(createdAt, 0, BigDecimal.ZERO, 0, BigDecimal.ZERO, 1, 0);
+    }
+
+    public void recordUserDeleted(LocalDateTime createdAt) {
+        apply(createdAt, 0, BigDecimal.ZERO, 0, BigDecimal.ZERO, -1, 0);
+    }
+
+    public void recordCourseCreated(LocalDateTime createdAt) {
+        apply(createdAt, 0, BigDecimal.ZERO, 0, BigDecimal.ZERO, 0, 1);
+    }
+
+    public void recordCourseDeleted(LocalDateTime createdAt) {
+        apply(createdAt, 0, BigDecimal.ZERO, 0, BigDecimal.ZERO, 0, -1);
+    }
+
+    /**
+     * Tổng toàn thời gian: cộng các dòng tháng (vài chục dòng) và phần đuôi theo tháng.
+     */
+    public DashboardRollup getTotal() {
+        return fence.read(() -> {
+            DashboardRollup total = jdbcTemplate.queryForObject(TOTAL_SQL, (rs, rowNum) -> {
+                DashboardRollup row = new DashboardRollup();
+                row.setOrderCount(rs.getLong(1));
+                row.setRevenue(rs.getBigDecimal(2));
+                row.setCancelledOrders(rs.getLong(3));
+                row.setCancelledRevenue(rs.getBigDecimal(4));
+                row.setNewUsers(rs.getLong(5));
+                row.setNewCourses(rs.getLong(6));
+                return row;
+            });
+            forEachPending((key, totals) -> {
+                if (key.period() == RollupPeriod.MONTH) {
+                    totals.addTo(total);
+                }
+            });
+            return total;
+        });
+    }
+
+    public DashboardRollup getMonth(YearMonth month) {
+        LocalDate start = month.atDay(1);
+        Key key = new Key(RollupPeriod.MONTH, start);
+        return fence.read(() -> {
+            DashboardRollup row = rollupRepository.findByPeriodTypeAndPeriodStart(RollupPeriod.MONTH, start)
+                    .orElseGet(() -> empty(RollupPeriod.MONTH, start));
+            forEachPending((pendingKey, totals) -> {
+                if (pendingKey.equals(key)) {
+                    totals.addTo(row);
+                }
+            });
+            return row;
+        });
+    }
+
+    public List<DashboardRollup> getMonths(YearMonth from, YearMonth to) {
+        LocalDate first = from.atDay(1);
+        LocalDate last = to.atDay(1);
+        return fence.read(() -> {
+            TreeMap<LocalDate, DashboardRollup> rows = new TreeMap<>();
+            for (DashboardRollup row : rollupRepository.findByPeriodTypeAndPeriodStartBetweenOrderByPeriodStart(
+                    RollupPeriod.MONTH, first, last)) {
+                rows.put(row.getPeriodStart(), row);
+            }
+            forEachPending((key, totals) -> {
+                if (key.period() == RollupPeriod.MONTH && !key.start().isBefore(first) && !key.start().isAfter(last)) {
+                    totals.addTo(rows.computeIfAbsent(key.start(), start -> empty(RollupPeriod.MONTH, start)));
+                }
+            });
+            return new ArrayList<>(rows.values());
+        });
+    }
+
+    /**
+     * Ghi phần đuôi trong bộ nhớ xuống bảng theo một lô upsert. Cho tới khi lô commit, phần đã bỏ khỏi đuôi
+     * vẫn được cộng khi đọc; lỗi thì được trả lại phần đuôi để lần sau ghi tiếp.
+     */
+    @Scheduled(fixedDelayString = "${app.dashboard.rollup.flush-interval-ms:5000}")
+    public void flush() {
+        synchronized (flushLock) {
+            if (tail.isEmpty()) {
+                return;
+            }
+            try {
+                transactionTemplate.executeWithoutResult(status -> {
+                    fence.publishOnCommit(this::completeFlush);
+                    Map<Key, Totals> drained = fence.exclusive(this::drainTail);
+                    List<Object[]> batch = new ArrayList<>(drained.size());
+                    drained.forEach((key, totals) -> batch.add(totals.toRow(key)));
+                    jdbcTemplate.batchUpdate(UPSERT_SQL, batch);
+                });
+            } catch (RuntimeException e) {
+                logger.warn("Failed to flush dashboard rollups: {}", e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Đối soát: xóa và dựng lại toàn bộ số liệu tổng hợp từ các bảng orders, users, courses. Snapshot đọc
+     * được mở cùng lúc bỏ phần đuôi (xem {@link CommitFence}), nên thay đổi commit trong lúc dựng lại chỉ
+     * được tính một lần: hoặc nằm trong snapshot, hoặc nằm trong phần đuôi mới.
+     */
+    @Scheduled(cron = "${app.dashboard.rollup.reconcile-cron:0 30 3 * * *}")
+    public void rebuild() {
+        synchronized (flushLock) {
+            long started = System.currentTimeMillis();
+            // Bảng cũ giữ nguyên tới khi commit nên phần đuôi đã bỏ vẫn được cộng khi đọc, lỗi thì được trả lại
+            transactionTemplate.executeWithoutResult(status -> {
+                fence.publishOnCommit(this::completeFlush);
+                fence.exclusive(() -> {
+                    // Lần đọc đầu tiên trong transaction REPEATABLE READ tạo snapshot
+                    jdbcTemplate.queryForList("SELECT id FROM orders LIMIT 1");
+                    return drainTail();
+                });
+                Map<Key, Totals> rows = new HashMap<>();
+                for (RollupPeriod period : RollupPeriod.values()) {
+                    String key = periodKey(period);
+                    jdbcTemplate.query("SELECT " + key + ", COUNT(*), COALESCE(SUM(total_price), 0), " +
+                            "COALESCE(SUM(status = 'CANCELLED'), 0), " +
+                            "COALESCE(SUM(CASE WHEN status = 'CANCELLED' THEN total_price ELSE 0 END), 0) " +
+                            "FROM orders WHERE created_at IS NOT NULL GROUP BY " + key, rs -> {
+                        Totals totals = rows.computeIfAbsent(
+                                new Key(period, rs.getDate(1).toLocalDate()), k -> new Totals());
+                        totals.add(rs.getLong(2), rs.getBigDecimal(3), rs.getLong(4), rs.getBigDecimal(5), 0, 0);
+                    });
+                    jdbcTemplate.query("SELECT " + key + ", COUNT(*) FROM users " +
+                            "WHERE created_at IS NOT NULL GROUP BY " + key, rs -> {
+                        rows.computeIfAbsent(new Key(period, rs.getDate(1).toLocalDate()), k -> new Totals())
+                                .add(0, BigDecimal.ZERO, 0, BigDecimal.ZERO, rs.getLong(2), 0);
+                    });
+                    jdbcTemplate.query("SELECT " + key + ", COUNT(*) FROM courses " +
+                            "WHERE created_at IS NOT NULL GROUP BY " + key, rs -> {
+                        rows.computeIfAbsent(new Key(period, rs.getDate(1).toLocalDate()), k -> new Totals())
+                                .add(0, BigDecimal.ZERO, 0, BigDecimal.ZERO, 0, rs.getLong(2));
+                    });
+                }
+                jdbcTemplate.update("DELETE FROM dashboard_rollups");
+                List<Object[]> batch = new ArrayList<>(rows.size());
+                rows.forEach((key, totals) -> batch.add(totals.toRow(key)));
+                jdbcTemplate.batchUpdate(UPSERT_SQL, batch);
+            });
+            logger.info("Rebuilt dashboard rollups in {} ms", System.currentTimeMillis() - started);
+        }
+    }
+
+    /**
+     * Lần khởi động đầu tiên (bảng tổng hợp còn trống) thì dựng bảng ngay.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuildIfEmpty() {
+        if (rollupRepository.count() == 0) {
+            rebuild();
+        }
+    }
+
+    private void apply(LocalDateTime createdAt, long orders, BigDecimal revenue,
+                       long cancelledOrders, BigDecimal cancelledRevenue, long users, long courses) {
+        LocalDate day = (createdAt != null ? createdAt : LocalDateTime.now()).toLocalDate();
+        fence.afterCommit(() -> {
+            for (RollupPeriod period : RollupPeriod.values()) {
+                tail.computeIfAbsent(new Key(period, periodStart(period, day)), k -> new Totals())
+                        .add(orders, revenue, cancelledOrders, cancelledRevenue, users, courses);
+            }
+        });
+    }
+
+    /**
+     * Chuyển phần đuôi sang phần đang ghi; gọi trong {@link CommitFence#exclusive(java.util.function.Supplier)}.
+     */
+    private Map<Key, Totals> drainTail() {
+        Map<Key, Totals> drained = tail;
+        tail = new ConcurrentHashMap<>();
+        inFlight = drained;
+        return drained;
+    }
+
+    private void completeFlush(boolean committed) {
+        Map<Key, Totals> drained = inFlight;
+        inFlight = Map.of();
+        if (!committed) {
+            fence.shared(() -> drained.forEach((key, totals) ->
+                    tail.computeIfAbsent(key, k -> new Totals()).add(totals)));
+        }
+    }
+
+    private void forEachPending(BiConsumer<Key, Totals> action) {
+        inFlight.forEach(action);
+        tail.forEach(action);
+    }
+
+    private static DashboardRollup empty(RollupPeriod period, LocalDate start) {
+        DashboardRollup empty = new DashboardRollup();
+        empty.setPeriodType(period);
+        empty.setPeriodStart(start);
+        return empty;
+    }
+
+    private static LocalDate periodStart(RollupPeriod period, LocalDate day) {
+        return switch (period) {
+            case DAY -> day;
+            case MONTH -> day.withDayOfMonth(1);
+        };
+    }
+
+    private static String periodKey(RollupPeriod period) {
+        return switch (period) {
+            case DAY -> "DATE(created_at)";
+            case MONTH -> "DATE(DATE_FORMAT(created_at, '%Y-%m-01'))";
+        };
+    }
+
+    private static BigDecimal amount(BigDecimal value) {
+        return value != null ? value : BigDecimal.ZERO;
+    }
+
+    private record Key(RollupPeriod period, LocalDate start) {
+    }
+
+    private static final class Totals {
+        private long orders;
+        private BigDecimal revenue = BigDecimal.ZERO;
+        private long cancelledOrders;
+        private BigDecimal cancelledRevenue = BigDecimal.ZERO;
+        private long users;
+        private long courses;
+
+        synchronized void add(long orders, BigDecimal revenue, long cancelledOrders, BigDecimal cancelledRevenue,
+                              long users, long courses) {
+            this.orders += orders;
+            this.revenue = this.revenue.add(revenue);
+            this.cancelledOrders += cancelledOrders;
+            this.cancelledRevenue = this.cancelledRevenue.add(cancelledRevenue);
+            this.users += users;
+            this.courses += courses;
+        }
+
+        void add(Totals other) {
+            synchronized (other) {
+                add(other.orders, other.revenue, other.cancelledOrders, other.cancelledRevenue,
+                        other.users, other.courses);
+            }
+        }
+
+        synchronized void addTo(DashboardRollup row) {
+            row.setOrderCount(row.getOrderCount() + orders);
+            row.setRevenue(row.getRevenue().add(revenue));
+            row.setCancelledOrders(row.getCancelledOrders() + cancelledOrders);
+            row.setCancelledRevenue(row.getCancelledRevenue().add(cancelledRevenue));
+            row.setNewUsers(row.getNewUsers() + users);
+            row.setNewCourses(row.getNewCourses() + courses);
+        }
+
+        synchronized Object[] toRow(Key key) {
+            return new Object[]{key.period().name(), Date.valueOf(key.start()), orders, revenue,
+                    cancelledOrders, cancelledRevenue, users, courses};
+        }
+    }
+}
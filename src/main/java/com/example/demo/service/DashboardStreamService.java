@@ -0,0 +1,164 @@
+package com.example.demo.service;
+
+import com.example.demo.dto.DashboardUpdateDTO;
+import com.example.demo.event.OrderChangedEvent;
+import com.example.demo.exception.ServiceOverloadedException;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Kênh SSE cho dashboard admin. Các thay đổi đơn hàng chỉ đánh dấu "bẩn"; mỗi chu kỳ
+ * (app.dashboard.stream.coalesce-interval-ms) tối đa một snapshot được tính và phát cho
+ * tất cả admin đang kết nối, nên 100 đơn liên tiếp chỉ tạo một lần cập nhật.
+ */
+@Service
+public class DashboardStreamService {
+
+    private static final Logger logger = LoggerFactory.getLogger(DashboardStreamService.class);
+
+    private static final String EVENT_NAME = "dashboard";
+    private static final long RECONNECT_MILLIS = 3000;
+
+    private final AdminDashboardService dashboardService;
+    private final int maxConnections;
+    private final long emitterTimeoutMillis;
+
+    private final List<SseEmitter> emitters = new CopyOnWriteArrayList<>();
+    // Số kết nối đã giữ chỗ (kể cả kết nối đang chờ snapshot đầu tiên)
+    private final AtomicInteger connections = new AtomicInteger();
+    private final Set<Long> pendingChanges = ConcurrentHashMap.newKeySet();
+    private final AtomicLong sequence = new AtomicLong();
+    private final AtomicReference<DashboardUpdateDTO> lastUpdate = new AtomicReference<>();
+
+    public DashboardStreamService(AdminDashboardService dashboardService,
+                                  MeterRegistry meterRegistry,
+                                  @Value("${app.dashboard.stream.max-connections:50}") int maxConnections,
+                                  @Value("${app.dashboard.stream.timeout-ms:1800000}") long emitterTimeoutMillis) {
+        this.dashboardService = dashboardService;
+        this.maxConnections = maxConnections;
+        this.emitterTimeoutMillis = emitterTimeoutMillis;
+        Gauge.builder("dashboard.stream.connections", emitters, List::size).register(meterRegistry);
+    }
+
+    /**
+     * Mở kết nối SSE. Nếu client gửi Last-Event-ID trùng với sự kiện mới nhất thì không
+     * gửi lại; ngược lại gửi ngay snapshot hiện tại.
+     */
+    public SseEmitter subscribe(String lastEventId) {
+        if (connections.incrementAndGet() > maxConnections) {
+            connections.decrementAndGet();
+            throw new ServiceOverloadedException("Quá nhiều kết nối dashboard", 5);
+        }
+        // Tính snapshot đầu tiên trước khi đăng ký: lỗi ở đây thì trả lại chỗ, không để lại emitter mồ côi
+        DashboardUpdateDTO current;
+        try {
+            current = lastUpdate.get();
+            if (current == null) {
+                current = publishSnapshot(List.of());
+            }
+        } catch (RuntimeException e) {
+            connections.decrementAndGet();
+            throw e;
+        }
+        SseEmitter emitter = new SseEmitter(emitterTimeoutMillis);
+        emitter.onCompletion(() -> remove(emitter));
+        emitter.onTimeout(() -> remove(emitter));
+        emitter.onError(error -> remove(emitter));
+        emitters.add(emitter);
+
+        if (!String.valueOf(current.getSequence()).equals(lastEventId)) {
+            send(emitter, current);
+        }
+        return emitter;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onOrderChanged(OrderChangedEvent event) {
+        pendingChanges.add(event.getOrderId());
+        dashboardService.invalidate();
+    }
+
+    @Scheduled(fixedDelayString = "${app.dashboard.stream.coalesce-interval-ms:2000}")
+    public void publishPendingChanges() {
+        if (pendingChanges.isEmpty()) {
+            return;
+        }
+        if (emitters.isEmpty()) {
+            // Không ai xem: bỏ snapshot cũ, lần kết nối tới sẽ tính lại
+            pendingChanges.clear();
+            lastUpdate.set(null);
+            return;
+        }
+        List<Long> changed = new ArrayList<>(pendingChanges);
+        pendingChanges.removeAll(changed);
+        DashboardUpdateDTO update;
+        try {
+            update = publishSnapshot(changed);
+        } catch (ServiceOverloadedException e) {
+            // Chưa tính được thống kê: giữ lại thay đổi để lần sau đẩy tiếp
+            pendingChanges.addAll(changed);
+            return;
+        }
+        for (SseEmitter emitter : emitters) {
+            send(emitter, update);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.dashboard.stream.heartbeat-interval-ms:15000}")
+    public void heartbeat() {
+        for (SseEmitter emitter : emitters) {
+            try {
+                emitter.send(SseEmitter.event().comment("heartbeat"));
+            } catch (IOException | IllegalStateException e) {
+                remove(emitter);
+            }
+        }
+    }
+
+    private DashboardUpdateDTO publishSnapshot(List<Long> changedOrderIds) {
+        DashboardUpdateDTO update = DashboardUpdateDTO.builder()
+                .stats(dashboardService.refresh())
+                .recentOrders(dashboardService.getRecentOrders())
+                .changedOrderIds(changedOrderIds)
+                .sequence(sequence.incrementAndGet())
+                .build();
+        lastUpdate.set(update);
+        return update;
+    }
+
+    private void send(SseEmitter emitter, DashboardUpdateDTO update) {
+        try {
+            emitter.send(SseEmitter.event()
+                    .id(String.valueOf(update.getSequence()))
+                    .name(EVENT_NAME)
+                    .reconnectTime(RECONNECT_MILLIS)
+                    .data(update));
+        } catch (IOException | IllegalStateException e) {
+            logger.debug("Dropping dashboard stream client: {}", e.getMessage());
+            remove(emitter);
+        }
+    }
+
+    private void remove(SseEmitter emitter) {
+        if (emitters.remove(emitter)) {
+            connections.decrementAndGet();
+        }
+    }
+}
@@ -0,0 +1,243 @@
+package com.example.demo.service;
+
+import com.example.demo.entity.EmailOutbox;
+import com.example.demo.entity.OutboxStatus;
+import com.example.demo.repository.EmailOutboxRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.mail.MessagingException;
+import jakarta.mail.internet.MimeMessage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.mail.MailException;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.mail.javamail.MimeMessageHelper;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Gửi nền các email trong bảng {@code email_outbox}. Mỗi lô được "nhận" trong một transaction ngắn
+ * (khóa SKIP LOCKED + gia hạn lease), gửi ngoài transaction qua một kết nối SMTP dùng chung cho cả lô,
+ * rồi ghi kết quả. Lỗi được gửi lại với backoff lũy thừa; quá {@code max-attempts} thì chuyển DEAD.
+ * Email đã gửi được xóa sau {@code retention-days} ngày.
+ */
+@Service
+public class EmailDispatcher {
+
+    private static final Logger logger = LoggerFactory.getLogger(EmailDispatcher.class);
+
+    private static final int MAX_ERROR_LENGTH = 1000;
+    private static final int PURGE_BATCH_SIZE = 1000;
+
+    private final EmailOutboxRepository outboxRepository;
+    private final ObjectProvider<JavaMailSender> mailSender;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean mailEnabled;
+    private final String from;
+    private final int batchSize;
+    private final int maxAttempts;
+    private final Duration lease;
+    private final Duration baseBackoff;
+    private final Duration maxBackoff;
+    private final Duration retention;
+
+    private final Counter sent;
+    private final Counter retried;
+    private final Counter dead;
+    private final AtomicLong pending = new AtomicLong();
+    private final AtomicLong lagSeconds = new AtomicLong();
+
+    public EmailDispatcher(EmailOutboxRepository outboxRepository,
+                           ObjectProvider<JavaMailSender> mailSender,
+                           PlatformTransactionManager transactionManager,
+                           MeterRegistry meterRegistry,
+                           @Value("${app.mail.enabled:false}") boolean mailEnabled,
+                           @Value("${app.mail.from:${spring.mail.username:}}") String from,
+                           @Value("${app.mail.outbox.batch-size:50}") int batchSize,
+                           @Value("${app.mail.outbox.max-attempts:8}") int maxAttempts,
+                           @Value("${app.mail.outbox.lease-seconds:120}") long leaseSeconds,
+                           @Value("${app.mail.outbox.base-backoff-seconds:30}") long baseBackoffSeconds,
+                           @Value("${app.mail.outbox.max-backoff-seconds:3600}") long maxBackoffSeconds,
+                           @Value("${app.mail.outbox.retention-days:7}") long retentionDays) {
+        this.outboxRepository = outboxRepository;
+        this.mailSender = mailSender;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.mailEnabled = mailEnabled;
+        this.from = from;
+        this.batchSize = batchSize;
+        this.maxAttempts = maxAttempts;
+        this.lease = Duration.ofSeconds(leaseSeconds);
+        this.baseBackoff = Duration.ofSeconds(baseBackoffSeconds);
+        this.maxBackoff = Duration.ofSeconds(maxBackoffSeconds);
+        this.retention = Duration.ofDays(retentionDays);
+        this.sent = Counter.builder("mail.outbox.dispatched").tag("result", "sent").register(meterRegistry);
+        this.retried = Counter.builder("mail.outbox.dispatched").tag("result", "retry").register(meterRegistry);
+        this.dead = Counter.builder("mail.outbox.dispatched").tag("result", "dead").register(meterRegistry);
+        Gauge.builder("mail.outbox.pending", pending, AtomicLong::get).register(meterRegistry);
+        Gauge.builder("mail.outbox.lag.seconds", lagSeconds, AtomicLong::get).register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${app.mail.outbox.poll-interval-ms:2000}")
+    public void dispatch() {
+        try {
+            while (dispatchBatch() == batchSize) {
+                // còn email đến hạn: gửi tiếp lô sau
+            }
+        } finally {
+            updateQueueMetrics();
+        }
+    }
+
+    /**
+     * Gửi một lô; trả về số email đã nhận xử lý.
+     */
+    public int dispatchBatch() {
+        LocalDateTime now = LocalDateTime.now();
+        List<EmailOutbox> batch = transactionTemplate.execute(status -> {
+            List<EmailOutbox> due = outboxRepository.lockDue(now, batchSize);
+            // Gia hạn lease để instance khác không nhận lại trong lúc đang gửi
+            due.forEach(email -> email.setNextAttemptAt(now.plus(lease)));
+            return due;
+        });
+        if (batch == null || batch.isEmpty()) {
+            return 0;
+        }
+
+        Map<Long, String> failures = send(batch);
+
+        transactionTemplate.executeWithoutResult(status -> {
+            List<Long> delivered = new ArrayList<>();
+            for (EmailOutbox email : batch) {
+                String error = failures.get(email.getId());
+                if (error == null) {
+                    delivered.add(email.getId());
+                    continue;
+                }
+                int attempts = email.getAttempts() + 1;
+                if (attempts >= maxAttempts) {
+                    outboxRepository.markFailed(email.getId(), OutboxStatus.DEAD, attempts, now, truncate(error));
+                    dead.increment();
+                    logger.warn("Email {} to {} moved to dead letter after {} attempts: {}",
+                            email.getId(), email.getRecipient(), attempts, error);
+                } else {
+                    outboxRepository.markFailed(email.getId(), OutboxStatus.PENDING, attempts,
+                            LocalDateTime.now().plus(backoff(attempts)), truncate(error));
+                    retried.increment();
+                }
+            }
+            if (!delivered.isEmpty()) {
+                outboxRepository.markSent(delivered, LocalDateTime.now());
+                sent.increment(delivered.size());
+            }
+        });
+        return batch.size();
+    }
+
+    /**
+     * Xóa các email đã gửi quá hạn lưu; email DEAD được giữ lại để kiểm tra.
+     */
+    @Scheduled(cron = "${app.mail.outbox.cleanup-cron:0 20 * * * *}")
+    public void purgeSent() {
+        LocalDateTime before = LocalDateTime.now().minus(retention);
+        int removed = 0;
+        int deleted;
+        do {
+            deleted = outboxRepository.deleteSentBefore(before, PURGE_BATCH_SIZE);
+            removed += deleted;
+        } while (deleted == PURGE_BATCH_SIZE);
+        if (removed > 0) {
+            logger.info("Purged {} sent emails from outbox", removed);
+        }
+    }
+
+    /**
+     * Gửi cả lô qua một lần kết nối SMTP. Trả về lỗi theo id email.
+     */
+    private Map<Long, String> send(List<EmailOutbox> batch) {
+        Map<Long, String> failures = new HashMap<>();
+        JavaMailSender sender = mailEnabled ? mailSender.getIfAvailable() : null;
+        if (sender == null) {
+            // Chưa cấu hình SMTP: chỉ ghi log như bản mock trước đây
+            batch.forEach(email -> logger.info("[mail disabled] To: {} | Subject: {}", email.getRecipient(), email.getSubject()));
+            return failures;
+        }
+
+        Map<MimeMessage, Long> messages = new IdentityHashMap<>();
+        for (EmailOutbox email : batch) {
+            try {
+                MimeMessage message = sender.createMimeMessage();
+                MimeMessageHelper helper = new MimeMessageHelper(message, false, "UTF-8");
+                if (from != null && !from.isBlank()) {
+                    helper.setFrom(from);
+                }
+                helper.setTo(email.getRecipient());
+                helper.setSubject(email.getSubject());
+                helper.setText(email.getBody());
+                messages.put(message, email.getId());
+            } catch (MessagingException e) {
+                failures.put(email.getId(), e.getMessage());
+            }
+        }
+        if (messages.isEmpty()) {
+            return failures;
+        }
+
+        try {
+            sender.send(messages.keySet().toArray(new MimeMessage[0]));
+        } catch (MailSendException e) {
+            if (e.getFailedMessages().isEmpty()) {
+                messages.values().forEach(id -> failures.put(id, e.getMessage()));
+            } else {
+                e.getFailedMessages().forEach((message, cause) -> {
+                    Long id = messages.get(message);
+                    if (id != null) {
+                        failures.put(id, cause.getMessage());
+                    }
+                });
+            }
+        } catch (MailException e) {
+            messages.values().forEach(id -> failures.put(id, e.getMessage()));
+        }
+        return failures;
+    }
+
+    private void updateQueueMetrics() {
+        try {
+            pending.set(outboxRepository.countByStatus(OutboxStatus.PENDING));
+            LocalDateTime oldest = outboxRepository.findOldestPendingCreatedAt();
+            lagSeconds.set(oldest == null ? 0 : Math.max(0, Duration.between(oldest, LocalDateTime.now()).getSeconds()));
+        } catch (RuntimeException e) {
+            logger.debug("Cannot refresh mail outbox metrics: {}", e.getMessage());
+        }
+    }
+
+    private Duration backoff(int attempts) {
+        long seconds = baseBackoff.getSeconds() << Math.min(attempts - 1, 20);
+        seconds = Math.min(seconds, maxBackoff.getSeconds());
+        // Thêm tới 20% ngẫu nhiên để các lần gửi lại không dồn cùng lúc
+        return Duration.ofSeconds(seconds + ThreadLocalRandom.current().nextLong(seconds / 5 + 1));
+    }
+
+    private static String truncate(String error) {
+        if (error == null) {
+            return "unknown error";
+        }
+        return error.length() <= MAX_ERROR_LENGTH ? error : error.substring(0, MAX_ERROR_LENGTH);
+    }
+}
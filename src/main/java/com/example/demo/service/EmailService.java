@@ -1,22 +1,91 @@
 package com.example.demo.service;
 
+import com.example.demo.entity.EmailOutbox;
 import com.example.demo.entity.Order;
+import com.example.demo.repository.EmailOutboxRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Không gửi email trực tiếp: chỉ ghi vào bảng {@code email_outbox} trong transaction của người gọi,
+ * {@link EmailDispatcher} sẽ gửi nền sau khi transaction commit.
+ */
 @Service
+@RequiredArgsConstructor
 public class EmailService {
-    
+
+    private static final String TYPE_CONFIRMATION = "ORDER_CONFIRMATION";
+    private static final String TYPE_STATUS_UPDATE = "ORDER_STATUS_UPDATE";
+
+    private static final String INSERT_SQL = "INSERT INTO email_outbox " +
+            "(recipient, type, subject, body, status, attempts, next_attempt_at, created_at) " +
+            "VALUES (?, ?, ?, ?, 'PENDING', 0, ?, ?)";
+
+    private final EmailOutboxRepository outboxRepository;
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Thông tin tối thiểu để gửi email cập nhật trạng thái (dùng cho cập nhật hàng loạt).
+     */
+    public record StatusNotification(Long orderId, String customerName, String customerEmail, String status) {
+    }
+
+    @Transactional
     public void sendOrderConfirmation(Order order) {
-        // Mock implementation - in production, this would send an actual email
-        System.out.println("Sending order confirmation email to: " + order.getCustomerEmail());
-        System.out.println("Order ID: " + order.getId());
-        System.out.println("Total: " + order.getTotalPrice());
+        enqueue(order.getCustomerEmail(), TYPE_CONFIRMATION,
+                "Xác nhận đơn hàng #" + order.getId(),
+                "Xin chào " + order.getCustomerName() + ",\n\n" +
+                "Cảm ơn bạn đã đặt hàng.\n" +
+                "Mã đơn hàng: " + order.getId() + "\n" +
+                "Tổng tiền: " + order.getTotalPrice() + "\n");
     }
-    
+
+    @Transactional
     public void sendOrderStatusUpdate(Order order) {
-        // Mock implementation - in production, this would send an actual email
-        System.out.println("Sending order status update email to: " + order.getCustomerEmail());
-        System.out.println("Order ID: " + order.getId());
-        System.out.println("New Status: " + order.getStatus());
+        enqueue(order.getCustomerEmail(), TYPE_STATUS_UPDATE,
+                statusSubject(order.getId()),
+                statusBody(order.getId(), order.getCustomerName(), order.getStatus().name()));
+    }
+
+    /**
+     * Ghi nhiều email cập nhật trạng thái bằng một JDBC batch.
+     */
+    @Transactional
+    public void sendOrderStatusUpdates(List<StatusNotification> notifications) {
+        if (notifications.isEmpty()) {
+            return;
+        }
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        List<Object[]> batch = new ArrayList<>(notifications.size());
+        for (StatusNotification n : notifications) {
+            batch.add(new Object[]{n.customerEmail(), TYPE_STATUS_UPDATE, statusSubject(n.orderId()),
+                    statusBody(n.orderId(), n.customerName(), n.status()), now, now});
+        }
+        jdbcTemplate.batchUpdate(INSERT_SQL, batch);
+    }
+
+    private void enqueue(String recipient, String type, String subject, String body) {
+        EmailOutbox email = new EmailOutbox();
+        email.setRecipient(recipient);
+        email.setType(type);
+        email.setSubject(subject);
+        email.setBody(body);
+        outboxRepository.save(email);
+    }
+
+    private static String statusSubject(Long orderId) {
+        return "Cập nhật đơn hàng #" + orderId;
+    }
+
+    private static String statusBody(Long orderId, String customerName, String status) {
+        return "Xin chào " + customerName + ",\n\n" +
+               "Đơn hàng " + orderId + " đã chuyển sang trạng thái: " + status + "\n";
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,270 @@
+package com.example.demo.service;
+
+import com.example.demo.exception.ServiceOverloadedException;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ResultSetExtractor;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import javax.sql.DataSource;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.Locale;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Xuất dữ liệu dạng CSV/NDJSON bằng cách đọc kết quả JDBC theo luồng (chế độ streaming của MySQL,
+ * không qua persistence context) và ghi thẳng từng dòng ra response. Bộ nhớ dùng không phụ thuộc số dòng.
+ */
+@Service
+public class ExportService {
+
+    public enum Dataset {
+        ORDERS("orders", "SELECT id, customer_name, customer_email, user_id, total_price, payment_method, status, " +
+                "created_at FROM orders ORDER BY id"),
+        USERS("users", "SELECT id, email, name, role, locked, created_at FROM users ORDER BY id"),
+        PRODUCTS("products", "SELECT id, name, category, price, stock, image_url, created_at FROM products ORDER BY id");
+
+        private final String fileName;
+        private final String sql;
+
+        Dataset(String fileName, String sql) {
+            this.fileName = fileName;
+            this.sql = sql;
+        }
+
+        public String getFileName() {
+            return fileName;
+        }
+    }
+
+    public enum Format {
+        CSV("csv", "text/csv"),
+        NDJSON("ndjson", "application/x-ndjson");
+
+        private final String extension;
+        private final String contentType;
+
+        Format(String extension, String contentType) {
+            this.extension = extension;
+            this.contentType = contentType;
+        }
+
+        public String getExtension() {
+            return extension;
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+    }
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final JdbcTemplate exportJdbcTemplate;
+    private final ObjectMapper objectMapper;
+    private final Semaphore permits;
+
+    public ExportService(DataSource dataSource,
+                         ObjectMapper objectMapper,
+                         @Value("${app.export.max-concurrent:2}") int maxConcurrent) {
+        // JdbcTemplate riêng: fetch size Integer.MIN_VALUE bật streaming từng dòng của Connector/J chỉ cho
+        // câu lệnh xuất, các kết nối khác trong pool giữ cấu hình mặc định
+        this.exportJdbcTemplate = new JdbcTemplate(dataSource);
+        this.exportJdbcTemplate.setFetchSize(Integer.MIN_VALUE);
+        this.objectMapper = objectMapper;
+        this.permits = new Semaphore(maxConcurrent);
+    }
+
+    public static Dataset parseDataset(String name) {
+        try {
+            return Dataset.valueOf(name.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Không hỗ trợ xuất dữ liệu: " + name);
+        }
+    }
+
+    public static Format parseFormat(String name) {
+        try {
+            return Format.valueOf(name.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Định dạng không hợp lệ: " + name);
+        }
+    }
+
+    /**
+     * Giữ chỗ một lượt xuất (tối đa {@code app.export.max-concurrent} lượt đồng thời) và trả về
+     * phần thân response sẽ được ghi trên thread bất đồng bộ. Chỗ được trả khi phần thân chạy xong, hoặc
+     * qua hàm trả chỗ giao cho {@code onCompletion} khi request kết thúc mà phần thân chưa chạy.
+     */
+    public StreamingResponseBody export(Dataset dataset, Format format, boolean gzip, Consumer<Runnable> onCompletion) {
+        if (!permits.tryAcquire()) {
+            throw new ServiceOverloadedException("Đang có quá nhiều lượt xuất dữ liệu", 30);
+        }
+        Runnable release = releaseOnce(permits);
+        onCompletion.accept(release);
+        return outputStream -> {
+            try {
+                OutputStream out = gzip ? new GZIPOutputStream(outputStream, BUFFER_SIZE) : outputStream;
+                Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), BUFFER_SIZE);
+                if (format == Format.CSV) {
+                    writeCsv(dataset, writer);
+                } else {
+                    writeNdjson(dataset, writer);
+                }
+                writer.flush();
+                if (out instanceof GZIPOutputStream gzipStream) {
+                    gzipStream.finish();
+                }
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            } finally {
+                release.run();
+            }
+        };
+    }
+
+    /**
+     * Hàm trả một chỗ của {@code permits}, gọi nhiều lần cũng chỉ trả một lần.
+     */
+    static Runnable releaseOnce(Semaphore permits) {
+        AtomicBoolean released = new AtomicBoolean();
+        return () -> {
+            if (released.compareAndSet(false, true)) {
+                permits.release();
+            }
+        };
+    }
+
+    private void writeCsv(Dataset dataset, Writer writer) {
+        exportJdbcTemplate.query(dataset.sql, new RowWriter() {
+            @Override
+            void writeHeader(ResultSetMetaData meta) throws SQLException, IOException {
+                for (int i = 1; i <= meta.getColumnCount(); i++) {
+                    if (i > 1) {
+                        writer.write(',');
+                    }
+                    writer.write(meta.getColumnLabel(i));
+                }
+                writer.write("\r\n");
+                // Gửi header ngay để client bắt đầu nhận dữ liệu
+                writer.flush();
+            }
+
+            @Override
+            void writeRow(ResultSet rs, int columns) throws SQLException, IOException {
+                for (int i = 1; i <= columns; i++) {
+                    if (i > 1) {
+                        writer.write(',');
+                    }
+                    writer.write(csvValue(value(rs, i)));
+                }
+                writer.write("\r\n");
+            }
+        });
+    }
+
+    private void writeNdjson(Dataset dataset, Writer writer) {
+        exportJdbcTemplate.query(dataset.sql, new RowWriter() {
+            private JsonGenerator generator;
+            private String[] labels;
+
+            @Override
+            void writeHeader(ResultSetMetaData meta) throws SQLException, IOException {
+                generator = objectMapper.getFactory().createGenerator(writer);
+                generator.setRootValueSeparator(null);
+                labels = new String[meta.getColumnCount() + 1];
+                for (int i = 1; i <= meta.getColumnCount(); i++) {
+                    labels[i] = meta.getColumnLabel(i);
+                }
+            }
+
+            @Override
+            void writeRow(ResultSet rs, int columns) throws SQLException, IOException {
+                generator.writeStartObject();
+                for (int i = 1; i <= columns; i++) {
+                    generator.writeFieldName(labels[i]);
+                    generator.writeObject(value(rs, i));
+                }
+                generator.writeEndObject();
+                generator.writeRaw('\n');
+            }
+
+            @Override
+            void finish() throws IOException {
+                generator.flush();
+            }
+        });
+    }
+
+    private static Object value(ResultSet rs, int column) throws SQLException {
+        Object value = rs.getObject(column);
+        if (value instanceof Timestamp timestamp) {
+            return timestamp.toLocalDateTime().toString();
+        }
+        return value;
+    }
+
+    /**
+     * Giá trị CSV theo RFC 4180; ô bắt đầu bằng ký tự công thức được thêm dấu ' để bảng tính không thực thi.
+     */
+    private static String csvValue(Object value) {
+        if (value == null) {
+            return "";
+        }
+        String text = value.toString();
+        if (!text.isEmpty() && "=+-@".indexOf(text.charAt(0)) >= 0 && !(value instanceof Number)) {
+            text = "'" + text;
+        }
+        if (text.indexOf(',') >= 0 || text.indexOf('"') >= 0 || text.indexOf('\n') >= 0 || text.indexOf('\r') >= 0) {
+            return '"' + text.replace("\"", "\"\"") + '"';
+        }
+        return text;
+    }
+
+    /**
+     * Ghi header (kể cả khi không có dòng nào) rồi ghi từng dòng; lỗi I/O (client ngắt kết nối) dừng truy vấn.
+     */
+    private abstract static class RowWriter implements ResultSetExtractor<Void> {
+
+        @Override
+        public Void extractData(ResultSet rs) throws SQLException {
+            try {
+                ResultSetMetaData meta = rs.getMetaData();
+                int columns = meta.getColumnCount();
+                writeHeader(meta);
+                while (rs.next()) {
+                    writeRow(rs, columns);
+                }
+                finish();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return null;
+        }
+
+        abstract void writeHeader(ResultSetMetaData meta) throws SQLException, IOException;
+
+        abstract void writeRow(ResultSet rs, int columns) throws SQLException, IOException;
+
+        void finish() throws IOException {
+        }
+    }
+}
@@ -0,0 +1,255 @@
+package com.example.demo.service;
+
+import com.example.demo.entity.IdempotencyRecord;
+import com.example.demo.repository.IdempotencyRecordRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * Xử lý header Idempotency-Key: request lặp lại trả về kết quả đã lưu mà không chạy lại thao tác.
+ * Cache trong bộ nhớ (giới hạn kích thước) giữ kết quả gần đây và cả request đang chạy, nên các
+ * request trùng đồng thời trên cùng instance chờ chung một kết quả; bảng {@code idempotency_keys}
+ * đảm bảo chống trùng giữa các instance và sau khi khởi động lại. Dòng IN_PROGRESS bị khóa suốt lúc thao tác
+ * chạy; dòng đã quá {@code lease-seconds} (tiến trình giữ chỗ dừng đột ngột) được thu hồi cho lần thử lại.
+ */
+@Service
+public class IdempotencyService {
+
+    private static final Logger logger = LoggerFactory.getLogger(IdempotencyService.class);
+
+    private static final int MAX_KEY_LENGTH = 100;
+
+    public record Result<T>(T value, boolean replayed) {
+    }
+
+    private final IdempotencyRecordRepository recordRepository;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate transactionTemplate;
+    private final int maxEntries;
+    private final long ttlHours;
+    private final long waitMillis;
+    private final long leaseSeconds;
+    private final Map<String, Entry> cache;
+
+    public IdempotencyService(IdempotencyRecordRepository recordRepository,
+                              ObjectMapper objectMapper,
+                              PlatformTransactionManager transactionManager,
+                              @Value("${app.orders.idempotency.cache-size:10000}") int maxEntries,
+                              @Value("${app.orders.idempotency.ttl-hours:24}") long ttlHours,
+                              @Value("${app.orders.idempotency.wait-ms:30000}") long waitMillis,
+                              @Value("${app.orders.idempotency.lease-seconds:300}") long leaseSeconds) {
+        this.recordRepository = recordRepository;
+        this.objectMapper = objectMapper;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.maxEntries = maxEntries;
+        this.ttlHours = ttlHours;
+        this.waitMillis = waitMillis;
+        this.leaseSeconds = leaseSeconds;
+        this.cache = new LinkedHashMap<>(256, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                // Không bỏ request đang chạy khỏi cache
+                return size() > IdempotencyService.this.maxEntries && eldest.getValue().future.isDone();
+            }
+        };
+    }
+
+    /**
+     * Chạy {@code action} đúng một lần cho mỗi khóa. {@code action} và việc lưu kết quả nằm trong
+     * cùng một transaction nên không có trường hợp thao tác đã commit mà kết quả chưa được lưu.
+     */
+    public <T> Result<T> execute(String key, Object request, Class<T> responseType, Supplier<T> action) {
+        if (key.isBlank() || key.length() > MAX_KEY_LENGTH) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Idempotency-Key không hợp lệ");
+        }
+        String requestHash = hash(request);
+
+        Entry entry;
+        boolean owner = false;
+        synchronized (cache) {
+            entry = cache.get(key);
+            if (entry == null) {
+                entry = new Entry(requestHash);
+                cache.put(key, entry);
+                owner = true;
+            }
+        }
+        if (!entry.requestHash.equals(requestHash)) {
+            throw mismatch();
+        }
+        if (!owner) {
+            return new Result<>(await(entry, responseType), true);
+        }
+
+        try {
+            Result<T> result = run(key, requestHash, responseType, action);
+            entry.future.complete(result.value());
+            return result;
+        } catch (RuntimeException e) {
+            synchronized (cache) {
+                cache.remove(key, entry);
+            }
+            entry.future.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    /**
+     * Xóa các khóa đã quá hạn lưu.
+     */
+    @Scheduled(cron = "${app.orders.idempotency.cleanup-cron:0 15 * * * *}")
+    public void purgeExpired() {
+        int removed = recordRepository.deleteOlderThan(LocalDateTime.now().minusHours(ttlHours));
+        if (removed > 0) {
+            logger.info("Purged {} expired idempotency keys", removed);
+        }
+    }
+
+    private <T> Result<T> run(String key, String requestHash, Class<T> responseType, Supplier<T> action) {
+        Optional<IdempotencyRecord> existing = recordRepository.findByIdempotencyKey(key);
+        if (existing.isPresent() && !reclaim(existing.get(), requestHash)) {
+            return new Result<>(replay(existing.get(), requestHash, responseType), true);
+        }
+
+        // Giữ chỗ khóa bằng một transaction riêng; instance khác đang giữ thì unique key báo lỗi
+        Long claimedId;
+        try {
+            claimedId = transactionTemplate.execute(status -> {
+                IdempotencyRecord record = new IdempotencyRecord();
+                record.setIdempotencyKey(key);
+                record.setRequestHash(requestHash);
+                record.setStatus(IdempotencyRecord.Status.IN_PROGRESS);
+                record.setCreatedAt(LocalDateTime.now());
+                return recordRepository.saveAndFlush(record).getId();
+            });
+        } catch (DataIntegrityViolationException e) {
+            return new Result<>(recordRepository.findByIdempotencyKey(key)
+                    .map(record -> replay(record, requestHash, responseType))
+                    .orElseThrow(() -> inProgress()), true);
+        }
+
+        try {
+            T value = transactionTemplate.execute(status -> {
+                // Khóa dòng giữ chỗ suốt thao tác: chỉ thu hồi được khi tiến trình này đã dừng (mất kết nối)
+                IdempotencyRecord record = recordRepository.lockById(claimedId)
+                        .orElseThrow(IdempotencyService::inProgress);
+                T result = action.get();
+                record.setStatus(IdempotencyRecord.Status.COMPLETED);
+                record.setResponseBody(toJson(result));
+                return result;
+            });
+            return new Result<>(value, false);
+        } catch (RuntimeException e) {
+            // Thao tác lỗi (đã rollback): nhả khóa để client có thể thử lại
+            recordRepository.deleteInProgress(claimedId);
+            throw e;
+        }
+    }
+
+    /**
+     * Xóa dòng IN_PROGRESS cùng request đã quá hạn lease để request hiện tại giữ chỗ lại.
+     */
+    private boolean reclaim(IdempotencyRecord record, String requestHash) {
+        LocalDateTime staleBefore = LocalDateTime.now().minusSeconds(leaseSeconds);
+        if (record.getStatus() != IdempotencyRecord.Status.IN_PROGRESS
+                || !record.getRequestHash().equals(requestHash)
+                || !record.getCreatedAt().isBefore(staleBefore)) {
+            return false;
+        }
+        if (recordRepository.deleteStaleInProgress(record.getId(), staleBefore) == 0) {
+            return false;
+        }
+        logger.warn("Reclaimed stale idempotency key {} claimed at {}", record.getIdempotencyKey(), record.getCreatedAt());
+        return true;
+    }
+
+    private <T> T replay(IdempotencyRecord record, String requestHash, Class<T> responseType) {
+        if (!record.getRequestHash().equals(requestHash)) {
+            throw mismatch();
+        }
+        if (record.getStatus() != IdempotencyRecord.Status.COMPLETED) {
+            throw inProgress();
+        }
+        try {
+            return objectMapper.readValue(record.getResponseBody(), responseType);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Cannot read stored idempotent response", e);
+        }
+    }
+
+    private <T> T await(Entry entry, Class<T> responseType) {
+        try {
+            return responseType.cast(entry.future.get(waitMillis, TimeUnit.MILLISECONDS));
+        } catch (TimeoutException e) {
+            throw inProgress();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw inProgress();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    private String hash(Object request) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256")
+                    .digest(toJson(request).getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private String toJson(Object value) {
+        try {
+            return objectMapper.writeValueAsString(value);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Cannot serialize idempotent payload", e);
+        }
+    }
+
+    private static ResponseStatusException mismatch() {
+        return new ResponseStatusException(HttpStatus.UNPROCESSABLE_ENTITY,
+                "Idempotency-Key đã được dùng cho một request khác");
+    }
+
+    private static ResponseStatusException inProgress() {
+        return new ResponseStatusException(HttpStatus.CONFLICT, "Request với Idempotency-Key này đang được xử lý");
+    }
+
+    private static final class Entry {
+        private final String requestHash;
+        private final CompletableFuture<Object> future = new CompletableFuture<>();
+
+        private Entry(String requestHash) {
+            this.requestHash = requestHash;
+        }
+    }
+}
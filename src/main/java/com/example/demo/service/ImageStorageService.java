@@ -0,0 +1,271 @@
+package com.example.demo.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.server.ResponseStatusException;
+
+import javax.imageio.ImageIO;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Lưu ảnh theo nội dung: tên file là SHA-256 của dữ liệu nên upload trùng nhau chỉ lưu một lần và URL
+ * không bao giờ đổi nội dung (cache vĩnh viễn được). Thumbnail theo các chiều rộng cấu hình sẵn được
+ * tạo trên {@code imageProcessingExecutor}; chưa có thumbnail thì phục vụ ảnh gốc.
+ * <p>
+ * Cấu trúc thư mục: {@code originals/ab/<sha>.<ext>} và {@code thumbs/<width>/ab/<sha>.<ext>}.
+ */
+@Service
+public class ImageStorageService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ImageStorageService.class);
+
+    public static final String URL_PREFIX = "/api/images/";
+
+    private static final Pattern FILE_NAME = Pattern.compile("([0-9a-f]{64})\\.(jpg|png|gif|webp)");
+
+    /**
+     * Ảnh cần phục vụ; {@code immutable} false khi đang trả ảnh gốc thay cho thumbnail chưa tạo xong.
+     */
+    public record StoredImage(Path path, String etag, String contentType, boolean immutable) {
+    }
+
+    private final Path originals;
+    private final Path thumbnails;
+    private final Path temp;
+    private final int[] thumbnailWidths;
+    private final ThreadPoolExecutor executor;
+    private final Set<String> pendingThumbnails = ConcurrentHashMap.newKeySet();
+
+    public ImageStorageService(@Qualifier("imageProcessingExecutor") ThreadPoolExecutor executor,
+                               @Value("${app.storage.image-root:./data/images}") String root,
+                               @Value("${app.storage.thumbnail-widths:160,480,960}") int[] thumbnailWidths)
+            throws IOException {
+        Path rootPath = Path.of(root).toAbsolutePath().normalize();
+        this.originals = Files.createDirectories(rootPath.resolve("originals"));
+        this.thumbnails = Files.createDirectories(rootPath.resolve("thumbs"));
+        this.temp = Files.createDirectories(rootPath.resolve("tmp"));
+        this.thumbnailWidths = thumbnailWidths.clone();
+        Arrays.sort(this.thumbnailWidths);
+        this.executor = executor;
+    }
+
+    /**
+     * Ghi ảnh upload (băm SHA-256 trong lúc ghi ra file tạm), bỏ bản trùng và trả về URL phục vụ ảnh.
+     */
+    public String store(MultipartFile file) {
+        Path tempFile = null;
+        try (InputStream in = new BufferedInputStream(file.getInputStream())) {
+            String extension = detectExtension(in);
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            tempFile = Files.createTempFile(temp, "upload-", ".part");
+            try (InputStream hashing = new DigestInputStream(in, digest)) {
+                Files.copy(hashing, tempFile, StandardCopyOption.REPLACE_EXISTING);
+            }
+            String hash = HexFormat.of().formatHex(digest.digest());
+            Path target = originalPath(hash, extension);
+            if (Files.exists(target)) {
+                Files.delete(tempFile);
+            } else {
+                moveIntoPlace(tempFile, target);
+            }
+            tempFile = null;
+            scheduleThumbnails(hash, extension);
+            return URL_PREFIX + hash + "." + extension;
+        } catch (IOException e) {
+            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Error saving image file", e);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        } finally {
+            if (tempFile != null) {
+                try {
+                    Files.deleteIfExists(tempFile);
+                } catch (IOException e) {
+                    logger.warn("Cannot delete temp upload {}", tempFile, e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Ảnh cho {@code fileName} với chiều rộng mong muốn {@code width} (null là ảnh gốc): chọn thumbnail
+     * nhỏ nhất không hẹp hơn {@code width}.
+     */
+    public StoredImage resolve(String fileName, Integer width) {
+        Matcher matcher = FILE_NAME.matcher(fileName);
+        if (!matcher.matches()) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Không tìm thấy ảnh");
+        }
+        String hash = matcher.group(1);
+        String extension = matcher.group(2);
+        Path original = originalPath(hash, extension);
+        if (!Files.isRegularFile(original)) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Không tìm thấy ảnh");
+        }
+        String contentType = contentType(extension);
+
+        Integer thumbnailWidth = width != null ? thumbnailWidthFor(width) : null;
+        if (thumbnailWidth == null || !canResize(extension)) {
+            return new StoredImage(original, '"' + hash + '"', contentType, true);
+        }
+        Path thumbnail = thumbnailPath(thumbnailWidth, hash, extension);
+        if (Files.isRegularFile(thumbnail)) {
+            return new StoredImage(thumbnail, "\"" + hash + "-w" + thumbnailWidth + '"', contentType, true);
+        }
+        scheduleThumbnails(hash, extension);
+        return new StoredImage(original, '"' + hash + '"', contentType, false);
+    }
+
+    private Integer thumbnailWidthFor(int width) {
+        for (int candidate : thumbnailWidths) {
+            if (candidate >= width) {
+                return candidate;
+            }
+        }
+        return null;
+    }
+
+    private void scheduleThumbnails(String hash, String extension) {
+        if (!canResize(extension) || thumbnailWidths.length == 0 || !pendingThumbnails.add(hash)) {
+            return;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    generateThumbnails(hash, extension);
+                } catch (IOException | RuntimeException e) {
+                    logger.warn("Thumbnail generation failed for {}", hash, e);
+                } finally {
+                    pendingThumbnails.remove(hash);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // Pool đang bận: request sau sẽ thử lại
+            pendingThumbnails.remove(hash);
+        }
+    }
+
+    private void generateThumbnails(String hash, String extension) throws IOException {
+        BufferedImage source = null;
+        for (int width : thumbnailWidths) {
+            Path target = thumbnailPath(width, hash, extension);
+            if (Files.exists(target)) {
+                continue;
+            }
+            if (source == null) {
+                source = ImageIO.read(originalPath(hash, extension).toFile());
+                if (source == null) {
+                    return;
+                }
+            }
+            // Ảnh nhỏ hơn kích thước thumbnail thì giữ nguyên kích thước
+            BufferedImage resized = source.getWidth() <= width ? source : resize(source, width, extension);
+            Path tempFile = Files.createTempFile(temp, "thumb-", ".part");
+            try (OutputStream out = Files.newOutputStream(tempFile)) {
+                ImageIO.write(resized, "jpg".equals(extension) ? "jpeg" : extension, out);
+            }
+            Files.createDirectories(target.getParent());
+            moveIntoPlace(tempFile, target);
+        }
+    }
+
+    private static BufferedImage resize(BufferedImage source, int width, String extension) {
+        int height = Math.max(1, (int) Math.round((double) source.getHeight() * width / source.getWidth()));
+        int type = "jpg".equals(extension) ? BufferedImage.TYPE_INT_RGB : BufferedImage.TYPE_INT_ARGB;
+        BufferedImage target = new BufferedImage(width, height, type);
+        Graphics2D graphics = target.createGraphics();
+        try {
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            graphics.drawImage(source, 0, 0, width, height, null);
+        } finally {
+            graphics.dispose();
+        }
+        return target;
+    }
+
+    private static void moveIntoPlace(Path source, Path target) throws IOException {
+        Files.createDirectories(target.getParent());
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE);
+        } catch (FileAlreadyExistsException e) {
+            // Upload cùng nội dung đồng thời: bản đã có giống hệt
+            Files.deleteIfExists(source);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Xác định định dạng theo magic bytes thay vì tin Content-Type/tên file từ client.
+     */
+    private static String detectExtension(InputStream in) throws IOException {
+        in.mark(12);
+        byte[] header = in.readNBytes(12);
+        in.reset();
+        if (header.length >= 3 && (header[0] & 0xFF) == 0xFF && (header[1] & 0xFF) == 0xD8
+                && (header[2] & 0xFF) == 0xFF) {
+            return "jpg";
+        }
+        if (header.length >= 8 && (header[0] & 0xFF) == 0x89 && header[1] == 'P' && header[2] == 'N'
+                && header[3] == 'G') {
+            return "png";
+        }
+        if (header.length >= 4 && header[0] == 'G' && header[1] == 'I' && header[2] == 'F' && header[3] == '8') {
+            return "gif";
+        }
+        if (header.length >= 12 && header[0] == 'R' && header[1] == 'I' && header[2] == 'F' && header[3] == 'F'
+                && header[8] == 'W' && header[9] == 'E' && header[10] == 'B' && header[11] == 'P') {
+            return "webp";
+        }
+        throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Chỉ hỗ trợ ảnh JPEG, PNG, GIF hoặc WebP");
+    }
+
+    private static boolean canResize(String extension) {
+        // ImageIO mặc định không đọc được WebP; GIF động mất khung hình nếu thu nhỏ
+        return "jpg".equals(extension) || "png".equals(extension);
+    }
+
+    private static String contentType(String extension) {
+        return switch (extension) {
+            case "jpg" -> "image/jpeg";
+            case "png" -> "image/png";
+            case "gif" -> "image/gif";
+            default -> "image/webp";
+        };
+    }
+
+    private Path originalPath(String hash, String extension) {
+        return originals.resolve(hash.substring(0, 2)).resolve(hash + "." + extension);
+    }
+
+    private Path thumbnailPath(int width, String hash, String extension) {
+        return thumbnails.resolve(String.valueOf(width)).resolve(hash.substring(0, 2)).resolve(hash + "." + extension);
+    }
+}
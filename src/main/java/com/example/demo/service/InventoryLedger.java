@@ -0,0 +1,535 @@
+package com.example.demo.service;
+
+import com.example.demo.entity.InventoryLedgerCheckpoint;
+import com.example.demo.repository.InventoryLedgerCheckpointRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.core.Ordered;
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+
+/**
+ * Sổ tồn kho trong bộ nhớ cho sản phẩm "nóng" (bật bằng {@code app.inventory.ledger.enabled}).
+ *
+ * <ul>
+ *   <li>Sản phẩm được đặt nhiều trong một chu kỳ được nâng lên "nóng": tồn kho khả dụng giữ trong
+ *       một {@link AtomicLong} và việc giữ hàng chỉ là một vòng CAS, không chạm dòng MySQL.</li>
+ *   <li>Delta giữ hàng được ghi nối vào {@link ReservationLog} và fsync ngay trước khi transaction đơn hàng
+ *       commit (ghi lỗi thì đơn hàng rollback), rollback thì ghi thêm bản bù; trả hàng được ghi sau khi commit.
+ *       Nhật ký và bảng chờ luôn được cập nhật cùng nhau; {@link #flush()} ghi các delta ròng xuống
+ *       {@code products.stock} theo lô cùng checkpoint số thứ tự, nên khởi động lại sau sự cố sẽ áp dụng phần
+ *       nhật ký còn thiếu đúng một lần. Sự cố giữa lúc ghi nhật ký và lúc commit chỉ có thể làm tồn kho thấp
+ *       hơn thực tế, không bao giờ bán vượt.</li>
+ *   <li>Mỗi giao dịch tồn kho (nóng hay nguội) giữ read lock của stripe sản phẩm tới khi kết thúc;
+ *       nâng/hạ cấp giữ write lock, nên không có giao dịch nào đi đường DB trên số liệu cũ.</li>
+ *   <li>Thao tác ghi đè tồn kho của admin gọi {@link #demoteUntilCompletion(Collection)}: sản phẩm chỉ rời
+ *       bộ nhớ khi delta của nó đã được ghi xuống DB, và không được nâng cấp lại cho tới khi transaction
+ *       của admin kết thúc.</li>
+ * </ul>
+ */
+@Service
+public class InventoryLedger implements SmartLifecycle {
+
+    private static final Logger logger = LoggerFactory.getLogger(InventoryLedger.class);
+
+    private static final int LOCK_STRIPES = 64;
+    private static final long PROMOTE_LOCK_TIMEOUT_MILLIS = 500;
+
+    private static final String APPLY_DELTA_SQL = "UPDATE products SET stock = stock + ?, version = version + 1 WHERE id = ?";
+    private static final String CHECKPOINT_SQL = "INSERT INTO inventory_ledger_checkpoint (id, last_sequence) " +
+            "VALUES (?, ?) ON DUPLICATE KEY UPDATE last_sequence = VALUES(last_sequence)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate flushTransaction;
+    private final InventoryLedgerCheckpointRepository checkpointRepository;
+    private final ProductCategoryStatsService categoryStatsService;
+    private final boolean enabled;
+    private final Path logDirectory;
+    private final long hotThreshold;
+    private final long coldThreshold;
+    private final int maxHotProducts;
+
+    private final ReadWriteLock[] stripes = new ReadWriteLock[LOCK_STRIPES];
+    private final Map<Long, AtomicLong> hot = new ConcurrentHashMap<>();
+    private final Map<Long, LongAdder> demand = new ConcurrentHashMap<>();
+    // Sản phẩm đang có transaction của admin ghi đè tồn kho (số transaction), không được nâng cấp
+    private final Map<Long, Integer> pinned = new ConcurrentHashMap<>();
+    private final Object flushLock = new Object();
+    private final Object logLock = new Object();
+
+    // Các trường dưới đây được bảo vệ bởi logLock
+    private Map<Long, Long> pending = new HashMap<>();
+    private ReservationLog log;
+
+    private volatile boolean running;
+
+    public InventoryLedger(JdbcTemplate jdbcTemplate,
+                           PlatformTransactionManager transactionManager,
+                           InventoryLedgerCheckpointRepository checkpointRepository,
+                           ProductCategoryStatsService categoryStatsService,
+                           MeterRegistry meterRegistry,
+                           @Value("${app.inventory.ledger.enabled:false}") boolean enabled,
+                           @Value("${app.inventory.ledger.log-dir:./data/inventory-ledger}") String logDirectory,
+                           @Value("${app.inventory.ledger.hot-threshold:20}") long hotThreshold,
+                           @Value("${app.inventory.ledger.cold-threshold:2}") long coldThreshold,
+                           @Value("${app.inventory.ledger.max-hot-products:1000}") int maxHotProducts) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.flushTransaction = new TransactionTemplate(transactionManager);
+        this.flushTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.checkpointRepository = checkpointRepository;
+        this.categoryStatsService = categoryStatsService;
+        this.enabled = enabled;
+        this.logDirectory = Path.of(logDirectory);
+        this.hotThreshold = hotThreshold;
+        this.coldThreshold = coldThreshold;
+        this.maxHotProducts = maxHotProducts;
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            stripes[i] = new ReentrantReadWriteLock();
+        }
+        Gauge.builder("inventory.ledger.hot_products", hot, Map::size).register(meterRegistry);
+    }
+
+    public boolean isEnabled() {
+        return enabled && running;
+    }
+
+    /**
+     * Giữ read lock của các stripe chứa sản phẩm cho tới khi transaction hiện tại kết thúc.
+     */
+    public void lockUntilCompletion(Collection<Long> productIds) {
+        if (!isEnabled()) {
+            return;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            throw new IllegalStateException("Inventory reservations require an active transaction");
+        }
+        List<Lock> acquired = new ArrayList<>();
+        for (int stripe : new TreeSet<>(productIds.stream().map(InventoryLedger::stripe).toList())) {
+            Lock lock = stripes[stripe].readLock();
+            lock.lock();
+            acquired.add(lock);
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public int getOrder() {
+                // Nhả khóa sau cùng, khi delta của sản phẩm nóng đã được ghi nhận
+                return Ordered.LOWEST_PRECEDENCE;
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                for (int i = acquired.size() - 1; i >= 0; i--) {
+                    acquired.get(i).unlock();
+                }
+            }
+        });
+    }
+
+    /**
+     * Giữ hàng trong bộ nhớ cho các sản phẩm nóng. Trả về phần sản phẩm nguội để đi đường DB.
+     * Thiếu hàng thì hoàn lại phần đã giữ và ném 400.
+     */
+    public Map<Long, Integer> reserveHot(Map<Long, Integer> quantities, Function<Long, String> productName) {
+        if (!isEnabled()) {
+            return quantities;
+        }
+        Map<Long, Integer> cold = new HashMap<>();
+        Map<Long, Integer> taken = new HashMap<>();
+        quantities.forEach((productId, quantity) -> {
+            demand.computeIfAbsent(productId, id -> new LongAdder()).increment();
+            AtomicLong available = hot.get(productId);
+            if (available == null) {
+                cold.put(productId, quantity);
+            } else if (tryTake(available, quantity)) {
+                taken.put(productId, quantity);
+            } else {
+                taken.forEach((id, q) -> hot.get(id).addAndGet(q));
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                        "Sản phẩm " + productName.apply(productId) + " không đủ số lượng trong kho");
+            }
+        });
+        if (!taken.isEmpty()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                private boolean logged;
+
+                @Override
+                public int getOrder() {
+                    return 0;
+                }
+
+                @Override
+                public void beforeCommit(boolean readOnly) {
+                    // Bền vững trước khi MySQL commit; ném lỗi ở đây thì transaction rollback
+                    record(taken, -1, true);
+                    logged = true;
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    // STATUS_UNKNOWN: có thể đã commit, giữ nguyên để không bán vượt
+                    if (status != STATUS_ROLLED_BACK) {
+                        return;
+                    }
+                    if (logged) {
+                        record(taken, 1, false);
+                    }
+                    taken.forEach((id, q) -> hot.get(id).addAndGet(q));
+                }
+            });
+        }
+        return cold;
+    }
+
+    /**
+     * Trả hàng cho các sản phẩm nóng sau khi transaction commit. Trả về phần sản phẩm nguội.
+     */
+    public Map<Long, Integer> releaseHot(Map<Long, Integer> quantities) {
+        if (!isEnabled()) {
+            return quantities;
+        }
+        Map<Long, Integer> cold = new HashMap<>();
+        Map<Long, Integer> returned = new HashMap<>();
+        quantities.forEach((productId, quantity) ->
+                (hot.containsKey(productId) ? returned : cold).put(productId, quantity));
+        if (!returned.isEmpty()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    returned.forEach((id, q) -> hot.get(id).addAndGet(q));
+                    record(returned, 1, false);
+                }
+            });
+        }
+        return cold;
+    }
+
+    /**
+     * Chuẩn bị cho thao tác ghi đè tồn kho trong transaction hiện tại (admin sửa/xóa/import sản phẩm):
+     * hạ các sản phẩm khỏi bộ nhớ sau khi ghi hết delta xuống DB và chặn nâng cấp lại cho tới khi
+     * transaction kết thúc. Phải gọi trước khi transaction khóa dòng sản phẩm. Không ghi được delta thì
+     * ném 503 để thao tác của admin bị hủy.
+     */
+    public void demoteUntilCompletion(Collection<Long> productIds) {
+        if (!isEnabled() || productIds.isEmpty()) {
+            return;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            throw new IllegalStateException("Inventory overwrites require an active transaction");
+        }
+        List<Long> ids = productIds.stream().distinct().toList();
+        ids.forEach(id -> pinned.merge(id, 1, Integer::sum));
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                ids.forEach(id -> pinned.computeIfPresent(id, (key, count) -> count > 1 ? count - 1 : null));
+            }
+        });
+        demote(ids);
+    }
+
+    @Scheduled(fixedDelayString = "${app.inventory.ledger.flush-interval-ms:1000}")
+    public void flush() {
+        if (!isEnabled()) {
+            return;
+        }
+        try {
+            flushPending();
+        } catch (RuntimeException e) {
+            logger.warn("Postponing inventory ledger flush: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Ghi các delta đang chờ xuống DB; lỗi thì trả delta lại bảng chờ và ném ra.
+     */
+    private void flushPending() {
+        synchronized (flushLock) {
+            Map<Long, Long> drained;
+            long upTo;
+            synchronized (logLock) {
+                if (pending.isEmpty()) {
+                    return;
+                }
+                try {
+                    upTo = log.seal();
+                } catch (IOException e) {
+                    throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE,
+                            "Không ghi được nhật ký tồn kho", e);
+                }
+                drained = pending;
+                pending = new HashMap<>();
+            }
+            try {
+                applyDeltas(drained, upTo);
+            } catch (RuntimeException e) {
+                synchronized (logLock) {
+                    drained.forEach((id, delta) -> pending.merge(id, delta, Long::sum));
+                }
+                throw e;
+            }
+            synchronized (logLock) {
+                try {
+                    log.deleteSegmentsUpTo(upTo);
+                } catch (IOException e) {
+                    logger.warn("Cannot delete flushed reservation log segments: {}", e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * Nâng/hạ cấp theo số lần đặt hàng trong chu kỳ vừa qua.
+     */
+    @Scheduled(fixedDelayString = "${app.inventory.ledger.rebalance-interval-ms:5000}")
+    public void rebalance() {
+        if (!isEnabled()) {
+            return;
+        }
+        Map<Long, Long> window = new HashMap<>();
+        demand.forEach((productId, counter) -> {
+            long count = counter.sumThenReset();
+            if (count == 0) {
+                demand.remove(productId, counter);
+            } else {
+                window.put(productId, count);
+            }
+        });
+        List<Long> cooled = hot.keySet().stream()
+                .filter(productId -> window.getOrDefault(productId, 0L) < coldThreshold)
+                .toList();
+        try {
+            demote(cooled);
+        } catch (RuntimeException e) {
+            // Giữ nguyên trong bộ nhớ, thử lại ở chu kỳ sau
+            logger.warn("Cannot demote {} products: {}", cooled.size(), e.getMessage());
+        }
+        window.entrySet().stream()
+                .filter(entry -> entry.getValue() >= hotThreshold && !hot.containsKey(entry.getKey()))
+                .sorted(Map.Entry.<Long, Long>comparingByValue(Comparator.reverseOrder()))
+                .limit(Math.max(0, maxHotProducts - hot.size()))
+                .forEach(entry -> promote(entry.getKey()));
+    }
+
+    /**
+     * Khôi phục khi khởi động: áp dụng các bản ghi nhật ký có số thứ tự sau checkpoint.
+     * Chạy trước khi web server nhận request (phase thấp hơn).
+     */
+    @Override
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        synchronized (logLock) {
+            log = new ReservationLog(logDirectory);
+            long checkpoint = checkpointRepository.findById(InventoryLedgerCheckpoint.SINGLETON_ID)
+                    .map(InventoryLedgerCheckpoint::getLastSequence).orElse(0L);
+            try {
+                Map<Long, Long> deltas = new HashMap<>();
+                long last = checkpoint;
+                for (ReservationLog.Entry entry : log.readAll()) {
+                    if (entry.sequence() > checkpoint) {
+                        deltas.merge(entry.productId(), entry.delta(), Long::sum);
+                    }
+                    last = Math.max(last, entry.sequence());
+                }
+                if (last > checkpoint) {
+                    applyDeltas(deltas, last);
+                    logger.info("Recovered {} inventory deltas from reservation log (seq {} -> {})",
+                            deltas.size(), checkpoint, last);
+                }
+                log.truncate();
+                log.startAt(last);
+            } catch (IOException e) {
+                throw new IllegalStateException("Cannot recover inventory reservation log", e);
+            }
+        }
+        running = true;
+    }
+
+    @Override
+    public void stop() {
+        if (!running) {
+            return;
+        }
+        flush();
+        running = false;
+        hot.clear();
+        synchronized (logLock) {
+            try {
+                log.close();
+            } catch (IOException e) {
+                logger.warn("Cannot close reservation log: {}", e.getMessage());
+            }
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public int getPhase() {
+        return 0;
+    }
+
+    private void promote(Long productId) {
+        Lock lock = stripes[stripe(productId)].writeLock();
+        try {
+            if (!lock.tryLock(PROMOTE_LOCK_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+                return;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        try {
+            if (pinned.containsKey(productId) || hot.containsKey(productId)) {
+                return;
+            }
+            // Mọi giao dịch đường DB trên stripe này đã kết thúc nên số trong DB là mới nhất
+            List<Long> stock = jdbcTemplate.queryForList("SELECT stock FROM products WHERE id = ?", Long.class, productId);
+            if (stock.isEmpty() || stock.get(0) == null) {
+                return;
+            }
+            long unflushed;
+            synchronized (logLock) {
+                unflushed = pending.getOrDefault(productId, 0L);
+            }
+            hot.put(productId, new AtomicLong(stock.get(0) + unflushed));
+            logger.debug("Promoted product {} to in-memory inventory", productId);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Hạ các sản phẩm khỏi bộ nhớ: giữ write lock của các stripe (chờ mọi giao dịch đang chạy trên chúng
+     * kết thúc), ghi hết delta xuống DB rồi mới bỏ khỏi {@code hot}. Ghi lỗi thì sản phẩm vẫn nóng và
+     * ngoại lệ được ném ra.
+     */
+    private void demote(Collection<Long> productIds) {
+        if (productIds.isEmpty()) {
+            return;
+        }
+        List<Lock> acquired = new ArrayList<>();
+        for (int stripe : new TreeSet<>(productIds.stream().map(InventoryLedger::stripe).toList())) {
+            Lock lock = stripes[stripe].writeLock();
+            lock.lock();
+            acquired.add(lock);
+        }
+        try {
+            List<Long> demoted = productIds.stream().filter(hot::containsKey).toList();
+            if (demoted.isEmpty()) {
+                return;
+            }
+            flushPending();
+            demoted.forEach(hot::remove);
+            logger.debug("Demoted {} products from in-memory inventory", demoted.size());
+        } finally {
+            for (int i = acquired.size() - 1; i >= 0; i--) {
+                acquired.get(i).unlock();
+            }
+        }
+    }
+
+    /**
+     * Ghi delta vào nhật ký và bảng chờ dưới cùng một khóa. {@code durable}: fsync trước khi trả về, lỗi thì
+     * bù phần đã ghi và ném 503 để transaction đơn hàng rollback. Không durable (trả hàng, bản bù) thì lỗi
+     * nhật ký chỉ được ghi log: delta vẫn vào bảng chờ và sự cố trước lần flush kế tiếp chỉ làm thiếu hàng.
+     */
+    private void record(Map<Long, Integer> quantities, int sign, boolean durable) {
+        synchronized (logLock) {
+            Map<Long, Long> appended = new HashMap<>();
+            try {
+                quantities.forEach((productId, quantity) -> {
+                    long delta = (long) sign * quantity;
+                    log.append(productId, delta);
+                    appended.put(productId, delta);
+                });
+                if (durable) {
+                    log.force();
+                }
+            } catch (IOException | RuntimeException e) {
+                if (durable) {
+                    compensate(appended);
+                    throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE,
+                            "Không ghi được nhật ký tồn kho", e);
+                }
+                logger.error("Cannot append to reservation log: {}", e.getMessage());
+            }
+            quantities.forEach((productId, quantity) ->
+                    pending.merge(productId, (long) sign * quantity, Long::sum));
+        }
+    }
+
+    private void compensate(Map<Long, Long> appended) {
+        try {
+            appended.forEach((productId, delta) -> log.append(productId, -delta));
+        } catch (RuntimeException e) {
+            logger.error("Cannot compensate reservation log entries: {}", e.getMessage());
+        }
+    }
+
+    private void applyDeltas(Map<Long, Long> deltas, long upToSequence) {
+        List<Object[]> batch = new ArrayList<>(deltas.size());
+        Map<Long, Long> applied = new HashMap<>();
+        deltas.forEach((productId, delta) -> {
+            if (delta != 0) {
+                batch.add(new Object[]{delta, productId});
+                applied.put(productId, delta);
+            }
+        });
+        flushTransaction.executeWithoutResult(status -> {
+            jdbcTemplate.batchUpdate(APPLY_DELTA_SQL, batch);
+            categoryStatsService.recordStockChanged(applied);
+            jdbcTemplate.update(CHECKPOINT_SQL, InventoryLedgerCheckpoint.SINGLETON_ID, upToSequence);
+        });
+    }
+
+    private static boolean tryTake(AtomicLong available, int quantity) {
+        while (true) {
+            long current = available.get();
+            if (current < quantity) {
+                return false;
+            }
+            if (available.compareAndSet(current, current - quantity)) {
+                return true;
+            }
+        }
+    }
+
+    private static int stripe(Long productId) {
+        return Math.floorMod(Long.hashCode(productId), LOCK_STRIPES);
+    }
+}
@@ -0,0 +1,77 @@
+package com.example.demo.service;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.function.Function;
+
+/**
+ * Giữ/trả tồn kho bằng câu UPDATE có điều kiện, gửi theo một JDBC batch. Điều kiện
+ * {@code stock >= ?} được MySQL kiểm tra trên dòng đã khóa nên các đơn đồng thời không thể bán vượt.
+ * Khi bật {@link InventoryLedger}, sản phẩm nóng được giữ trong bộ nhớ và chỉ phần còn lại đi đường DB.
+ */
+@Service
+@RequiredArgsConstructor
+public class InventoryService {
+
+    private static final String RESERVE_SQL = "UPDATE products SET stock = stock - ?, version = version + 1 WHERE id = ? AND stock >= ?";
+    private static final String RELEASE_SQL = "UPDATE products SET stock = stock + ?, version = version + 1 WHERE id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final InventoryLedger inventoryLedger;
+    private final ProductCategoryStatsService categoryStatsService;
+
+    /**
+     * Trừ tồn kho cho tất cả sản phẩm trong đơn. Nếu một dòng không đủ hàng thì ném 400
+     * và transaction bao ngoài rollback toàn bộ đơn.
+     *
+     * @param quantities số lượng theo id sản phẩm
+     * @param productName tên sản phẩm để báo lỗi
+     */
+    @Transactional
+    public void reserve(Map<Long, Integer> quantities, Function<Long, String> productName) {
+        inventoryLedger.lockUntilCompletion(quantities.keySet());
+        quantities = inventoryLedger.reserveHot(quantities, productName);
+
+        // Sắp theo id để các đơn đồng thời khóa dòng theo cùng thứ tự, tránh deadlock
+        SortedMap<Long, Integer> sorted = new TreeMap<>(quantities);
+        List<Object[]> batch = new ArrayList<>(sorted.size());
+        sorted.forEach((productId, quantity) -> batch.add(new Object[]{quantity, productId, quantity}));
+
+        int[] counts = jdbcTemplate.batchUpdate(RESERVE_SQL, batch);
+        int i = 0;
+        for (Long productId : sorted.keySet()) {
+            if (counts[i++] != 1) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                        "Sản phẩm " + productName.apply(productId) + " không đủ số lượng trong kho");
+            }
+        }
+        Map<Long, Integer> deltas = new TreeMap<>();
+        sorted.forEach((productId, quantity) -> deltas.put(productId, -quantity));
+        categoryStatsService.recordStockChanged(deltas);
+    }
+
+    /**
+     * Cộng lại tồn kho (khi xóa đơn hàng).
+     */
+    @Transactional
+    public void release(Map<Long, Integer> quantities) {
+        inventoryLedger.lockUntilCompletion(quantities.keySet());
+        quantities = inventoryLedger.releaseHot(quantities);
+
+        SortedMap<Long, Integer> sorted = new TreeMap<>(quantities);
+        List<Object[]> batch = new ArrayList<>(sorted.size());
+        sorted.forEach((productId, quantity) -> batch.add(new Object[]{quantity, productId}));
+        jdbcTemplate.batchUpdate(RELEASE_SQL, batch);
+        categoryStatsService.recordStockChanged(sorted);
+    }
+}
@@ -1,9 +1,14 @@
 package com.example.demo.service;
 
+import com.example.demo.security.SecurityEpochService;
+import com.example.demo.security.VerifiedToken;
+import com.example.demo.security.VerifiedTokenCache;
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.SignatureAlgorithm;
 import io.jsonwebtoken.security.Keys;
+import lombok.RequiredArgsConstructor;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Service;
 
@@ -13,10 +18,10 @@ import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Service
+@RequiredArgsConstructor
 public class JwtService {
 
     // Sử dụng khóa cố định (đảm bảo khóa đủ dài, ví dụ 256 bit cho HS256)
@@ -24,42 +29,72 @@ public class JwtService {
     private static final Key SECRET_KEY = Keys.hmacShaKeyFor(SECRET.getBytes(StandardCharsets.UTF_8));
     private static final long EXPIRATION_TIME = 864_000_000; // 10 ngày
 
-    public String extractUsername(String token) {
-        return extractClaim(token, Claims::getSubject);
-    }
+    // JwtParser là immutable và thread-safe nên dùng chung một instance
+    private static final JwtParser PARSER = Jwts.parserBuilder()
+                   .setSigningKey(SECRET_KEY)
+                   .build();
 
-    public boolean isTokenValid(String token, UserDetails userDetails) {
-        String username = extractUsername(token);
-        return username.equals(userDetails.getUsername()) && !isTokenExpired(token);
+    private static final String USER_ID_CLAIM = "uid";
+    private static final String EPOCH_CLAIM = "epoch";
+
+    private final VerifiedTokenCache verifiedTokenCache;
+    private final SecurityEpochService securityEpochService;
+
+    /**
+     * Xác thực chữ ký và hạn dùng của token đúng một lần, kết quả được cache
+     * theo digest của token cho các request tiếp theo.
+     *
+     * @throws io.jsonwebtoken.JwtException nếu token sai chữ ký, sai định dạng hoặc đã hết hạn
+     */
+    public VerifiedToken verify(String token) {
+        VerifiedToken cached = verifiedTokenCache.get(token);
+        if (cached != null) {
+            return cached;
+        }
+        Claims claims = extractAllClaims(token);
+        VerifiedToken verified = new VerifiedToken(
+                claims.getSubject(),
+                extractRoles(claims),
+                toLong(claims.get(USER_ID_CLAIM)),
+                toLong(claims.get(EPOCH_CLAIM)),
+                claims.getExpiration() != null ? claims.getExpiration().getTime() : Long.MAX_VALUE);
+        verifiedTokenCache.put(token, verified);
+        return verified;
     }
 
-    private boolean isTokenExpired(String token) {
-        return extractExpiration(token).before(new Date());
+    public String extractUsername(String token) {
+        return verify(token).getSubject();
     }
 
-    private Date extractExpiration(String token) {
-        return extractClaim(token, Claims::getExpiration);
+    public boolean isTokenValid(String token, UserDetails userDetails) {
+        return isTokenValid(verify(token), userDetails);
     }
 
-    private <T> T extractClaim(String token, Function<Claims, T> claimsResolver) {
-        Claims claims = extractAllClaims(token);
-        return claimsResolver.apply(claims);
+    public boolean isTokenValid(VerifiedToken token, UserDetails userDetails) {
+        return token.getSubject() != null
+                && token.getSubject().equals(userDetails.getUsername())
+                && !token.isExpired(System.currentTimeMillis());
     }
 
     private Claims extractAllClaims(String token) {
-        return Jwts.parserBuilder()
-                   .setSigningKey(SECRET_KEY)
-                   .build()
-                   .parseClaimsJws(token)
-                   .getBody();
+        return PARSER.parseClaimsJws(token).getBody();
     }
 
     public String generateToken(UserDetails userDetails) {
+        return generateToken(userDetails, null);
+    }
+
+    public String generateToken(UserDetails userDetails, Long userId) {
         Map<String, Object> claims = new HashMap<>();
         // Thêm role vào claims
         claims.put("roles", userDetails.getAuthorities().stream()
             .map(auth -> auth.getAuthority())
             .collect(Collectors.toList()));
+        // Id và security epoch cho phép filter dựng principal mà không cần truy vấn user
+        if (userId != null) {
+            claims.put(USER_ID_CLAIM, userId);
+        }
+        claims.put(EPOCH_CLAIM, securityEpochService.currentEpoch(userDetails.getUsername()));
         return createToken(claims, userDetails.getUsername());
     }
 
@@ -73,13 +108,20 @@ public class JwtService {
                    .compact();
     }
     
-    @SuppressWarnings("unchecked")
     public List<String> extractRoles(String token) {
-        Claims claims = extractAllClaims(token);
+        return verify(token).getRoles();
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<String> extractRoles(Claims claims) {
         Object rolesObj = claims.get("roles");
         if (rolesObj instanceof List) {
-            return (List<String>) rolesObj;
+            return List.copyOf((List<String>) rolesObj);
         }
         return List.of();
     }
-}
\ No newline at end of file
+
+    private static Long toLong(Object value) {
+        return value instanceof Number number ? number.longValue() : null;
+    }
+}
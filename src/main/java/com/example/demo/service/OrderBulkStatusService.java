@@ -0,0 +1,193 @@
+package com.example.demo.service;
+
+import com.example.demo.dto.BulkStatusResult;
+import com.example.demo.dto.BulkStatusUpdateRequest;
+import com.example.demo.dto.BulkStatusUpdateResponse;
+import com.example.demo.entity.OrderStatus;
+import com.example.demo.event.OrderChangedEvent;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Chuyển trạng thái hàng loạt. Mỗi chunk chạy trong một transaction riêng: khóa các dòng bằng
+ * SELECT ... FOR UPDATE để biết trạng thái trước, rồi một câu UPDATE duy nhất chỉ áp dụng cho các dòng
+ * có trạng thái nguồn hợp lệ ({@code status IN (...)}). Email được ghi outbox theo một batch mỗi chunk.
+ */
+@Service
+public class OrderBulkStatusService {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final DashboardRollupService rollupService;
+    private final RevenueSeriesService revenueSeriesService;
+    private final EmailService emailService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final int chunkSize;
+    private final int maxOrders;
+
+    public OrderBulkStatusService(JdbcTemplate jdbcTemplate,
+                                  PlatformTransactionManager transactionManager,
+                                  DashboardRollupService rollupService,
+                                  RevenueSeriesService revenueSeriesService,
+                                  EmailService emailService,
+                                  ApplicationEventPublisher eventPublisher,
+                                  @Value("${app.orders.bulk.chunk-size:500}") int chunkSize,
+                                  @Value("${app.orders.bulk.max-orders:20000}") int maxOrders) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.rollupService = rollupService;
+        this.revenueSeriesService = revenueSeriesService;
+        this.emailService = emailService;
+        this.eventPublisher = eventPublisher;
+        this.chunkSize = chunkSize;
+        this.maxOrders = maxOrders;
+    }
+
+    public BulkStatusUpdateResponse updateStatuses(BulkStatusUpdateRequest request) {
+        OrderStatus target = parseStatus(request.getStatus());
+        boolean byIds = request.getOrderIds() != null && !request.getOrderIds().isEmpty();
+        if (!byIds && request.getFromStatus() == null) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Cần danh sách đơn hàng hoặc trạng thái nguồn");
+        }
+        if (byIds && (request.getFromStatus() != null || request.getCreatedFrom() != null
+                || request.getCreatedTo() != null)) {
+            // Bộ lọc chỉ áp dụng khi chọn đơn theo điều kiện; không bỏ qua trong im lặng
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "Không dùng trạng thái nguồn hoặc khoảng thời gian cùng với danh sách đơn hàng");
+        }
+
+        List<BulkStatusResult> results = new ArrayList<>();
+        if (byIds) {
+            List<Long> ids = new ArrayList<>(new LinkedHashSet<>(request.getOrderIds()));
+            for (int from = 0; from < ids.size(); from += chunkSize) {
+                List<Long> chunk = ids.subList(from, Math.min(from + chunkSize, ids.size()));
+                results.addAll(transactionTemplate.execute(status -> applyChunk(chunk, target)));
+            }
+        } else {
+            OrderStatus source = parseStatus(request.getFromStatus());
+            if (!source.canTransitionTo(target)) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                        "Không thể chuyển từ " + source + " sang " + target);
+            }
+            long afterId = 0;
+            while (results.size() < maxOrders) {
+                List<Long> chunk = findByFilter(source, request.getCreatedFrom(), request.getCreatedTo(), afterId,
+                        Math.min(chunkSize, maxOrders - results.size()));
+                if (chunk.isEmpty()) {
+                    break;
+                }
+                results.addAll(transactionTemplate.execute(status -> applyChunk(chunk, target)));
+                afterId = chunk.get(chunk.size() - 1);
+            }
+        }
+
+        Map<BulkStatusResult.Outcome, Long> counts = results.stream()
+                .collect(Collectors.groupingBy(BulkStatusResult::getOutcome, Collectors.counting()));
+        return BulkStatusUpdateResponse.builder()
+                .status(target.name())
+                .requested(results.size())
+                .updated(counts.getOrDefault(BulkStatusResult.Outcome.UPDATED, 0L).intValue())
+                .unchanged(counts.getOrDefault(BulkStatusResult.Outcome.UNCHANGED, 0L).intValue())
+                .invalidTransition(counts.getOrDefault(BulkStatusResult.Outcome.INVALID_TRANSITION, 0L).intValue())
+                .notFound(counts.getOrDefault(BulkStatusResult.Outcome.NOT_FOUND, 0L).intValue())
+                .results(results)
+                .build();
+    }
+
+    private List<BulkStatusResult> applyChunk(List<Long> ids, OrderStatus target) {
+        String idList = placeholders(ids.size());
+        Map<Long, OrderRow> rows = new HashMap<>();
+        jdbcTemplate.query("SELECT id, status, created_at, payment_method, total_price, customer_name, customer_email " +
+                "FROM orders WHERE id IN (" + idList + ") FOR UPDATE", rs -> {
+            Timestamp createdAt = rs.getTimestamp("created_at");
+            rows.put(rs.getLong("id"), new OrderRow(rs.getLong("id"), OrderStatus.valueOf(rs.getString("status")),
+                    createdAt != null ? createdAt.toLocalDateTime() : null, rs.getString("payment_method"),
+                    rs.getBigDecimal("total_price"), rs.getString("customer_name"), rs.getString("customer_email")));
+        }, ids.toArray());
+
+        Set<OrderStatus> sources = OrderStatus.sourcesOf(target);
+        if (!sources.isEmpty()) {
+            List<Object> args = new ArrayList<>();
+            args.add(target.name());
+            args.addAll(ids);
+            sources.forEach(source -> args.add(source.name()));
+            jdbcTemplate.update("UPDATE orders SET status = ?, version = version + 1 WHERE id IN (" + idList + ") " +
+                    "AND status IN (" + placeholders(sources.size()) + ")", args.toArray());
+        }
+
+        List<BulkStatusResult> results = new ArrayList<>(ids.size());
+        List<EmailService.StatusNotification> notifications = new ArrayList<>();
+        for (Long id : ids) {
+            OrderRow row = rows.get(id);
+            if (row == null) {
+                results.add(new BulkStatusResult(id, null, BulkStatusResult.Outcome.NOT_FOUND));
+            } else if (row.status() == target) {
+                results.add(new BulkStatusResult(id, row.status().name(), BulkStatusResult.Outcome.UNCHANGED));
+            } else if (!sources.contains(row.status())) {
+                results.add(new BulkStatusResult(id, row.status().name(), BulkStatusResult.Outcome.INVALID_TRANSITION));
+            } else {
+                results.add(new BulkStatusResult(id, row.status().name(), BulkStatusResult.Outcome.UPDATED));
+                rollupService.recordOrderStatusChanged(row.createdAt(), row.totalPrice(), row.status(), target);
+                revenueSeriesService.recordStatusChanged(row.createdAt(), row.paymentMethod(), row.totalPrice(),
+                        row.status(), target);
+                eventPublisher.publishEvent(new OrderChangedEvent(id, OrderChangedEvent.Type.STATUS_CHANGED,
+                        target.name(), row.customerName(), row.customerEmail()));
+                notifications.add(new EmailService.StatusNotification(id, row.customerName(), row.customerEmail(),
+                        target.name()));
+            }
+        }
+        emailService.sendOrderStatusUpdates(notifications);
+        return results;
+    }
+
+    private List<Long> findByFilter(OrderStatus source, LocalDateTime createdFrom, LocalDateTime createdTo,
+                                    long afterId, int limit) {
+        StringBuilder sql = new StringBuilder("SELECT id FROM orders WHERE status = ? AND id > ?");
+        List<Object> args = new ArrayList<>(List.of(source.name(), afterId));
+        if (createdFrom != null) {
+            sql.append(" AND created_at >= ?");
+            args.add(Timestamp.valueOf(createdFrom));
+        }
+        if (createdTo != null) {
+            sql.append(" AND created_at < ?");
+            args.add(Timestamp.valueOf(createdTo));
+        }
+        sql.append(" ORDER BY id LIMIT ?");
+        args.add(limit);
+        return jdbcTemplate.queryForList(sql.toString(), Long.class, args.toArray());
+    }
+
+    private static OrderStatus parseStatus(String status) {
+        try {
+            return OrderStatus.valueOf(status.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Trạng thái không hợp lệ: " + status);
+        }
+    }
+
+    private static String placeholders(int count) {
+        return String.join(", ", Collections.nCopies(count, "?"));
+    }
+
+    private record OrderRow(Long id, OrderStatus status, LocalDateTime createdAt, String paymentMethod,
+                            BigDecimal totalPrice, String customerName, String customerEmail) {
+    }
+}
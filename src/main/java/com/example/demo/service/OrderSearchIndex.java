@@ -0,0 +1,419 @@
+package com.example.demo.service;
+
+import com.example.demo.event.OrderChangedEvent;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.nio.charset.StandardCharsets;
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Pattern;
+
+/**
+ * Chỉ mục trigram trong bộ nhớ cho tìm kiếm đơn hàng theo tên/email khách hàng, không phân biệt
+ * hoa thường và dấu tiếng Việt. Dựng lúc khởi động, cập nhật theo {@link OrderChangedEvent}.
+ *
+ * <p>Mỗi đơn hàng có một số thứ tự nội bộ (int); mỗi trigram được băm thành một khóa int trong bảng băm
+ * địa chỉ mở, danh sách posting là mảng int tăng dần nên giao nhau bằng merge tuyến tính. Ứng viên (kể cả
+ * do trùng băm) được kiểm tra lại bằng so khớp chuỗi con nên kết quả là chính xác. Từ khóa ngắn hơn
+ * {@link #MIN_QUERY_LENGTH} ký tự không có trigram nên không được hỗ trợ. {@link #search(String)} trả null
+ * khi chỉ mục không trả lời được (chưa dựng xong, vượt giới hạn bộ nhớ hoặc quá nhiều kết quả) và người gọi
+ * quay về truy vấn LIKE.
+ */
+@Service
+public class OrderSearchIndex {
+
+    private static final Logger logger = LoggerFactory.getLogger(OrderSearchIndex.class);
+
+    public static final int MIN_QUERY_LENGTH = 3;
+
+    private static final Pattern COMBINING_MARKS = Pattern.compile("\\p{M}+");
+    private static final byte FIELD_SEPARATOR = 0;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final int maxOrders;
+    private final int maxResults;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    // Các trường dưới đây được bảo vệ bởi lock
+    private Segment segment;
+    private List<OrderChangedEvent> queuedDuringBuild;
+
+    public OrderSearchIndex(JdbcTemplate jdbcTemplate,
+                            MeterRegistry meterRegistry,
+                            @Value("${app.orders.search-index.max-orders:2000000}") int maxOrders,
+                            @Value("${app.orders.search-index.max-results:5000}") int maxResults) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.maxOrders = maxOrders;
+        this.maxResults = maxResults;
+        Gauge.builder("orders.search_index.size", this, OrderSearchIndex::size).register(meterRegistry);
+    }
+
+    /**
+     * Id các đơn hàng khớp {@code query}, hoặc null nếu phải dùng truy vấn DB.
+     */
+    public List<Long> search(String query) {
+        String normalized = normalize(query);
+        if (normalized.length() < MIN_QUERY_LENGTH) {
+            return null;
+        }
+        lock.readLock().lock();
+        try {
+            return segment == null ? null : segment.search(normalized, maxResults);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onOrderChanged(OrderChangedEvent event) {
+        if (event.getType() == OrderChangedEvent.Type.STATUS_CHANGED) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            if (queuedDuringBuild != null) {
+                queuedDuringBuild.add(event);
+            } else if (segment != null) {
+                apply(event);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void buildOnStartup() {
+        rebuild();
+    }
+
+    /**
+     * Dựng lại toàn bộ chỉ mục từ bảng orders (cũng dọn các đơn đã xóa).
+     * Các thay đổi xảy ra trong lúc dựng được xếp hàng và áp dụng trước khi tráo chỉ mục mới vào.
+     */
+    @Scheduled(cron = "${app.orders.search-index.rebuild-cron:0 0 4 * * *}")
+    public void rebuild() {
+        lock.writeLock().lock();
+        try {
+            if (queuedDuringBuild != null) {
+                return;
+            }
+            queuedDuringBuild = new ArrayList<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        long started = System.currentTimeMillis();
+        Segment built = new Segment();
+        try {
+            jdbcTemplate.query("SELECT id, customer_name, customer_email FROM orders ORDER BY id", rs -> {
+                if (built.size() >= maxOrders) {
+                    built.overflowed = true;
+                    return;
+                }
+                built.add(rs.getLong(1), rs.getString(2), rs.getString(3));
+            });
+        } catch (RuntimeException e) {
+            logger.warn("Failed to build order search index: {}", e.getMessage());
+            built.overflowed = true;
+        }
+
+        lock.writeLock().lock();
+        try {
+            if (built.overflowed) {
+                segment = null;
+                logger.warn("Order search index disabled (more than {} orders or build failed); using SQL search", maxOrders);
+            } else {
+                segment = built;
+                queuedDuringBuild.forEach(this::apply);
+                logger.info("Built order search index for {} orders in {} ms",
+                        built.size(), System.currentTimeMillis() - started);
+            }
+            queuedDuringBuild = null;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return segment == null ? 0 : segment.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void apply(OrderChangedEvent event) {
+        if (event.getType() == OrderChangedEvent.Type.CREATED) {
+            if (segment.size() >= maxOrders) {
+                segment = null;
+                logger.warn("Order search index exceeded {} orders and was disabled; using SQL search", maxOrders);
+                return;
+            }
+            segment.add(event.getOrderId(), event.getCustomerName(), event.getCustomerEmail());
+        } else if (event.getType() == OrderChangedEvent.Type.DELETED) {
+            segment.remove(event.getOrderId());
+        }
+    }
+
+    /**
+     * Chuẩn hóa để so khớp: bỏ dấu tiếng Việt (kể cả đ), chữ thường, gộp khoảng trắng.
+     */
+    static String normalize(String text) {
+        if (text == null) {
+            return "";
+        }
+        String stripped = COMBINING_MARKS.matcher(Normalizer.normalize(text, Normalizer.Form.NFD)).replaceAll("");
+        return stripped.replace('đ', 'd').replace('Đ', 'D')
+                .toLowerCase(Locale.ROOT)
+                .trim()
+                .replaceAll("\\s+", " ");
+    }
+
+    /**
+     * Dữ liệu chỉ mục. Không thread-safe; được bảo vệ bởi lock của OrderSearchIndex.
+     */
+    private static final class Segment {
+        private long[] orderIds = new long[1024];
+        private byte[][] texts = new byte[1024][];
+        private int count;
+        private final BitSet deleted = new BitSet();
+        private final GramTable postings = new GramTable();
+        // orderIds tăng dần tới sortedUntil; đơn đến không theo thứ tự nằm ở outOfOrder
+        private int sortedUntil;
+        private final Map<Long, Integer> outOfOrder = new HashMap<>();
+        private boolean overflowed;
+
+        int size() {
+            return count - deleted.cardinality();
+        }
+
+        void add(long orderId, String customerName, String customerEmail) {
+            Integer existing = indexOf(orderId);
+            if (existing != null && !deleted.get(existing)) {
+                // Đơn tạo trong lúc dựng lại đã được đọc từ DB
+                return;
+            }
+            if (count == orderIds.length) {
+                orderIds = Arrays.copyOf(orderIds, count * 2);
+                texts = Arrays.copyOf(texts, count * 2);
+            }
+            int ordinal = count++;
+            orderIds[ordinal] = orderId;
+            if (ordinal == sortedUntil && (ordinal == 0 || orderIds[ordinal - 1] < orderId)) {
+                sortedUntil++;
+            } else {
+                outOfOrder.put(orderId, ordinal);
+            }
+
+            String name = normalize(customerName);
+            String email = normalize(customerEmail);
+            texts[ordinal] = (name + (char) FIELD_SEPARATOR + email).getBytes(StandardCharsets.UTF_8);
+            for (int gram : trigrams(name, email)) {
+                postings.getOrCreate(gram).add(ordinal);
+            }
+        }
+
+        void remove(long orderId) {
+            Integer ordinal = indexOf(orderId);
+            if (ordinal != null) {
+                outOfOrder.remove(orderId);
+                deleted.set(ordinal);
+                texts[ordinal] = null;
+            }
+        }
+
+        private Integer indexOf(long orderId) {
+            int found = Arrays.binarySearch(orderIds, 0, sortedUntil, orderId);
+            return found >= 0 ? Integer.valueOf(found) : outOfOrder.get(orderId);
+        }
+
+        List<Long> search(String query, int maxResults) {
+            byte[] needle = query.getBytes(StandardCharsets.UTF_8);
+            List<Long> result = new ArrayList<>();
+            int[] grams = trigrams(query);
+            List<IntList> lists = new ArrayList<>(grams.length);
+            for (int gram : grams) {
+                IntList list = postings.get(gram);
+                if (list == null) {
+                    return result;
+                }
+                lists.add(list);
+            }
+            lists.sort(Comparator.comparingInt(list -> list.size));
+            int[] candidates = Arrays.copyOf(lists.get(0).values, lists.get(0).size);
+            int size = candidates.length;
+            for (int i = 1; i < lists.size() && size > 0; i++) {
+                size = intersect(candidates, size, lists.get(i));
+            }
+            for (int i = 0; i < size; i++) {
+                int ordinal = candidates[i];
+                if (!deleted.get(ordinal) && contains(texts[ordinal], needle)
+                        && !addResult(result, orderIds[ordinal], maxResults)) {
+                    return null;
+                }
+            }
+            return result;
+        }
+
+        private static boolean addResult(List<Long> result, long orderId, int maxResults) {
+            if (result.size() >= maxResults) {
+                return false;
+            }
+            result.add(orderId);
+            return true;
+        }
+
+        /**
+         * Giao {@code candidates[0..size)} với {@code list} tại chỗ; cả hai đều tăng dần.
+         */
+        private static int intersect(int[] candidates, int size, IntList list) {
+            int out = 0;
+            int j = 0;
+            for (int i = 0; i < size && j < list.size; i++) {
+                int value = candidates[i];
+                while (j < list.size && list.values[j] < value) {
+                    j++;
+                }
+                if (j < list.size && list.values[j] == value) {
+                    candidates[out++] = value;
+                }
+            }
+            return out;
+        }
+
+        /**
+         * Khóa băm (không trùng lặp, tăng dần) của các trigram trong {@code texts}.
+         */
+        private static int[] trigrams(String... texts) {
+            int total = 0;
+            for (String text : texts) {
+                total += Math.max(0, text.length() - 2);
+            }
+            int[] grams = new int[total];
+            int n = 0;
+            for (String text : texts) {
+                for (int i = 0; i + 3 <= text.length(); i++) {
+                    grams[n++] = (text.charAt(i) * 65599 + text.charAt(i + 1)) * 65599 + text.charAt(i + 2);
+                }
+            }
+            Arrays.sort(grams);
+            int unique = 0;
+            for (int i = 0; i < n; i++) {
+                if (unique == 0 || grams[unique - 1] != grams[i]) {
+                    grams[unique++] = grams[i];
+                }
+            }
+            return Arrays.copyOf(grams, unique);
+        }
+
+        private static boolean contains(byte[] haystack, byte[] needle) {
+            if (haystack == null) {
+                return false;
+            }
+            outer:
+            for (int i = 0; i + needle.length <= haystack.length; i++) {
+                for (int j = 0; j < needle.length; j++) {
+                    if (haystack[i + j] != needle[j]) {
+                        continue outer;
+                    }
+                }
+                return true;
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Bảng băm địa chỉ mở từ khóa trigram (int) tới danh sách posting, không boxing khóa.
+     */
+    private static final class GramTable {
+        private int[] keys = new int[1 << 12];
+        private IntList[] lists = new IntList[1 << 12];
+        private int size;
+
+        IntList get(int gram) {
+            int mask = keys.length - 1;
+            for (int i = mix(gram) & mask; lists[i] != null; i = (i + 1) & mask) {
+                if (keys[i] == gram) {
+                    return lists[i];
+                }
+            }
+            return null;
+        }
+
+        IntList getOrCreate(int gram) {
+            if (size * 2 >= keys.length) {
+                grow();
+            }
+            int mask = keys.length - 1;
+            int i = mix(gram) & mask;
+            for (; lists[i] != null; i = (i + 1) & mask) {
+                if (keys[i] == gram) {
+                    return lists[i];
+                }
+            }
+            keys[i] = gram;
+            lists[i] = new IntList();
+            size++;
+            return lists[i];
+        }
+
+        private void grow() {
+            int[] oldKeys = keys;
+            IntList[] oldLists = lists;
+            keys = new int[oldKeys.length * 2];
+            lists = new IntList[oldKeys.length * 2];
+            int mask = keys.length - 1;
+            for (int j = 0; j < oldKeys.length; j++) {
+                if (oldLists[j] != null) {
+                    int i = mix(oldKeys[j]) & mask;
+                    while (lists[i] != null) {
+                        i = (i + 1) & mask;
+                    }
+                    keys[i] = oldKeys[j];
+                    lists[i] = oldLists[j];
+                }
+            }
+        }
+
+        private static int mix(int gram) {
+            int h = gram * 0x9E3779B9;
+            return h ^ (h >>> 16);
+        }
+    }
+
+    /**
+     * Danh sách int tăng dần, lưu trong mảng nguyên thủy.
+     */
+    private static final class IntList {
+        private int[] values = new int[4];
+        private int size;
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size + (size >> 1) + 1);
+            }
+            values[size++] = value;
+        }
+    }
+}
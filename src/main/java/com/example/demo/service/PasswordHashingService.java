@@ -0,0 +1,105 @@
+package com.example.demo.service;
+
+import com.example.demo.exception.ServiceOverloadedException;
+import com.example.demo.repository.UserRepository;
+import com.example.demo.security.UserAccount;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Chạy BCrypt trên pool riêng ({@code passwordHashingExecutor}) thay vì trên thread request.
+ * Khi pool bão hòa hoặc chờ quá lâu, request bị từ chối ngay với 503.
+ */
+@Service
+public class PasswordHashingService {
+
+    private static final Logger logger = LoggerFactory.getLogger(PasswordHashingService.class);
+
+    private final PasswordEncoder passwordEncoder;
+    private final ThreadPoolExecutor executor;
+    private final UserRepository userRepository;
+    private final CustomUserDetailsService userDetailsService;
+    private final long timeoutMillis;
+    private final Timer encodeTimer;
+    private final Timer matchesTimer;
+
+    public PasswordHashingService(PasswordEncoder passwordEncoder,
+                                  @Qualifier("passwordHashingExecutor") ThreadPoolExecutor executor,
+                                  UserRepository userRepository,
+                                  CustomUserDetailsService userDetailsService,
+                                  MeterRegistry meterRegistry,
+                                  @Value("${app.security.password-hashing.timeout-ms:5000}") long timeoutMillis) {
+        this.passwordEncoder = passwordEncoder;
+        this.executor = executor;
+        this.userRepository = userRepository;
+        this.userDetailsService = userDetailsService;
+        this.timeoutMillis = timeoutMillis;
+        this.encodeTimer = Timer.builder("security.password.hash").tag("operation", "encode").register(meterRegistry);
+        this.matchesTimer = Timer.builder("security.password.hash").tag("operation", "matches").register(meterRegistry);
+    }
+
+    public String encode(String rawPassword) {
+        return run(() -> encodeTimer.record(() -> passwordEncoder.encode(rawPassword)));
+    }
+
+    public boolean matches(String rawPassword, String encodedPassword) {
+        return run(() -> matchesTimer.record(() -> passwordEncoder.matches(rawPassword, encodedPassword)));
+    }
+
+    /**
+     * Sau khi đăng nhập thành công, băm lại mật khẩu nếu hash đang lưu có cost thấp hơn cấu hình.
+     * Chạy nền và bỏ qua nếu pool đang bận, để không làm chậm request đăng nhập.
+     */
+    public void rehashIfNeeded(UserAccount account, String rawPassword) {
+        if (!passwordEncoder.upgradeEncoding(account.getPasswordHash())) {
+            return;
+        }
+        try {
+            executor.execute(() -> {
+                String newHash = encodeTimer.record(() -> passwordEncoder.encode(rawPassword));
+                if (userRepository.updatePassword(account.getId(), account.getPasswordHash(), newHash) > 0) {
+                    userDetailsService.evict(account.getEmail());
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            logger.debug("Skipping password rehash for user {}: hashing pool saturated", account.getId());
+        }
+    }
+
+    private <T> T run(Callable<T> task) {
+        Future<T> future;
+        try {
+            future = executor.submit(task);
+        } catch (RejectedExecutionException e) {
+            throw new ServiceOverloadedException("Hệ thống đang bận, vui lòng thử lại sau", 1);
+        }
+        try {
+            return future.get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            throw new ServiceOverloadedException("Hệ thống đang bận, vui lòng thử lại sau", 1);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ServiceOverloadedException("Yêu cầu bị gián đoạn", 1);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+}
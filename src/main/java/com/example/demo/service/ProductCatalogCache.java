@@ -0,0 +1,159 @@
+package com.example.demo.service;
+
+import com.example.demo.dto.ProductTotalMode;
+import com.example.demo.event.ProductCatalogChangedEvent;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cache read-through cho danh sách sản phẩm công khai: lưu sẵn JSON của từng trang theo
+ * (danh mục, từ khóa, trang, sắp xếp), giới hạn số mục và thời gian sống.
+ * <p>
+ * Vô hiệu hóa theo danh mục bằng bộ đếm thế hệ: mỗi mục ghi lại thế hệ của danh mục (và của nhóm
+ * "tất cả danh mục") lúc bắt đầu nạp, mục lệch thế hệ bị coi là hết hạn. Nhiều request cùng trượt
+ * cache một khóa chỉ chạy một truy vấn, các request còn lại chờ kết quả đó.
+ */
+@Service
+public class ProductCatalogCache {
+
+    // Nhóm chứa các trang không lọc danh mục; thay đổi ở bất kỳ danh mục nào cũng ảnh hưởng nhóm này
+    private static final String ALL_CATEGORIES = "";
+
+    private record PageKey(String category, String search, int page, int size, String sort,
+                           ProductTotalMode totalMode) {
+    }
+
+    private record Entry(byte[] body, long categoryGeneration, long allGeneration, long expiresAt) {
+    }
+
+    private final AdminProductService productService;
+    private final ObjectMapper objectMapper;
+    private final long ttlMillis;
+    private final Map<PageKey, Entry> entries;
+    private final Map<PageKey, CompletableFuture<byte[]>> inFlight = new ConcurrentHashMap<>();
+    private final Map<String, AtomicLong> generations = new ConcurrentHashMap<>();
+    private final Counter hits;
+    private final Counter misses;
+
+    public ProductCatalogCache(AdminProductService productService,
+                               ObjectMapper objectMapper,
+                               MeterRegistry meterRegistry,
+                               @Value("${app.products.cache.max-entries:2000}") int maxEntries,
+                               @Value("${app.products.cache.ttl-seconds:60}") long ttlSeconds) {
+        this.productService = productService;
+        this.objectMapper = objectMapper;
+        this.ttlMillis = ttlSeconds * 1000;
+        this.entries = new LinkedHashMap<>(256, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<PageKey, Entry> eldest) {
+                return size() > maxEntries;
+            }
+        };
+        this.hits = Counter.builder("products.cache.requests").tag("result", "hit").register(meterRegistry);
+        this.misses = Counter.builder("products.cache.requests").tag("result", "miss").register(meterRegistry);
+        Gauge.builder("products.cache.size", this, cache -> cache.size()).register(meterRegistry);
+    }
+
+    /**
+     * JSON của trang sản phẩm ({@link com.example.demo.dto.ProductPageResponse}).
+     */
+    public byte[] getPage(String category, String search, Pageable pageable, ProductTotalMode totalMode) {
+        String normalizedCategory = category == null || category.equals("all") ? null : category;
+        String normalizedSearch = search == null || search.trim().isEmpty() ? null : search;
+        PageKey key = new PageKey(normalizedCategory == null ? ALL_CATEGORIES : normalizedCategory,
+                normalizedSearch == null ? null : normalizedSearch.trim().toLowerCase(Locale.ROOT),
+                pageable.getPageNumber(), pageable.getPageSize(), pageable.getSort().toString(), totalMode);
+
+        long categoryGeneration = generation(key.category());
+        long allGeneration = generation(ALL_CATEGORIES);
+        Entry entry;
+        synchronized (entries) {
+            entry = entries.get(key);
+        }
+        if (entry != null && entry.categoryGeneration() == categoryGeneration
+                && entry.allGeneration() == allGeneration && entry.expiresAt() > System.currentTimeMillis()) {
+            hits.increment();
+            return entry.body();
+        }
+
+        misses.increment();
+        CompletableFuture<byte[]> future = new CompletableFuture<>();
+        CompletableFuture<byte[]> existing = inFlight.putIfAbsent(key, future);
+        if (existing != null) {
+            return join(existing);
+        }
+        try {
+            byte[] body = objectMapper.writeValueAsBytes(
+                    productService.getProductPage(normalizedCategory, normalizedSearch, pageable, totalMode));
+            synchronized (entries) {
+                entries.put(key, new Entry(body, categoryGeneration, allGeneration,
+                        System.currentTimeMillis() + ttlMillis));
+            }
+            future.complete(body);
+            return body;
+        } catch (JsonProcessingException e) {
+            IllegalStateException failure = new IllegalStateException("Cannot serialize product page", e);
+            future.completeExceptionally(failure);
+            throw failure;
+        } catch (RuntimeException e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, future);
+        }
+    }
+
+    /**
+     * Vô hiệu hóa các trang của những danh mục bị ảnh hưởng (và các trang không lọc danh mục).
+     */
+    public void invalidate(Iterable<String> categories) {
+        for (String category : categories) {
+            if (category != null) {
+                generations.computeIfAbsent(category, c -> new AtomicLong()).incrementAndGet();
+            }
+        }
+        generations.computeIfAbsent(ALL_CATEGORIES, c -> new AtomicLong()).incrementAndGet();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCatalogChanged(ProductCatalogChangedEvent event) {
+        invalidate(event.getCategories());
+    }
+
+    private long generation(String category) {
+        AtomicLong generation = generations.get(category);
+        return generation != null ? generation.get() : 0;
+    }
+
+    private int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    private static byte[] join(CompletableFuture<byte[]> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,297 @@
+package com.example.demo.service;
+
+import com.example.demo.dto.ProductCategoryFacet;
+import com.example.demo.entity.Product;
+import com.example.demo.event.ProductStockChangedEvent;
+import com.example.demo.repository.ProductCategoryStatsRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Duy trì bảng {@code product_category_stats}: delta theo danh mục từ thao tác trên sản phẩm
+ * (AdminProductService, ProductImportService) và từ thay đổi tồn kho của đơn hàng (InventoryService,
+ * InventoryLedger) được cộng vào một "đuôi" trong bộ nhớ sau khi commit và ghi xuống bảng theo lô định kỳ,
+ * nên transaction đơn hàng không phải chờ khóa trên dòng danh mục (số liệu trễ tối đa một chu kỳ flush).
+ * Số còn hàng chỉ đổi khi tồn kho đi qua 0; khoảng giá được mở rộng khi thêm giá và tính lại từ chỉ mục
+ * (category, price) khi một giá rời khỏi danh mục. {@link #rebuild()} dựng lại toàn bộ từ bảng products.
+ */
+@Service
+public class ProductCategoryStatsService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ProductCategoryStatsService.class);
+
+    private static final String UPSERT_SQL = "INSERT INTO product_category_stats " +
+            "(category, product_count, in_stock_count, min_price, max_price) VALUES (?, ?, ?, ?, ?) " +
+            "ON DUPLICATE KEY UPDATE " +
+            "product_count = product_count + VALUES(product_count), " +
+            "in_stock_count = in_stock_count + VALUES(in_stock_count), " +
+            "min_price = LEAST(COALESCE(min_price, VALUES(min_price)), COALESCE(VALUES(min_price), min_price)), " +
+            "max_price = GREATEST(COALESCE(max_price, VALUES(max_price)), COALESCE(VALUES(max_price), max_price))";
+    private static final String PRICE_RANGE_SQL = "UPDATE product_category_stats s JOIN " +
+            "(SELECT MIN(price) AS min_price, MAX(price) AS max_price FROM products WHERE category = ?) p " +
+            "SET s.min_price = p.min_price, s.max_price = p.max_price WHERE s.category = ?";
+    private static final String DELETE_EMPTY_SQL =
+            "DELETE FROM product_category_stats WHERE category = ? AND product_count <= 0";
+    private static final String REBUILD_SQL = "SELECT category, COUNT(*), " +
+            "SUM(CASE WHEN stock > 0 THEN 1 ELSE 0 END), MIN(price), MAX(price) FROM products GROUP BY category";
+
+    /**
+     * Trạng thái của một sản phẩm liên quan đến số liệu danh mục.
+     */
+    public record ProductState(String category, BigDecimal price, int stock) {
+
+        public static ProductState of(Product product) {
+            return new ProductState(product.getCategory(), product.getPrice(), product.getStock());
+        }
+    }
+
+    /**
+     * {@code before} null khi thêm sản phẩm, {@code after} null khi xóa.
+     */
+    public record Change(ProductState before, ProductState after) {
+    }
+
+    private final ProductCategoryStatsRepository statsRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+    private final TransactionTemplate transactionTemplate;
+    private final CommitFence fence = new CommitFence();
+    // flush và rebuild không chạy chồng lên nhau
+    private final Object flushLock = new Object();
+    private volatile Map<String, Delta> tail = new ConcurrentHashMap<>();
+
+    public ProductCategoryStatsService(ProductCategoryStatsRepository statsRepository,
+                                       JdbcTemplate jdbcTemplate,
+                                       ApplicationEventPublisher eventPublisher,
+                                       PlatformTransactionManager transactionManager) {
+        this.statsRepository = statsRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.eventPublisher = eventPublisher;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+    }
+
+    /**
+     * Số liệu theo danh mục, sắp theo số sản phẩm giảm dần; chỉ danh mục {@code category} nếu có.
+     */
+    public List<ProductCategoryFacet> getFacets(String category) {
+        return statsRepository.findByProductCountGreaterThanOrderByProductCountDescCategoryAsc(0).stream()
+                .filter(stats -> category == null || category.equals(stats.getCategory()))
+                .map(stats -> new ProductCategoryFacet(stats.getCategory(), stats.getProductCount(),
+                        stats.getInStockCount(), stats.getMinPrice(), stats.getMaxPrice()))
+                .toList();
+    }
+
+    public void recordChange(ProductState before, ProductState after) {
+        recordChanges(List.of(new Change(before, after)));
+    }
+
+    /**
+     * Gộp delta theo danh mục và cộng vào phần đuôi khi transaction hiện tại commit.
+     */
+    public void recordChanges(Collection<Change> changes) {
+        Map<String, Delta> deltas = new HashMap<>();
+        for (Change change : changes) {
+            ProductState before = change.before();
+            ProductState after = change.after();
+            if (before != null) {
+                Delta delta = deltas.computeIfAbsent(before.category(), c -> new Delta());
+                delta.products--;
+                if (before.stock() > 0) {
+                    delta.inStock--;
+                }
+                if (after == null || !after.category().equals(before.category())
+                        || after.price().compareTo(before.price()) != 0) {
+                    delta.priceRemoved = true;
+                }
+            }
+            if (after != null) {
+                Delta delta = deltas.computeIfAbsent(after.category(), c -> new Delta());
+                delta.products++;
+                if (after.stock() > 0) {
+                    delta.inStock++;
+                }
+                delta.widen(after.price());
+            }
+        }
+        fence.afterCommit(() -> merge(deltas));
+    }
+
+    /**
+     * Ghi nhận thay đổi tồn kho đã được UPDATE trong transaction hiện tại ({@code deltas} theo id sản phẩm):
+     * đọc tồn kho mới của các dòng (đang bị khóa) để biết sản phẩm nào đi qua 0, cộng delta số còn hàng vào
+     * phần đuôi sau khi commit và phát {@link ProductStockChangedEvent} cho chỉ mục tìm kiếm.
+     */
+    @Transactional
+    public void recordStockChanged(Map<Long, ? extends Number> deltas) {
+        if (deltas.isEmpty()) {
+            return;
+        }
+        List<Long> ids = new ArrayList<>(deltas.keySet());
+        Map<String, Delta> byCategory = new HashMap<>();
+        Map<Long, Integer> stocks = new HashMap<>();
+        jdbcTemplate.query("SELECT id, category, stock FROM products WHERE id IN (" +
+                String.join(", ", Collections.nCopies(ids.size(), "?")) + ")", rs -> {
+            long id = rs.getLong(1);
+            int stock = rs.getInt(3);
+            long before = stock - deltas.get(id).longValue();
+            stocks.put(id, stock);
+            if ((before > 0) != (stock > 0)) {
+                byCategory.computeIfAbsent(rs.getString(2), c -> new Delta()).inStock += stock > 0 ? 1 : -1;
+            }
+        }, ids.toArray());
+        if (!byCategory.isEmpty()) {
+            fence.afterCommit(() -> merge(byCategory));
+        }
+        eventPublisher.publishEvent(new ProductStockChangedEvent(stocks));
+    }
+
+    /**
+     * Ghi phần đuôi xuống bảng: mỗi danh mục một câu upsert trong cùng một transaction.
+     */
+    @Scheduled(fixedDelayString = "${app.products.facets.flush-interval-ms:5000}")
+    public void flush() {
+        synchronized (flushLock) {
+            Map<String, Delta> drained = fence.exclusive(this::drainTail);
+            if (drained.isEmpty()) {
+                return;
+            }
+            try {
+                transactionTemplate.executeWithoutResult(status -> apply(new TreeMap<>(drained)));
+            } catch (RuntimeException e) {
+                // Trả lại phần đuôi để lần sau ghi tiếp
+                logger.warn("Failed to flush product category stats ({} categories): {}", drained.size(), e.getMessage());
+                restore(drained);
+            }
+        }
+    }
+
+    /**
+     * Dựng lại toàn bộ bảng tổng hợp từ bảng products (sửa sai lệch nếu có). Snapshot đọc được mở cùng lúc
+     * bỏ phần đuôi (xem {@link CommitFence}) nên thay đổi commit trong lúc dựng lại chỉ được tính một lần.
+     */
+    @Scheduled(cron = "${app.products.facets.reconcile-cron:0 45 3 * * *}")
+    public void rebuild() {
+        synchronized (flushLock) {
+            long started = System.currentTimeMillis();
+            List<Map<String, Delta>> discarded = new ArrayList<>(1);
+            try {
+                transactionTemplate.executeWithoutResult(status -> {
+                    discarded.add(fence.exclusive(() -> {
+                        // Lần đọc đầu tiên trong transaction REPEATABLE READ tạo snapshot
+                        jdbcTemplate.queryForList("SELECT id FROM products LIMIT 1");
+                        return drainTail();
+                    }));
+                    List<Object[]> rows = jdbcTemplate.query(REBUILD_SQL, (rs, rowNum) -> new Object[]{
+                            rs.getString(1), rs.getLong(2), rs.getLong(3), rs.getBigDecimal(4), rs.getBigDecimal(5)});
+                    jdbcTemplate.update("DELETE FROM product_category_stats");
+                    jdbcTemplate.batchUpdate(UPSERT_SQL, rows);
+                });
+            } catch (RuntimeException e) {
+                // Bảng cũ vẫn giữ nguyên nên phần đuôi đã bỏ phải được cộng lại
+                discarded.forEach(this::restore);
+                throw e;
+            }
+            logger.info("Rebuilt product category stats in {} ms", System.currentTimeMillis() - started);
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuildIfEmpty() {
+        if (statsRepository.count() == 0) {
+            rebuild();
+        }
+    }
+
+    private void merge(Map<String, Delta> deltas) {
+        deltas.forEach((category, delta) -> tail.computeIfAbsent(category, c -> new Delta()).add(delta));
+    }
+
+    private Map<String, Delta> drainTail() {
+        Map<String, Delta> drained = tail;
+        tail = new ConcurrentHashMap<>();
+        return drained;
+    }
+
+    private void restore(Map<String, Delta> drained) {
+        fence.shared(() -> merge(drained));
+    }
+
+    /**
+     * Ghi delta theo thứ tự danh mục. Chạy sau khi thay đổi đã commit nên khoảng giá được tính lại
+     * từ dữ liệu products đã ghi.
+     */
+    private void apply(SortedMap<String, Delta> deltas) {
+        List<Object[]> upserts = new ArrayList<>(deltas.size());
+        deltas.forEach((category, delta) -> {
+            if (delta.products != 0 || delta.inStock != 0 || delta.minPrice != null) {
+                upserts.add(new Object[]{category, delta.products, delta.inStock, delta.minPrice, delta.maxPrice});
+            }
+        });
+        if (!upserts.isEmpty()) {
+            jdbcTemplate.batchUpdate(UPSERT_SQL, upserts);
+        }
+        deltas.forEach((category, delta) -> {
+            if (delta.priceRemoved) {
+                jdbcTemplate.update(PRICE_RANGE_SQL, category, category);
+            }
+            if (delta.products < 0) {
+                jdbcTemplate.update(DELETE_EMPTY_SQL, category);
+            }
+        });
+    }
+
+    private static final class Delta {
+        private long products;
+        private long inStock;
+        private BigDecimal minPrice;
+        private BigDecimal maxPrice;
+        // Một giá rời khỏi danh mục: khoảng giá phải tính lại
+        private boolean priceRemoved;
+
+        synchronized void widen(BigDecimal price) {
+            if (price == null) {
+                return;
+            }
+            if (minPrice == null || price.compareTo(minPrice) < 0) {
+                minPrice = price;
+            }
+            if (maxPrice == null || price.compareTo(maxPrice) > 0) {
+                maxPrice = price;
+            }
+        }
+
+        void add(Delta other) {
+            synchronized (other) {
+                synchronized (this) {
+                    products += other.products;
+                    inStock += other.inStock;
+                    priceRemoved |= other.priceRemoved;
+                    widen(other.minPrice);
+                    widen(other.maxPrice);
+                }
+            }
+        }
+    }
+}
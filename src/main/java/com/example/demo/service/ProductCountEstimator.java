@@ -0,0 +1,120 @@
+package com.example.demo.service;
+
+import com.example.demo.event.ProductCatalogChangedEvent;
+import com.example.demo.repository.ProductRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Tổng số sản phẩm ước lượng theo (danh mục, từ khóa) cho danh sách phân trang không COUNT. Lần đầu gặp
+ * một khóa thì đếm ngay; sau đó trả số đã đếm và làm mới trên thread nền khi quá hạn hoặc khi danh mục
+ * liên quan thay đổi. Khóa lâu không được dùng bị bỏ khỏi cache.
+ */
+@Service
+public class ProductCountEstimator {
+
+    public record Estimate(long count, LocalDateTime asOf) {
+    }
+
+    private record Key(String category, String search) {
+    }
+
+    private static final class Entry {
+        private volatile long count;
+        private volatile long computedAt;
+        private volatile long lastAccess;
+        private volatile boolean stale;
+    }
+
+    private final ProductRepository productRepository;
+    private final long maxAgeMillis;
+    private final long idleMillis;
+    private final Map<Key, Entry> entries;
+
+    public ProductCountEstimator(ProductRepository productRepository,
+                                 @Value("${app.products.count-cache.max-entries:500}") int maxEntries,
+                                 @Value("${app.products.count-cache.max-age-seconds:300}") long maxAgeSeconds,
+                                 @Value("${app.products.count-cache.idle-seconds:1800}") long idleSeconds) {
+        this.productRepository = productRepository;
+        this.maxAgeMillis = maxAgeSeconds * 1000;
+        this.idleMillis = idleSeconds * 1000;
+        this.entries = new LinkedHashMap<>(64, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * {@code category}/{@code search} null nghĩa là không lọc theo tiêu chí đó.
+     */
+    public Estimate estimate(String category, String search) {
+        Key key = new Key(category, search == null ? null : search.trim().toLowerCase(Locale.ROOT));
+        Entry entry;
+        synchronized (entries) {
+            entry = entries.get(key);
+        }
+        if (entry == null) {
+            entry = new Entry();
+            count(key, entry);
+            synchronized (entries) {
+                entries.put(key, entry);
+            }
+        }
+        entry.lastAccess = System.currentTimeMillis();
+        return new Estimate(entry.count,
+                LocalDateTime.ofInstant(Instant.ofEpochMilli(entry.computedAt), ZoneId.systemDefault()));
+    }
+
+    /**
+     * Đếm lại các khóa đã quá hạn hoặc bị đánh dấu thay đổi; bỏ các khóa không còn được dùng.
+     */
+    @Scheduled(fixedDelayString = "${app.products.count-cache.refresh-interval-ms:30000}")
+    public void refresh() {
+        long now = System.currentTimeMillis();
+        List<Map.Entry<Key, Entry>> snapshot;
+        synchronized (entries) {
+            entries.values().removeIf(entry -> now - entry.lastAccess > idleMillis);
+            snapshot = new ArrayList<>(entries.entrySet());
+        }
+        for (Map.Entry<Key, Entry> item : snapshot) {
+            Entry entry = item.getValue();
+            if (entry.stale || now - entry.computedAt > maxAgeMillis) {
+                count(item.getKey(), entry);
+            }
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCatalogChanged(ProductCatalogChangedEvent event) {
+        Set<String> categories = event.getCategories();
+        synchronized (entries) {
+            for (Map.Entry<Key, Entry> item : entries.entrySet()) {
+                String category = item.getKey().category();
+                if (category == null || categories.contains(category)) {
+                    item.getValue().stale = true;
+                }
+            }
+        }
+    }
+
+    private void count(Key key, Entry entry) {
+        // Xóa cờ trước khi đếm: thay đổi xảy ra trong lúc đếm sẽ đánh dấu lại
+        entry.stale = false;
+        entry.count = productRepository.countByFilters(key.category(), key.search());
+        entry.computedAt = System.currentTimeMillis();
+    }
+}
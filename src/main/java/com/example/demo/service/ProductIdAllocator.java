@@ -0,0 +1,57 @@
+package com.example.demo.service;
+
+import com.example.demo.entity.Product;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.StatelessSession;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.generator.BeforeExecutionGenerator;
+import org.hibernate.generator.EventType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * Cấp id sản phẩm cho insert bằng JDBC từ đúng bộ sinh id (pooled, bảng {@code id_allocations}) mà
+ * Hibernate dùng cho {@link Product}: mỗi lần chạm DB giữ trước {@link Product#ID_ALLOCATION_SIZE} id,
+ * nên import hàng loạt và thêm sản phẩm qua JPA không bao giờ trùng id.
+ */
+@Component
+public class ProductIdAllocator {
+
+    private static final String SEED_SQL = "INSERT INTO id_allocations (name, next_val) VALUES ('products', ?) " +
+            "ON DUPLICATE KEY UPDATE next_val = GREATEST(next_val, VALUES(next_val))";
+
+    private final SessionFactoryImplementor sessionFactory;
+    private final BeforeExecutionGenerator generator;
+
+    public ProductIdAllocator(EntityManagerFactory entityManagerFactory, JdbcTemplate jdbcTemplate) {
+        this.sessionFactory = entityManagerFactory.unwrap(SessionFactoryImplementor.class);
+        this.generator = (BeforeExecutionGenerator) sessionFactory.getMappingMetamodel()
+                .getEntityDescriptor(Product.class).getGenerator();
+        seed(jdbcTemplate);
+    }
+
+    /**
+     * {@code count} id mới, tăng dần.
+     */
+    public long[] allocate(int count) {
+        long[] ids = new long[count];
+        // Bộ sinh id tự lấy khối mới trên kết nối/transaction riêng, không dính transaction của người gọi
+        try (StatelessSession session = sessionFactory.openStatelessSession()) {
+            SharedSessionContractImplementor contract = (SharedSessionContractImplementor) session;
+            for (int i = 0; i < count; i++) {
+                ids[i] = ((Number) generator.generate(contract, null, null, EventType.INSERT)).longValue();
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * Bảng products có sẵn dữ liệu từ thời dùng AUTO_INCREMENT: đẩy con trỏ cấp phát qua id lớn nhất
+     * trước khi có insert nào. Optimizer pooled phát các id {@code (v - size, v]} với v đọc từ bảng.
+     */
+    private static void seed(JdbcTemplate jdbcTemplate) {
+        Long maxId = jdbcTemplate.queryForObject("SELECT COALESCE(MAX(id), 0) FROM products", Long.class);
+        jdbcTemplate.update(SEED_SQL, maxId + Product.ID_ALLOCATION_SIZE + 1);
+    }
+}
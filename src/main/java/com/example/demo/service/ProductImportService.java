@@ -0,0 +1,576 @@
+package com.example.demo.service;
+
+import com.example.demo.dto.ProductImportRow;
+import com.example.demo.event.ProductCatalogChangedEvent;
+import com.example.demo.event.ProductChangedEvent;
+import com.example.demo.exception.ServiceOverloadedException;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataAccessException;
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionException;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Semaphore;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+/**
+ * Import sản phẩm hàng loạt từ CSV/NDJSON: đọc request theo luồng, kiểm tra từng dòng ngay khi đọc và
+ * ghi theo lô bằng JDBC batch (mỗi lô một transaction, id cấp trước theo khối từ {@link ProductIdAllocator}).
+ * Kết quả trả về dạng NDJSON cũng theo luồng: lỗi từng dòng, tiến độ định kỳ và dòng tổng kết cuối cùng.
+ * Bộ nhớ dùng chỉ phụ thuộc kích thước lô, không phụ thuộc kích thước file.
+ * <p>
+ * Lô đã commit được giữ lại kể cả khi import dừng giữa chừng (quá nhiều lỗi, client ngắt kết nối).
+ */
+@Service
+public class ProductImportService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ProductImportService.class);
+
+    private static final String INSERT_SQL = "INSERT INTO products " +
+            "(id, name, price, stock, category, description, image_url, created_at, version) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?, 0)";
+    private static final String UPDATE_SQL = "UPDATE products SET name = ?, price = ?, stock = ?, category = ?, " +
+            "description = ?, image_url = ?, version = version + 1 WHERE id = ?";
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ProductIdAllocator idAllocator;
+    private final InventoryLedger inventoryLedger;
+    private final ProductCategoryStatsService categoryStatsService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final Validator validator;
+    private final ObjectMapper objectMapper;
+    private final ObjectReader rowReader;
+    private final int batchSize;
+    private final int maxErrors;
+    private final int progressInterval;
+    private final Semaphore permits;
+    private final Counter insertedRows;
+    private final Counter updatedRows;
+    private final Counter failedRows;
+
+    public ProductImportService(JdbcTemplate jdbcTemplate,
+                                PlatformTransactionManager transactionManager,
+                                ProductIdAllocator idAllocator,
+                                InventoryLedger inventoryLedger,
+                                ProductCategoryStatsService categoryStatsService,
+                                ApplicationEventPublisher eventPublisher,
+                                Validator validator,
+                                ObjectMapper objectMapper,
+                                MeterRegistry meterRegistry,
+                                @Value("${app.products.import.batch-size:1000}") int batchSize,
+                                @Value("${app.products.import.max-errors:1000}") int maxErrors,
+                                @Value("${app.products.import.progress-interval:10000}") int progressInterval,
+                                @Value("${app.products.import.max-concurrent:1}") int maxConcurrent) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.idAllocator = idAllocator;
+        this.inventoryLedger = inventoryLedger;
+        this.categoryStatsService = categoryStatsService;
+        this.eventPublisher = eventPublisher;
+        this.validator = validator;
+        this.objectMapper = objectMapper;
+        this.rowReader = objectMapper.readerFor(ProductImportRow.class);
+        this.batchSize = batchSize;
+        this.maxErrors = maxErrors;
+        this.progressInterval = progressInterval;
+        this.permits = new Semaphore(maxConcurrent);
+        this.insertedRows = meterRegistry.counter("products.import.rows", "outcome", "inserted");
+        this.updatedRows = meterRegistry.counter("products.import.rows", "outcome", "updated");
+        this.failedRows = meterRegistry.counter("products.import.rows", "outcome", "failed");
+    }
+
+    /**
+     * Giữ chỗ một lượt import và đọc phần đầu file ngay (header CSV sai thì trả 400 trước khi bắt đầu
+     * stream); phần còn lại được đọc và ghi trên thread bất đồng bộ của response. Chỗ được trả khi phần thân
+     * chạy xong, hoặc qua hàm trả chỗ giao cho {@code onCompletion} khi request kết thúc mà phần thân chưa chạy.
+     */
+    public StreamingResponseBody importProducts(InputStream body, ExportService.Format format,
+                                                Consumer<Runnable> onCompletion) {
+        if (!permits.tryAcquire()) {
+            throw new ServiceOverloadedException("Đang có lượt import sản phẩm khác", 30);
+        }
+        Runnable release = ExportService.releaseOnce(permits);
+        RowSource source;
+        try {
+            BufferedReader reader = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8), BUFFER_SIZE);
+            source = format == ExportService.Format.CSV ? new CsvRowSource(reader) : new NdjsonRowSource(reader, rowReader);
+        } catch (IOException e) {
+            release.run();
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Không đọc được file import", e);
+        } catch (RuntimeException e) {
+            release.run();
+            throw e;
+        }
+        onCompletion.accept(release);
+        return outputStream -> {
+            try {
+                JsonGenerator generator = objectMapper.getFactory().createGenerator(
+                        new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8), BUFFER_SIZE));
+                generator.setRootValueSeparator(null);
+                new Run(source, generator).execute();
+                generator.flush();
+            } finally {
+                release.run();
+            }
+        };
+    }
+
+    /**
+     * Một dòng đã đọc; {@code error} khác null khi dòng không phân tích được.
+     */
+    private record ParsedRow(long line, ProductImportRow row, String error) {
+    }
+
+    private record Existing(ProductCategoryStatsService.ProductState state, long version) {
+    }
+
+    /**
+     * Trạng thái của một lượt import.
+     */
+    private final class Run {
+        private final RowSource source;
+        private final JsonGenerator out;
+        private final long startedAt = System.nanoTime();
+        private final List<ParsedRow> chunk = new ArrayList<>();
+        private long processed;
+        private long inserted;
+        private long updated;
+        private long failed;
+
+        private Run(RowSource source, JsonGenerator out) {
+            this.source = source;
+            this.out = out;
+        }
+
+        void execute() throws IOException {
+            boolean aborted = false;
+            ParsedRow parsed;
+            while ((parsed = source.next()) != null) {
+                processed++;
+                String error = parsed.error() != null ? parsed.error() : validate(parsed.row());
+                if (error != null) {
+                    reportError(parsed, error);
+                } else {
+                    chunk.add(parsed);
+                    if (chunk.size() >= batchSize) {
+                        flushChunk();
+                    }
+                }
+                if (failed > maxErrors) {
+                    aborted = true;
+                    break;
+                }
+                if (processed % progressInterval == 0) {
+                    out.writeStartObject();
+                    writeCounts("progress");
+                    out.writeEndObject();
+                    out.writeRaw('\n');
+                    // Đẩy tiến độ (và các lỗi trước đó) tới client ngay
+                    out.flush();
+                }
+            }
+            if (!aborted) {
+                flushChunk();
+            }
+            out.writeStartObject();
+            writeCounts("summary");
+            out.writeBooleanField("aborted", aborted);
+            out.writeNumberField("elapsedMs", (System.nanoTime() - startedAt) / 1_000_000);
+            out.writeEndObject();
+            out.writeRaw('\n');
+            logger.info("Product import finished: processed={}, inserted={}, updated={}, failed={}, aborted={}",
+                    processed, inserted, updated, failed, aborted);
+        }
+
+        private String validate(ProductImportRow row) {
+            Set<ConstraintViolation<ProductImportRow>> violations = validator.validate(row);
+            if (violations.isEmpty()) {
+                return null;
+            }
+            return violations.stream()
+                    .map(ConstraintViolation::getMessage)
+                    .sorted()
+                    .collect(Collectors.joining("; "));
+        }
+
+        private void flushChunk() throws IOException {
+            if (chunk.isEmpty()) {
+                return;
+            }
+            List<ParsedRow> inserts = new ArrayList<>();
+            List<ParsedRow> updates = new ArrayList<>();
+            for (ParsedRow parsed : chunk) {
+                (parsed.row().getId() == null ? inserts : updates).add(parsed);
+            }
+            try {
+                long[] ids = idAllocator.allocate(inserts.size());
+                List<ParsedRow> missing = transactionTemplate.execute(status -> writeChunk(inserts, ids, updates));
+                for (ParsedRow parsed : missing) {
+                    reportError(parsed, "Không tìm thấy sản phẩm id " + parsed.row().getId());
+                }
+                inserted += inserts.size();
+                updated += updates.size() - missing.size();
+                insertedRows.increment(inserts.size());
+                updatedRows.increment(updates.size() - missing.size());
+            } catch (DataAccessException | TransactionException | ResponseStatusException e) {
+                logger.warn("Product import batch failed at line {}", chunk.get(0).line(), e);
+                String message = "Lỗi ghi lô dữ liệu: " + e.getMostSpecificCause().getMessage();
+                for (ParsedRow parsed : chunk) {
+                    reportError(parsed, message);
+                }
+            }
+            chunk.clear();
+        }
+
+        /**
+         * Ghi một lô trong transaction hiện tại; trả về các dòng cập nhật có id không tồn tại.
+         */
+        private List<ParsedRow> writeChunk(List<ParsedRow> inserts, long[] ids, List<ParsedRow> updates) {
+            // Sản phẩm nóng trong sổ tồn kho: ghi sổ xuống DB trước khi ghi đè tồn kho
+            inventoryLedger.demoteUntilCompletion(updates.stream().map(parsed -> parsed.row().getId()).toList());
+            Map<Long, Existing> existing = loadExisting(updates);
+            List<ParsedRow> found = new ArrayList<>(updates.size());
+            List<ParsedRow> missing = new ArrayList<>();
+            for (ParsedRow parsed : updates) {
+                (existing.containsKey(parsed.row().getId()) ? found : missing).add(parsed);
+            }
+
+            Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+            jdbcTemplate.batchUpdate(INSERT_SQL, new BatchPreparedStatementSetter() {
+                @Override
+                public void setValues(PreparedStatement ps, int i) throws SQLException {
+                    ProductImportRow row = inserts.get(i).row();
+                    ps.setLong(1, ids[i]);
+                    ps.setString(2, row.getName());
+                    ps.setBigDecimal(3, row.getPrice());
+                    ps.setInt(4, row.getStock());
+                    ps.setString(5, row.getCategory());
+                    setNullableString(ps, 6, row.getDescription());
+                    setNullableString(ps, 7, row.getImageUrl());
+                    ps.setTimestamp(8, now);
+                }
+
+                @Override
+                public int getBatchSize() {
+                    return inserts.size();
+                }
+            });
+            jdbcTemplate.batchUpdate(UPDATE_SQL, found, found.size(), (ps, parsed) -> {
+                ProductImportRow row = parsed.row();
+                ps.setString(1, row.getName());
+                ps.setBigDecimal(2, row.getPrice());
+                ps.setInt(3, row.getStock());
+                ps.setString(4, row.getCategory());
+                setNullableString(ps, 5, row.getDescription());
+                setNullableString(ps, 6, row.getImageUrl());
+                ps.setLong(7, row.getId());
+            });
+
+            // Listener chạy sau khi transaction của lô commit
+            Set<String> categories = new HashSet<>();
+            List<ProductCategoryStatsService.Change> changes = new ArrayList<>(inserts.size() + found.size());
+            for (int i = 0; i < inserts.size(); i++) {
+                ProductImportRow row = inserts.get(i).row();
+                categories.add(row.getCategory());
+                changes.add(new ProductCategoryStatsService.Change(null, state(row)));
+                eventPublisher.publishEvent(new ProductChangedEvent(ids[i], 0L, row.getName(), row.getDescription(),
+                        row.getCategory(), row.getPrice(), row.getStock()));
+            }
+            for (ParsedRow parsed : found) {
+                ProductImportRow row = parsed.row();
+                Existing previous = existing.get(row.getId());
+                Existing current = new Existing(state(row), previous.version() + 1);
+                existing.put(row.getId(), current);
+                categories.add(previous.state().category());
+                categories.add(row.getCategory());
+                changes.add(new ProductCategoryStatsService.Change(previous.state(), current.state()));
+                eventPublisher.publishEvent(new ProductChangedEvent(row.getId(), current.version(), row.getName(),
+                        row.getDescription(), row.getCategory(), row.getPrice(), row.getStock()));
+            }
+            categoryStatsService.recordChanges(changes);
+            if (!categories.isEmpty()) {
+                eventPublisher.publishEvent(new ProductCatalogChangedEvent(categories));
+            }
+            return missing;
+        }
+
+        private Map<Long, Existing> loadExisting(List<ParsedRow> updates) {
+            if (updates.isEmpty()) {
+                return Collections.emptyMap();
+            }
+            List<Long> ids = updates.stream().map(parsed -> parsed.row().getId()).distinct().toList();
+            String placeholders = String.join(",", Collections.nCopies(ids.size(), "?"));
+            Map<Long, Existing> existing = new HashMap<>();
+            // Khóa các dòng sẽ ghi đè để trạng thái cũ đọc được là chính xác
+            jdbcTemplate.query("SELECT id, category, price, stock, version FROM products WHERE id IN (" + placeholders +
+                    ") FOR UPDATE", rs -> {
+                ProductCategoryStatsService.ProductState state = new ProductCategoryStatsService.ProductState(
+                        rs.getString("category"), rs.getBigDecimal("price"), rs.getInt("stock"));
+                existing.put(rs.getLong("id"), new Existing(state, rs.getLong("version")));
+            }, ids.toArray());
+            return existing;
+        }
+
+        private static ProductCategoryStatsService.ProductState state(ProductImportRow row) {
+            return new ProductCategoryStatsService.ProductState(row.getCategory(), row.getPrice(), row.getStock());
+        }
+
+        private void reportError(ParsedRow parsed, String message) throws IOException {
+            failed++;
+            failedRows.increment();
+            if (failed > maxErrors) {
+                return;
+            }
+            out.writeStartObject();
+            out.writeStringField("type", "error");
+            out.writeNumberField("line", parsed.line());
+            if (parsed.row() != null && parsed.row().getId() != null) {
+                out.writeNumberField("id", parsed.row().getId());
+            }
+            out.writeStringField("message", message);
+            out.writeEndObject();
+            out.writeRaw('\n');
+        }
+
+        private void writeCounts(String type) throws IOException {
+            out.writeStringField("type", type);
+            out.writeNumberField("processed", processed);
+            out.writeNumberField("inserted", inserted);
+            out.writeNumberField("updated", updated);
+            out.writeNumberField("failed", failed);
+        }
+    }
+
+    private static void setNullableString(PreparedStatement ps, int index, String value) throws SQLException {
+        if (value == null || value.isBlank()) {
+            ps.setNull(index, Types.VARCHAR);
+        } else {
+            ps.setString(index, value);
+        }
+    }
+
+    private interface RowSource {
+        /**
+         * Dòng tiếp theo, null khi hết file.
+         */
+        ParsedRow next() throws IOException;
+    }
+
+    /**
+     * NDJSON: mỗi dòng một object JSON, bỏ qua dòng trống.
+     */
+    private static final class NdjsonRowSource implements RowSource {
+        private final BufferedReader reader;
+        private final ObjectReader rowReader;
+        private long line;
+
+        private NdjsonRowSource(BufferedReader reader, ObjectReader rowReader) {
+            this.reader = reader;
+            this.rowReader = rowReader;
+        }
+
+        @Override
+        public ParsedRow next() throws IOException {
+            String text;
+            while ((text = reader.readLine()) != null) {
+                line++;
+                if (text.isBlank()) {
+                    continue;
+                }
+                try {
+                    return new ParsedRow(line, rowReader.readValue(text), null);
+                } catch (JsonProcessingException e) {
+                    return new ParsedRow(line, null, "JSON không hợp lệ: " + e.getOriginalMessage());
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * CSV theo RFC 4180 (ô trong dấu nháy kép được chứa dấu phẩy/xuống dòng). Dòng đầu là header; tên cột
+     * không phân biệt hoa thường và dấu gạch dưới, cột lạ bị bỏ qua nên file xuất từ /api/admin/export/products
+     * import lại được (cập nhật theo id).
+     */
+    private static final class CsvRowSource implements RowSource {
+        private static final List<String> COLUMNS =
+                List.of("id", "name", "price", "stock", "category", "description", "imageurl");
+        private static final List<String> REQUIRED = List.of("name", "price", "stock", "category");
+
+        private final BufferedReader reader;
+        private final int[] indexes = new int[COLUMNS.size()];
+        private final StringBuilder cell = new StringBuilder();
+        private long line = 1;
+        private long recordLine;
+
+        private CsvRowSource(BufferedReader reader) throws IOException {
+            this.reader = reader;
+            List<String> header = readRecord();
+            if (header == null) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "File import trống");
+            }
+            if (!header.isEmpty() && header.get(0).startsWith("\uFEFF")) {
+                header.set(0, header.get(0).substring(1));
+            }
+            List<String> normalized = header.stream()
+                    .map(name -> name.trim().replace("_", "").toLowerCase(Locale.ROOT))
+                    .toList();
+            for (int i = 0; i < COLUMNS.size(); i++) {
+                indexes[i] = normalized.indexOf(COLUMNS.get(i));
+            }
+            for (String required : REQUIRED) {
+                if (!normalized.contains(required)) {
+                    throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Thiếu cột bắt buộc: " + required);
+                }
+            }
+        }
+
+        @Override
+        public ParsedRow next() throws IOException {
+            List<String> record;
+            do {
+                record = readRecord();
+                if (record == null) {
+                    return null;
+                }
+            } while (record.size() == 1 && record.get(0).isEmpty());
+
+            ProductImportRow row = new ProductImportRow();
+            try {
+                String id = cell(record, 0);
+                row.setId(id == null ? null : Long.valueOf(id));
+            } catch (NumberFormatException e) {
+                return new ParsedRow(recordLine, null, "id không hợp lệ: " + cell(record, 0));
+            }
+            row.setName(cell(record, 1));
+            try {
+                String price = cell(record, 2);
+                row.setPrice(price == null ? null : new BigDecimal(price));
+            } catch (NumberFormatException e) {
+                return new ParsedRow(recordLine, row, "Giá không hợp lệ: " + cell(record, 2));
+            }
+            try {
+                String stock = cell(record, 3);
+                row.setStock(stock == null ? null : Integer.valueOf(stock));
+            } catch (NumberFormatException e) {
+                return new ParsedRow(recordLine, row, "Số lượng không hợp lệ: " + cell(record, 3));
+            }
+            row.setCategory(cell(record, 4));
+            row.setDescription(cell(record, 5));
+            row.setImageUrl(cell(record, 6));
+            return new ParsedRow(recordLine, row, null);
+        }
+
+        /**
+         * Giá trị ô (đã trim, rỗng thành null); bỏ dấu ' mà ExportService thêm trước ký tự công thức.
+         */
+        private String cell(List<String> record, int column) {
+            int index = indexes[column];
+            if (index < 0 || index >= record.size()) {
+                return null;
+            }
+            String value = record.get(index).trim();
+            if (value.length() > 1 && value.charAt(0) == '\'' && "=+-@".indexOf(value.charAt(1)) >= 0) {
+                value = value.substring(1);
+            }
+            return value.isEmpty() ? null : value;
+        }
+
+        private List<String> readRecord() throws IOException {
+            int c = reader.read();
+            if (c < 0) {
+                return null;
+            }
+            recordLine = line;
+            List<String> record = new ArrayList<>();
+            cell.setLength(0);
+            boolean quoted = false;
+            while (true) {
+                if (quoted) {
+                    if (c < 0) {
+                        // Thiếu dấu nháy đóng: coi phần còn lại là nội dung ô
+                        record.add(cell.toString());
+                        return record;
+                    }
+                    if (c == '"') {
+                        reader.mark(1);
+                        int following = reader.read();
+                        if (following == '"') {
+                            cell.append('"');
+                        } else {
+                            quoted = false;
+                            if (following >= 0) {
+                                reader.reset();
+                            }
+                        }
+                    } else {
+                        if (c == '\n') {
+                            line++;
+                        }
+                        cell.append((char) c);
+                    }
+                } else if (c < 0 || c == '\n') {
+                    if (c == '\n') {
+                        line++;
+                    }
+                    int last = cell.length() - 1;
+                    if (last >= 0 && cell.charAt(last) == '\r') {
+                        cell.setLength(last);
+                    }
+                    record.add(cell.toString());
+                    return record;
+                } else if (c == ',') {
+                    record.add(cell.toString());
+                    cell.setLength(0);
+                } else if (c == '"' && cell.isEmpty()) {
+                    quoted = true;
+                } else {
+                    cell.append((char) c);
+                }
+                c = reader.read();
+            }
+        }
+    }
+}
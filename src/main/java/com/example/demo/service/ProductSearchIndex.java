@@ -0,0 +1,827 @@
+package com.example.demo.service;
+
+import com.example.demo.dto.ProductCategoryFacet;
+import com.example.demo.event.ProductChangedEvent;
+import com.example.demo.event.ProductStockChangedEvent;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import javax.sql.DataSource;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+/**
+ * Chỉ mục đảo ngược trong bộ nhớ cho tìm kiếm sản phẩm theo tên, mô tả và danh mục (không phân biệt
+ * hoa thường và dấu tiếng Việt), thay cho {@code LIKE '%...%'}.
+ *
+ * <p>Mỗi từ của truy vấn khớp chính xác, theo tiền tố (từ cuối, để gợi ý khi đang gõ) hoặc gần đúng
+ * (khoảng cách sửa 1–2 tùy độ dài); sản phẩm phải khớp mọi từ. Điểm = tổng theo từ truy vấn của
+ * trọng số trường × hệ số kiểu khớp × idf của từ truy vấn. Posting của mỗi từ là mảng số thứ tự nội bộ tăng dần kèm
+ * bitmask trường, nên hợp/giao chỉ dùng mảng nguyên thủy.
+ *
+ * <p>Mỗi sản phẩm còn giữ giá và tồn kho để {@link #facets} tính số liệu theo danh mục cho tập khớp từ khóa.
+ *
+ * <p>Cập nhật theo {@link ProductChangedEvent} và {@link ProductStockChangedEvent}; snapshot ghi ra đĩa định kỳ và khi tắt, lúc khởi động
+ * nạp snapshot rồi chỉ đọc lại các sản phẩm có version khác. {@link #search} trả null khi chỉ mục
+ * chưa sẵn sàng và người gọi quay về truy vấn SQL.
+ */
+@Service
+public class ProductSearchIndex {
+
+    private static final Logger logger = LoggerFactory.getLogger(ProductSearchIndex.class);
+
+    private static final int SNAPSHOT_MAGIC = 0x50534958;
+    private static final int SNAPSHOT_FORMAT = 2;
+
+    private static final byte FIELD_NAME = 1;
+    private static final byte FIELD_CATEGORY = 2;
+    private static final byte FIELD_DESCRIPTION = 4;
+
+    private static final float MATCH_EXACT = 1.0f;
+    private static final float MATCH_PREFIX = 0.7f;
+    private static final float MATCH_FUZZY_1 = 0.5f;
+    private static final float MATCH_FUZZY_2 = 0.3f;
+
+    private static final int MAX_QUERY_TERMS = 8;
+    private static final int MAX_EXPANSIONS = 64;
+    private static final int RECONCILE_CHUNK = 500;
+    private static final String COLUMNS = "id, version, name, description, category, price, stock";
+
+    /**
+     * Một trang kết quả theo độ liên quan; {@code categoryFacets} đếm theo danh mục trước khi lọc danh mục.
+     */
+    public record Result(List<Long> productIds, long total, Map<String, Long> categoryFacets) {
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final int maxProducts;
+    private final int maxResults;
+    private final Path snapshotPath;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    // Các trường dưới đây được bảo vệ bởi lock
+    private Segment segment;
+    private List<Consumer<Segment>> queuedDuringBuild;
+    // Có thay đổi chưa ghi snapshot
+    private volatile boolean dirty;
+
+    public ProductSearchIndex(DataSource dataSource,
+                              MeterRegistry meterRegistry,
+                              @Value("${app.products.search-index.max-products:1000000}") int maxProducts,
+                              @Value("${app.products.search-index.max-results:5000}") int maxResults,
+                              @Value("${app.products.search-index.snapshot-path:./data/product-search.idx}") String snapshotPath) {
+        // Đọc bảng products theo luồng (streaming của Connector/J) thay vì nạp hết vào bộ nhớ
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.jdbcTemplate.setFetchSize(Integer.MIN_VALUE);
+        this.maxProducts = maxProducts;
+        this.maxResults = maxResults;
+        this.snapshotPath = Path.of(snapshotPath).toAbsolutePath().normalize();
+        Gauge.builder("products.search_index.size", this, ProductSearchIndex::size).register(meterRegistry);
+    }
+
+    /**
+     * Trang {@code [offset, offset + limit)} của kết quả xếp theo độ liên quan, hoặc null nếu phải dùng SQL.
+     */
+    public Result search(String query, String category, int offset, int limit) {
+        List<String> terms = tokenize(query);
+        if (terms.isEmpty()) {
+            return null;
+        }
+        lock.readLock().lock();
+        try {
+            return segment == null ? null : segment.search(terms, category, offset, limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Số sản phẩm, số còn hàng và khoảng giá theo danh mục của các sản phẩm khớp {@code query} (chỉ danh mục
+     * {@code category} nếu có); null nếu phải dùng SQL.
+     */
+    public List<ProductCategoryFacet> facets(String query, String category) {
+        List<String> terms = tokenize(query);
+        if (terms.isEmpty()) {
+            return null;
+        }
+        lock.readLock().lock();
+        try {
+            return segment == null ? null : segment.facets(terms, category);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Toàn bộ id khớp để người gọi tự sắp xếp bằng SQL; null nếu chỉ mục chưa sẵn sàng hoặc nhiều hơn
+     * {@code app.products.search-index.max-results} kết quả.
+     */
+    public List<Long> searchAll(String query, String category) {
+        Result result = search(query, category, 0, maxResults + 1);
+        return result == null || result.productIds().size() > maxResults ? null : result.productIds();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductChanged(ProductChangedEvent event) {
+        update(target -> apply(target, event));
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onStockChanged(ProductStockChangedEvent event) {
+        update(target -> {
+            event.getStocks().forEach(target::setStock);
+            dirty = true;
+        });
+    }
+
+    private void update(Consumer<Segment> change) {
+        lock.writeLock().lock();
+        try {
+            if (queuedDuringBuild != null) {
+                queuedDuringBuild.add(change);
+            } else if (segment != null) {
+                change.accept(segment);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void buildOnStartup() {
+        Segment loaded = readSnapshot();
+        if (loaded == null) {
+            rebuild();
+        } else {
+            build(loaded, true);
+        }
+    }
+
+    /**
+     * Dựng lại toàn bộ chỉ mục từ bảng products (dọn các số thứ tự của sản phẩm đã xóa/sửa) và ghi snapshot.
+     */
+    @Scheduled(cron = "${app.products.search-index.rebuild-cron:0 30 4 * * *}")
+    public void rebuild() {
+        build(new Segment(), false);
+        writeSnapshot();
+    }
+
+    @Scheduled(fixedDelayString = "${app.products.search-index.snapshot-interval-ms:300000}")
+    public void snapshotIfDirty() {
+        if (dirty) {
+            writeSnapshot();
+        }
+    }
+
+    @PreDestroy
+    public void snapshotOnShutdown() {
+        snapshotIfDirty();
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return segment == null ? 0 : segment.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Nạp dữ liệu vào {@code built}: toàn bộ bảng, hoặc (khi {@code reconcile}) chỉ các sản phẩm mới/đổi
+     * version so với snapshot. Thay đổi trong lúc dựng được xếp hàng và áp dụng trước khi tráo vào.
+     */
+    private void build(Segment built, boolean reconcile) {
+        lock.writeLock().lock();
+        try {
+            if (queuedDuringBuild != null) {
+                return;
+            }
+            queuedDuringBuild = new ArrayList<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        long started = System.currentTimeMillis();
+        boolean failed = false;
+        try {
+            if (reconcile) {
+                reconcile(built);
+            } else {
+                jdbcTemplate.query("SELECT " + COLUMNS + " FROM products ORDER BY id", rs -> {
+                    built.add(rs.getLong(1), rs.getLong(2), rs.getString(3), rs.getString(4), rs.getString(5),
+                            rs.getBigDecimal(6), rs.getInt(7));
+                });
+            }
+        } catch (RuntimeException e) {
+            logger.warn("Failed to build product search index: {}", e.getMessage());
+            failed = true;
+        }
+
+        lock.writeLock().lock();
+        try {
+            if (failed || built.size() > maxProducts) {
+                segment = null;
+                logger.warn("Product search index disabled (more than {} products or build failed); using SQL search",
+                        maxProducts);
+            } else {
+                segment = built;
+                queuedDuringBuild.forEach(change -> change.accept(built));
+                dirty = reconcile || !queuedDuringBuild.isEmpty();
+                logger.info("{} product search index for {} products in {} ms", reconcile ? "Loaded" : "Built",
+                        built.size(), System.currentTimeMillis() - started);
+            }
+            queuedDuringBuild = null;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void reconcile(Segment loaded) {
+        Set<Long> seen = new HashSet<>();
+        List<Long> stale = new ArrayList<>();
+        jdbcTemplate.query("SELECT id, version FROM products", rs -> {
+            long id = rs.getLong(1);
+            seen.add(id);
+            if (!loaded.hasVersion(id, rs.getLong(2))) {
+                stale.add(id);
+            }
+        });
+        for (long id : loaded.productIds()) {
+            if (!seen.contains(id)) {
+                loaded.remove(id);
+            }
+        }
+        for (int from = 0; from < stale.size(); from += RECONCILE_CHUNK) {
+            List<Long> chunk = stale.subList(from, Math.min(from + RECONCILE_CHUNK, stale.size()));
+            jdbcTemplate.query("SELECT " + COLUMNS + " FROM products WHERE id IN (" +
+                    String.join(", ", Collections.nCopies(chunk.size(), "?")) + ")", rs -> {
+                loaded.add(rs.getLong(1), rs.getLong(2), rs.getString(3), rs.getString(4), rs.getString(5),
+                        rs.getBigDecimal(6), rs.getInt(7));
+            }, chunk.toArray());
+        }
+    }
+
+    private void apply(Segment target, ProductChangedEvent event) {
+        if (event.getType() == ProductChangedEvent.Type.DELETED) {
+            target.remove(event.getProductId());
+        } else {
+            target.add(event.getProductId(), event.getVersion(), event.getName(), event.getDescription(),
+                    event.getCategory(), event.getPrice(), event.getStock() == null ? 0 : event.getStock());
+        }
+        dirty = true;
+        if (target == segment && target.size() > maxProducts) {
+            segment = null;
+            logger.warn("Product search index exceeded {} products and was disabled; using SQL search", maxProducts);
+        }
+    }
+
+    private Segment readSnapshot() {
+        if (!Files.isRegularFile(snapshotPath)) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(snapshotPath), 1 << 16))) {
+            if (in.readInt() != SNAPSHOT_MAGIC || in.readInt() != SNAPSHOT_FORMAT) {
+                logger.warn("Ignoring product search snapshot {} with unknown format", snapshotPath);
+                return null;
+            }
+            return Segment.read(in);
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Cannot read product search snapshot {}: {}", snapshotPath, e.getMessage());
+            return null;
+        }
+    }
+
+    private void writeSnapshot() {
+        lock.readLock().lock();
+        try {
+            if (segment == null) {
+                return;
+            }
+            Files.createDirectories(snapshotPath.getParent());
+            Path temp = Files.createTempFile(snapshotPath.getParent(), "product-search-", ".part");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp), 1 << 16))) {
+                out.writeInt(SNAPSHOT_MAGIC);
+                out.writeInt(SNAPSHOT_FORMAT);
+                segment.write(out);
+            }
+            try {
+                Files.move(temp, snapshotPath, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, snapshotPath, StandardCopyOption.REPLACE_EXISTING);
+            }
+            // Ghi dưới read lock: không có cập nhật nào chen vào giữa lúc ghi và lúc xóa cờ
+            dirty = false;
+        } catch (IOException e) {
+            logger.warn("Cannot write product search snapshot {}: {}", snapshotPath, e.getMessage());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Tách từ sau khi chuẩn hóa như {@link OrderSearchIndex#normalize}; bỏ trùng, tối đa {@value #MAX_QUERY_TERMS} từ.
+     */
+    static List<String> tokenize(String text) {
+        Set<String> terms = new LinkedHashSet<>();
+        for (String term : OrderSearchIndex.normalize(text).split("[^\\p{L}\\p{N}]+")) {
+            if (!term.isEmpty()) {
+                terms.add(term);
+            }
+        }
+        List<String> result = new ArrayList<>(terms);
+        return result.size() > MAX_QUERY_TERMS ? result.subList(0, MAX_QUERY_TERMS) : result;
+    }
+
+    /**
+     * Khoảng cách Levenshtein nếu không vượt {@code max}, ngược lại {@code max + 1}; chỉ tính dải chéo.
+     */
+    static int boundedDistance(String a, String b, int max) {
+        if (Math.abs(a.length() - b.length()) > max) {
+            return max + 1;
+        }
+        int[] previous = new int[b.length() + 1];
+        int[] current = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++) {
+            previous[j] = j;
+        }
+        for (int i = 1; i <= a.length(); i++) {
+            int from = Math.max(1, i - max);
+            int to = Math.min(b.length(), i + max);
+            current[0] = i;
+            if (from > 1) {
+                current[from - 1] = max + 1;
+            }
+            int rowMin = max + 1;
+            for (int j = from; j <= to; j++) {
+                int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+                int value = Math.min(Math.min(previous[j] + 1, current[j - 1] + 1), previous[j - 1] + cost);
+                current[j] = value;
+                rowMin = Math.min(rowMin, value);
+            }
+            if (to < b.length()) {
+                current[to + 1] = max + 1;
+            }
+            if (rowMin > max) {
+                return max + 1;
+            }
+            int[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+        return Math.min(previous[b.length()], max + 1);
+    }
+
+    private static int allowedEdits(String term) {
+        return term.length() < 4 ? 0 : term.length() < 8 ? 1 : 2;
+    }
+
+    private static float fieldWeight(byte mask) {
+        float weight = 0;
+        if ((mask & FIELD_NAME) != 0) {
+            weight += 3.0f;
+        }
+        if ((mask & FIELD_CATEGORY) != 0) {
+            weight += 2.0f;
+        }
+        if ((mask & FIELD_DESCRIPTION) != 0) {
+            weight += 1.0f;
+        }
+        return weight;
+    }
+
+    /**
+     * Dữ liệu chỉ mục. Không thread-safe; được bảo vệ bởi lock của ProductSearchIndex.
+     * Sửa một sản phẩm = đánh dấu xóa số thứ tự cũ và thêm số thứ tự mới; {@link #rebuild()} dọn lại.
+     */
+    private static final class Segment {
+        private long[] productIds = new long[1024];
+        private long[] versions = new long[1024];
+        private String[] categories = new String[1024];
+        // Giá theo đơn vị 0.01 và tồn kho, theo số thứ tự
+        private long[] prices = new long[1024];
+        private int[] stocks = new int[1024];
+        private int count;
+        private final BitSet deleted = new BitSet();
+        private final Map<Long, Integer> ordinals = new HashMap<>();
+        private final Map<String, String> categoryNames = new HashMap<>();
+        private final NavigableMap<String, Postings> terms = new TreeMap<>();
+        // Từ điển chia theo ký tự đầu cho tìm gần đúng (lỗi gõ hiếm khi ở ký tự đầu)
+        private final Map<Character, List<String>> termsByFirstChar = new HashMap<>();
+
+        int size() {
+            return ordinals.size();
+        }
+
+        List<Long> productIds() {
+            return new ArrayList<>(ordinals.keySet());
+        }
+
+        boolean hasVersion(long productId, long version) {
+            Integer ordinal = ordinals.get(productId);
+            return ordinal != null && versions[ordinal] == version;
+        }
+
+        void add(long productId, long version, String name, String description, String category,
+                 BigDecimal price, int stock) {
+            Integer existing = ordinals.get(productId);
+            if (existing != null && versions[existing] > version) {
+                // Sự kiện cũ hơn dữ liệu đã đọc từ DB trong lúc dựng lại
+                return;
+            }
+            remove(productId);
+            if (count == productIds.length) {
+                productIds = Arrays.copyOf(productIds, count * 2);
+                versions = Arrays.copyOf(versions, count * 2);
+                categories = Arrays.copyOf(categories, count * 2);
+                prices = Arrays.copyOf(prices, count * 2);
+                stocks = Arrays.copyOf(stocks, count * 2);
+            }
+            int ordinal = count++;
+            productIds[ordinal] = productId;
+            versions[ordinal] = version;
+            prices[ordinal] = toCents(price);
+            stocks[ordinal] = stock;
+            categories[ordinal] = category == null ? null : categoryNames.computeIfAbsent(category, c -> c);
+            ordinals.put(productId, ordinal);
+
+            Map<String, Byte> fields = new HashMap<>();
+            collect(fields, name, FIELD_NAME);
+            collect(fields, category, FIELD_CATEGORY);
+            collect(fields, description, FIELD_DESCRIPTION);
+            fields.forEach((term, mask) -> postingsFor(term).add(ordinal, mask));
+        }
+
+        void setStock(long productId, int stock) {
+            Integer ordinal = ordinals.get(productId);
+            if (ordinal != null) {
+                stocks[ordinal] = stock;
+            }
+        }
+
+        void remove(long productId) {
+            Integer ordinal = ordinals.remove(productId);
+            if (ordinal != null) {
+                deleted.set(ordinal);
+                categories[ordinal] = null;
+            }
+        }
+
+        private static void collect(Map<String, Byte> fields, String text, byte field) {
+            if (text == null) {
+                return;
+            }
+            for (String term : OrderSearchIndex.normalize(text).split("[^\\p{L}\\p{N}]+")) {
+                if (!term.isEmpty()) {
+                    fields.merge(term, field, (a, b) -> (byte) (a | b));
+                }
+            }
+        }
+
+        private Postings postingsFor(String term) {
+            Postings postings = terms.get(term);
+            if (postings == null) {
+                postings = new Postings();
+                terms.put(term, postings);
+                termsByFirstChar.computeIfAbsent(term.charAt(0), c -> new ArrayList<>()).add(term);
+            }
+            return postings;
+        }
+
+        /**
+         * Giao các tập khớp của từng từ truy vấn; từ cuối được khớp theo tiền tố.
+         */
+        private Matches match(List<String> queryTerms) {
+            Matches matches = null;
+            for (int i = 0; i < queryTerms.size(); i++) {
+                Matches termMatches = expand(queryTerms.get(i), i == queryTerms.size() - 1);
+                matches = matches == null ? termMatches : matches.intersect(termMatches);
+                if (matches.size == 0) {
+                    break;
+                }
+            }
+            return matches;
+        }
+
+        Result search(List<String> queryTerms, String category, int offset, int limit) {
+            Matches matches = match(queryTerms);
+            if (matches.size == 0) {
+                return new Result(List.of(), 0, Map.of());
+            }
+
+            Map<String, Long> facets = new HashMap<>();
+            PriorityQueue<int[]> top = new PriorityQueue<>(Math.max(1, offset + limit),
+                    (a, b) -> compare(scoreOf(a), scoreOf(b), a[0], b[0]));
+            long total = 0;
+            for (int i = 0; i < matches.size; i++) {
+                int ordinal = matches.ordinals[i];
+                if (deleted.get(ordinal)) {
+                    continue;
+                }
+                String productCategory = categories[ordinal];
+                if (productCategory != null) {
+                    facets.merge(productCategory, 1L, Long::sum);
+                }
+                if (category != null && !category.equals(productCategory)) {
+                    continue;
+                }
+                total++;
+                // Heap giữ offset + limit kết quả tốt nhất; phần tử đầu heap là kết quả kém nhất
+                top.add(new int[]{ordinal, Float.floatToIntBits(matches.scores[i])});
+                if (top.size() > offset + limit) {
+                    top.poll();
+                }
+            }
+
+            List<int[]> ranked = new ArrayList<>(top);
+            ranked.sort((a, b) -> compare(scoreOf(b), scoreOf(a), b[0], a[0]));
+            List<Long> ids = new ArrayList<>(Math.min(limit, ranked.size()));
+            for (int i = offset; i < ranked.size(); i++) {
+                ids.add(productIds[ranked.get(i)[0]]);
+            }
+            return new Result(ids, total, sortFacets(facets));
+        }
+
+        List<ProductCategoryFacet> facets(List<String> queryTerms, String category) {
+            Matches matches = match(queryTerms);
+            // {số sản phẩm, số còn hàng, giá nhỏ nhất, giá lớn nhất} theo danh mục
+            Map<String, long[]> totals = new HashMap<>();
+            for (int i = 0; i < matches.size; i++) {
+                int ordinal = matches.ordinals[i];
+                String productCategory = categories[ordinal];
+                if (deleted.get(ordinal) || productCategory == null
+                        || (category != null && !category.equals(productCategory))) {
+                    continue;
+                }
+                long price = prices[ordinal];
+                long[] total = totals.computeIfAbsent(productCategory, c -> new long[]{0, 0, price, price});
+                total[0]++;
+                if (stocks[ordinal] > 0) {
+                    total[1]++;
+                }
+                total[2] = Math.min(total[2], price);
+                total[3] = Math.max(total[3], price);
+            }
+            List<ProductCategoryFacet> facets = new ArrayList<>(totals.size());
+            totals.forEach((name, total) -> facets.add(new ProductCategoryFacet(name, total[0], total[1],
+                    BigDecimal.valueOf(total[2], 2), BigDecimal.valueOf(total[3], 2))));
+            facets.sort((a, b) -> a.getProductCount() != b.getProductCount()
+                    ? Long.compare(b.getProductCount(), a.getProductCount())
+                    : a.getCategory().compareTo(b.getCategory()));
+            return facets;
+        }
+
+        private static long toCents(BigDecimal price) {
+            return price == null ? 0 : price.setScale(2, RoundingMode.HALF_UP).unscaledValue().longValue();
+        }
+
+        private static float scoreOf(int[] entry) {
+            return Float.intBitsToFloat(entry[1]);
+        }
+
+        /**
+         * So sánh theo điểm rồi theo số thứ tự (sản phẩm thêm sau đứng trước khi bằng điểm).
+         */
+        private static int compare(float scoreA, float scoreB, int ordinalA, int ordinalB) {
+            int byScore = Float.compare(scoreA, scoreB);
+            return byScore != 0 ? byScore : Integer.compare(ordinalA, ordinalB);
+        }
+
+        private static Map<String, Long> sortFacets(Map<String, Long> facets) {
+            Map<String, Long> sorted = new LinkedHashMap<>();
+            facets.entrySet().stream()
+                    .sorted(Map.Entry.<String, Long>comparingByValue().reversed().thenComparing(Map.Entry.comparingByKey()))
+                    .forEach(entry -> sorted.put(entry.getKey(), entry.getValue()));
+            return sorted;
+        }
+
+        /**
+         * Hợp các posting khớp một từ truy vấn (chính xác, tiền tố, gần đúng), giữ điểm cao nhất cho mỗi sản phẩm.
+         */
+        private Matches expand(String term, boolean prefix) {
+            List<Postings> lists = new ArrayList<>();
+            List<Float> factors = new ArrayList<>();
+            Postings exact = terms.get(term);
+            if (exact != null) {
+                lists.add(exact);
+                factors.add(MATCH_EXACT);
+            }
+            if (prefix) {
+                int added = 0;
+                for (Map.Entry<String, Postings> entry : terms.subMap(term, false, term + Character.MAX_VALUE, false).entrySet()) {
+                    if (added++ >= MAX_EXPANSIONS) {
+                        break;
+                    }
+                    lists.add(entry.getValue());
+                    factors.add(MATCH_PREFIX);
+                }
+            }
+            int maxEdits = allowedEdits(term);
+            if (maxEdits > 0) {
+                int added = 0;
+                for (String candidate : termsByFirstChar.getOrDefault(term.charAt(0), List.of())) {
+                    if (added >= MAX_EXPANSIONS) {
+                        break;
+                    }
+                    if (candidate.equals(term) || (prefix && candidate.startsWith(term))) {
+                        continue;
+                    }
+                    int distance = boundedDistance(term, candidate, maxEdits);
+                    if (distance <= maxEdits) {
+                        lists.add(terms.get(candidate));
+                        factors.add(distance == 1 ? MATCH_FUZZY_1 : MATCH_FUZZY_2);
+                        added++;
+                    }
+                }
+            }
+
+            int total = 0;
+            for (Postings postings : lists) {
+                total += postings.size;
+            }
+            // Gói (số thứ tự, điểm) vào long để sắp xếp nguyên thủy; điểm dương nên thứ tự bit = thứ tự số
+            long[] packed = new long[total];
+            int n = 0;
+            for (int i = 0; i < lists.size(); i++) {
+                Postings postings = lists.get(i);
+                float factor = factors.get(i);
+                for (int j = 0; j < postings.size; j++) {
+                    float score = fieldWeight(postings.masks[j]) * factor;
+                    packed[n++] = ((long) postings.ordinals[j] << 32) | (Float.floatToIntBits(score) & 0xFFFFFFFFL);
+                }
+            }
+            Arrays.sort(packed);
+            Matches matches = new Matches(total);
+            for (int i = 0; i < total; i++) {
+                int ordinal = (int) (packed[i] >>> 32);
+                float score = Float.intBitsToFloat((int) packed[i]);
+                if (matches.size > 0 && matches.ordinals[matches.size - 1] == ordinal) {
+                    // Cùng sản phẩm: phần tử sau có điểm lớn hơn
+                    matches.scores[matches.size - 1] = score;
+                } else {
+                    matches.ordinals[matches.size] = ordinal;
+                    matches.scores[matches.size] = score;
+                    matches.size++;
+                }
+            }
+            // idf theo số sản phẩm khớp từ truy vấn (không theo từng từ mở rộng) để khớp chính xác luôn đứng trước
+            float idf = (float) Math.log(1.0 + (double) Math.max(1, size()) / Math.max(1, matches.size));
+            for (int i = 0; i < matches.size; i++) {
+                matches.scores[i] *= idf;
+            }
+            return matches;
+        }
+
+        void write(DataOutputStream out) throws IOException {
+            out.writeInt(count);
+            for (int i = 0; i < count; i++) {
+                out.writeLong(productIds[i]);
+                out.writeLong(versions[i]);
+                out.writeBoolean(deleted.get(i));
+                out.writeUTF(categories[i] == null ? "" : categories[i]);
+                out.writeLong(prices[i]);
+                out.writeInt(stocks[i]);
+            }
+            out.writeInt(terms.size());
+            for (Map.Entry<String, Postings> entry : terms.entrySet()) {
+                Postings postings = entry.getValue();
+                out.writeUTF(entry.getKey());
+                out.writeInt(postings.size);
+                for (int i = 0; i < postings.size; i++) {
+                    out.writeInt(postings.ordinals[i]);
+                    out.writeByte(postings.masks[i]);
+                }
+            }
+        }
+
+        static Segment read(DataInputStream in) throws IOException {
+            Segment segment = new Segment();
+            int count = in.readInt();
+            segment.productIds = new long[Math.max(1024, count)];
+            segment.versions = new long[Math.max(1024, count)];
+            segment.categories = new String[Math.max(1024, count)];
+            segment.prices = new long[Math.max(1024, count)];
+            segment.stocks = new int[Math.max(1024, count)];
+            for (int i = 0; i < count; i++) {
+                segment.productIds[i] = in.readLong();
+                segment.versions[i] = in.readLong();
+                boolean isDeleted = in.readBoolean();
+                String category = in.readUTF();
+                segment.prices[i] = in.readLong();
+                segment.stocks[i] = in.readInt();
+                if (isDeleted) {
+                    segment.deleted.set(i);
+                } else {
+                    segment.categories[i] = category.isEmpty() ? null
+                            : segment.categoryNames.computeIfAbsent(category, c -> c);
+                    segment.ordinals.put(segment.productIds[i], i);
+                }
+            }
+            segment.count = count;
+            int termCount = in.readInt();
+            for (int t = 0; t < termCount; t++) {
+                Postings postings = segment.postingsFor(in.readUTF());
+                int size = in.readInt();
+                postings.ordinals = new int[Math.max(1, size)];
+                postings.masks = new byte[Math.max(1, size)];
+                for (int i = 0; i < size; i++) {
+                    postings.ordinals[i] = in.readInt();
+                    postings.masks[i] = in.readByte();
+                }
+                postings.size = size;
+            }
+            return segment;
+        }
+    }
+
+    /**
+     * Posting của một từ: số thứ tự tăng dần và bitmask trường chứa từ đó.
+     */
+    private static final class Postings {
+        private int[] ordinals = new int[2];
+        private byte[] masks = new byte[2];
+        private int size;
+
+        void add(int ordinal, byte mask) {
+            if (size == ordinals.length) {
+                int capacity = size + (size >> 1) + 1;
+                ordinals = Arrays.copyOf(ordinals, capacity);
+                masks = Arrays.copyOf(masks, capacity);
+            }
+            ordinals[size] = ordinal;
+            masks[size] = mask;
+            size++;
+        }
+    }
+
+    /**
+     * Tập sản phẩm khớp kèm điểm, số thứ tự tăng dần.
+     */
+    private static final class Matches {
+        private final int[] ordinals;
+        private final float[] scores;
+        private int size;
+
+        Matches(int capacity) {
+            ordinals = new int[capacity];
+            scores = new float[capacity];
+        }
+
+        /**
+         * Giao tại chỗ với {@code other}, cộng điểm.
+         */
+        Matches intersect(Matches other) {
+            int out = 0;
+            int j = 0;
+            for (int i = 0; i < size && j < other.size; i++) {
+                int ordinal = ordinals[i];
+                while (j < other.size && other.ordinals[j] < ordinal) {
+                    j++;
+                }
+                if (j < other.size && other.ordinals[j] == ordinal) {
+                    ordinals[out] = ordinal;
+                    scores[out] = scores[i] + other.scores[j];
+                    out++;
+                }
+            }
+            size = out;
+            return this;
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package com.example.demo.service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Nhật ký giữ hàng chỉ ghi nối (append-only) của {@link InventoryLedger}. Mỗi dòng là
+ * {@code seq,productId,delta}. Khi ledger ghi xuống DB, file hiện tại được "niêm phong" thành
+ * {@code segment-<seq cuối>.log} và bị xóa sau khi transaction ghi delta commit.
+ * Không thread-safe: ledger gọi các hàm này dưới khóa của nó.
+ */
+final class ReservationLog {
+
+    private static final String CURRENT = "current.log";
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".log";
+
+    record Entry(long sequence, long productId, long delta) {
+    }
+
+    private final Path directory;
+    private FileChannel channel;
+    private long sequence;
+    private boolean dirty;
+
+    ReservationLog(Path directory) {
+        this.directory = directory;
+        try {
+            Files.createDirectories(directory);
+            this.channel = open();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot open reservation log in " + directory, e);
+        }
+    }
+
+    long append(long productId, long delta) {
+        long seq = ++sequence;
+        byte[] line = (seq + "," + productId + "," + delta + "\n").getBytes(StandardCharsets.US_ASCII);
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(line);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot append to reservation log", e);
+        }
+        dirty = true;
+        return seq;
+    }
+
+    long sequence() {
+        return sequence;
+    }
+
+    void startAt(long sequence) {
+        this.sequence = sequence;
+    }
+
+    /**
+     * Đẩy dữ liệu đã ghi xuống đĩa (fsync).
+     */
+    void force() throws IOException {
+        if (dirty) {
+            channel.force(false);
+            dirty = false;
+        }
+    }
+
+    /**
+     * Đóng file hiện tại thành một segment và mở file mới. Trả về seq cuối nằm trong segment.
+     */
+    long seal() throws IOException {
+        force();
+        if (channel.size() == 0) {
+            return sequence;
+        }
+        channel.close();
+        Files.move(directory.resolve(CURRENT), directory.resolve(SEGMENT_PREFIX + sequence + SEGMENT_SUFFIX),
+                StandardCopyOption.ATOMIC_MOVE);
+        channel = open();
+        return sequence;
+    }
+
+    void deleteSegmentsUpTo(long sequence) throws IOException {
+        for (Path segment : segments()) {
+            if (segmentSequence(segment) <= sequence) {
+                Files.deleteIfExists(segment);
+            }
+        }
+    }
+
+    /**
+     * Đọc mọi bản ghi còn trên đĩa (các segment và file hiện tại). Dòng ghi dở ở cuối file bị bỏ qua.
+     */
+    List<Entry> readAll() throws IOException {
+        List<Path> files = new ArrayList<>(segments());
+        files.add(directory.resolve(CURRENT));
+        List<Entry> entries = new ArrayList<>();
+        for (Path file : files) {
+            if (!Files.exists(file)) {
+                continue;
+            }
+            try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.US_ASCII)) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    String[] parts = line.split(",");
+                    if (parts.length != 3) {
+                        continue;
+                    }
+                    try {
+                        entries.add(new Entry(Long.parseLong(parts[0]), Long.parseLong(parts[1]), Long.parseLong(parts[2])));
+                    } catch (NumberFormatException e) {
+                        // dòng ghi dở khi tiến trình dừng đột ngột
+                    }
+                }
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * Xóa toàn bộ nhật ký sau khi đã khôi phục vào DB.
+     */
+    void truncate() throws IOException {
+        for (Path segment : segments()) {
+            Files.deleteIfExists(segment);
+        }
+        channel.truncate(0);
+        channel.force(true);
+        dirty = false;
+    }
+
+    void close() throws IOException {
+        force();
+        channel.close();
+    }
+
+    private FileChannel open() throws IOException {
+        return FileChannel.open(directory.resolve(CURRENT),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    private List<Path> segments() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(path -> {
+                        String name = path.getFileName().toString();
+                        return name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX);
+                    })
+                    .sorted((a, b) -> Long.compare(segmentSequence(a), segmentSequence(b)))
+                    .toList();
+        }
+    }
+
+    private static long segmentSequence(Path segment) {
+        String name = segment.getFileName().toString();
+        return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+}
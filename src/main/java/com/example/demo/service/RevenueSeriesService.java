@@ -0,0 +1,305 @@
+package com.example.demo.service;
+
+import com.example.demo.dto.RevenueGranularity;
+import com.example.demo.dto.RevenuePointDTO;
+import com.example.demo.dto.RevenueSeriesDTO;
+import com.example.demo.entity.OrderDailyStat;
+import com.example.demo.entity.OrderStatus;
+import com.example.demo.repository.OrderDailyStatRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.time.temporal.IsoFields;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * Chuỗi doanh thu theo thời gian, đọc từ bảng {@code order_daily_stats} đã gom theo ngày.
+ * Các thay đổi đơn hàng được cộng vào một "đuôi" trong bộ nhớ sau khi commit và được ghi
+ * xuống bảng theo lô định kỳ; khi truy vấn, phần đuôi và phần đang ghi (chưa commit xuống bảng) được cộng
+ * thêm vào kết quả.
+ */
+@Service
+public class RevenueSeriesService {
+
+    private static final Logger logger = LoggerFactory.getLogger(RevenueSeriesService.class);
+
+    private static final int MAX_RANGE_DAYS = 3660;
+
+    private static final String UPSERT_SQL = "INSERT INTO order_daily_stats " +
+            "(day, status, payment_method, order_count, revenue) VALUES (?, ?, ?, ?, ?) " +
+            "ON DUPLICATE KEY UPDATE order_count = order_count + VALUES(order_count), " +
+            "revenue = revenue + VALUES(revenue)";
+
+    private final OrderDailyStatRepository dailyStatRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    // Writer cộng delta khi giữ phần chung của rào chắn, flusher/rebuild tráo bảng đuôi khi giữ phần độc quyền
+    private final CommitFence fence = new CommitFence();
+    // flush và rebuild không chạy chồng lên nhau
+    private final Object flushLock = new Object();
+    private volatile Map<BucketKey, Bucket> tail = new ConcurrentHashMap<>();
+    private volatile Map<BucketKey, Bucket> inFlight = Map.of();
+
+    public RevenueSeriesService(OrderDailyStatRepository dailyStatRepository,
+                                JdbcTemplate jdbcTemplate,
+                                PlatformTransactionManager transactionManager) {
+        this.dailyStatRepository = dailyStatRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+    }
+
+    public void recordOrderCreated(LocalDateTime createdAt, OrderStatus status, String paymentMethod, BigDecimal total) {
+        fence.afterCommit(() -> add(createdAt, status, paymentMethod, 1, amount(total)));
+    }
+
+    public void recordOrderDeleted(LocalDateTime createdAt, OrderStatus status, String paymentMethod, BigDecimal total) {
+        fence.afterCommit(() -> add(createdAt, status, paymentMethod, -1, negate(total)));
+    }
+
+    public void recordStatusChanged(LocalDateTime createdAt, String paymentMethod, BigDecimal total,
+                                    OrderStatus from, OrderStatus to) {
+        if (from == to) {
+            return;
+        }
+        fence.afterCommit(() -> {
+            add(createdAt, from, paymentMethod, -1, negate(total));
+            add(createdAt, to, paymentMethod, 1, amount(total));
+        });
+    }
+
+    public RevenueSeriesDTO getSeries(LocalDate from, LocalDate to, RevenueGranularity granularity,
+                                      Collection<OrderStatus> statuses, boolean byPaymentMethod) {
+        if (from.isAfter(to)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Khoảng thời gian không hợp lệ");
+        }
+        if (ChronoUnit.DAYS.between(from, to) > MAX_RANGE_DAYS) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Khoảng thời gian quá dài");
+        }
+        Set<String> statusFilter = (statuses == null || statuses.isEmpty()
+                ? EnumSet.allOf(OrderStatus.class) : EnumSet.copyOf(statuses))
+                .stream().map(Enum::name).collect(Collectors.toSet());
+
+        // Khởi tạo sẵn mọi bucket để các khoảng trống có giá trị 0
+        TreeMap<LocalDate, RevenuePointDTO> points = new TreeMap<>();
+        for (LocalDate start = bucketStart(from, granularity); !start.isAfter(to); start = next(start, granularity)) {
+            points.put(start, RevenuePointDTO.builder()
+                    .periodStart(start)
+                    .label(label(start, granularity))
+                    .revenue(BigDecimal.ZERO)
+                    .revenueByPaymentMethod(byPaymentMethod ? new TreeMap<>() : null)
+                    .build());
+        }
+
+        fence.read(() -> {
+            for (OrderDailyStat row : dailyStatRepository.findByDayBetween(from, to)) {
+                if (statusFilter.contains(row.getStatus())) {
+                    accumulate(points, granularity, row.getDay(), row.getPaymentMethod(),
+                            row.getOrderCount(), row.getRevenue());
+                }
+            }
+            for (Map<BucketKey, Bucket> pending : List.of(inFlight, tail)) {
+                pending.forEach((key, bucket) -> {
+                    if (!key.day().isBefore(from) && !key.day().isAfter(to) && statusFilter.contains(key.status())) {
+                        synchronized (bucket) {
+                            accumulate(points, granularity, key.day(), key.paymentMethod(),
+                                    bucket.count, bucket.revenue);
+                        }
+                    }
+                });
+            }
+            return null;
+        });
+
+        long totalOrders = 0;
+        BigDecimal totalRevenue = BigDecimal.ZERO;
+        for (RevenuePointDTO point : points.values()) {
+            totalOrders += point.getOrderCount();
+            totalRevenue = totalRevenue.add(point.getRevenue());
+        }
+        return RevenueSeriesDTO.builder()
+                .from(from)
+                .to(to)
+                .granularity(granularity)
+                .statuses(statusFilter.stream().sorted().collect(Collectors.toList()))
+                .totalOrders(totalOrders)
+                .totalRevenue(totalRevenue)
+                .points(new ArrayList<>(points.values()))
+                .build();
+    }
+
+    /**
+     * Ghi phần đuôi trong bộ nhớ xuống bảng theo một lô upsert. Cho tới khi lô commit, phần đã bỏ khỏi đuôi
+     * vẫn được cộng khi truy vấn; lỗi thì được trả lại phần đuôi để lần sau ghi tiếp.
+     */
+    @Scheduled(fixedDelayString = "${app.dashboard.revenue.flush-interval-ms:10000}")
+    public void flush() {
+        synchronized (flushLock) {
+            if (tail.isEmpty()) {
+                return;
+            }
+            try {
+                transactionTemplate.executeWithoutResult(status -> {
+                    fence.publishOnCommit(this::completeFlush);
+                    Map<BucketKey, Bucket> drained = fence.exclusive(this::drainTail);
+                    List<Object[]> batch = new ArrayList<>(drained.size());
+                    drained.forEach((key, bucket) -> {
+                        if (bucket.count != 0 || bucket.revenue.signum() != 0) {
+                            batch.add(new Object[]{Date.valueOf(key.day()), key.status(), key.paymentMethod(),
+                                    bucket.count, bucket.revenue});
+                        }
+                    });
+                    jdbcTemplate.batchUpdate(UPSERT_SQL, batch);
+                });
+            } catch (RuntimeException e) {
+                logger.warn("Failed to flush revenue tail: {}", e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Dựng lại bảng gom theo ngày từ bảng orders (đối soát). Giữ flushLock để không có lượt flush nào
+     * ghi chồng lên sau DELETE; snapshot được mở cùng lúc bỏ phần đuôi (xem {@link CommitFence}) nên
+     * đơn hàng commit trong lúc dựng lại chỉ được tính một lần. Bảng cũ giữ nguyên tới khi commit nên phần
+     * đuôi đã bỏ vẫn được cộng khi truy vấn, lỗi thì được trả lại.
+     */
+    @Scheduled(cron = "${app.dashboard.rollup.reconcile-cron:0 30 3 * * *}")
+    public void rebuild() {
+        synchronized (flushLock) {
+            transactionTemplate.executeWithoutResult(status -> {
+                fence.publishOnCommit(this::completeFlush);
+                fence.exclusive(() -> {
+                    // Lần đọc đầu tiên trong transaction REPEATABLE READ tạo snapshot
+                    jdbcTemplate.queryForList("SELECT id FROM orders LIMIT 1");
+                    return drainTail();
+                });
+                // Đọc nhất quán theo snapshot (INSERT ... SELECT sẽ đọc bản mới nhất và khóa dòng orders)
+                List<Object[]> rows = jdbcTemplate.query(
+                        "SELECT DATE(created_at), status, payment_method, COUNT(*), " +
+                        "COALESCE(SUM(total_price), 0) FROM orders WHERE created_at IS NOT NULL " +
+                        "GROUP BY DATE(created_at), status, payment_method",
+                        (rs, rowNum) -> new Object[]{rs.getDate(1), rs.getString(2),
+                                rs.getString(3) != null ? rs.getString(3) : "", rs.getLong(4), rs.getBigDecimal(5)});
+                jdbcTemplate.update("DELETE FROM order_daily_stats");
+                jdbcTemplate.batchUpdate(UPSERT_SQL, rows);
+            });
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuildIfEmpty() {
+        if (dailyStatRepository.count() == 0) {
+            rebuild();
+        }
+    }
+
+    private void add(LocalDateTime createdAt, OrderStatus status, String paymentMethod, long count, BigDecimal revenue) {
+        LocalDate day = (createdAt != null ? createdAt : LocalDateTime.now()).toLocalDate();
+        add(new BucketKey(day, status.name(), paymentMethod != null ? paymentMethod : ""), count, revenue);
+    }
+
+    private void add(BucketKey key, long count, BigDecimal revenue) {
+        Bucket bucket = tail.computeIfAbsent(key, k -> new Bucket());
+        synchronized (bucket) {
+            bucket.count += count;
+            bucket.revenue = bucket.revenue.add(revenue);
+        }
+    }
+
+    /**
+     * Chuyển phần đuôi sang phần đang ghi; gọi trong {@link CommitFence#exclusive(java.util.function.Supplier)}.
+     */
+    private Map<BucketKey, Bucket> drainTail() {
+        Map<BucketKey, Bucket> drained = tail;
+        tail = new ConcurrentHashMap<>();
+        inFlight = drained;
+        return drained;
+    }
+
+    private void completeFlush(boolean committed) {
+        Map<BucketKey, Bucket> drained = inFlight;
+        inFlight = Map.of();
+        if (!committed) {
+            fence.shared(() -> drained.forEach((key, bucket) -> add(key, bucket.count, bucket.revenue)));
+        }
+    }
+
+    private static void accumulate(TreeMap<LocalDate, RevenuePointDTO> points, RevenueGranularity granularity,
+                                   LocalDate day, String paymentMethod, long count, BigDecimal revenue) {
+        RevenuePointDTO point = points.get(bucketStart(day, granularity));
+        if (point == null) {
+            return;
+        }
+        point.setOrderCount(point.getOrderCount() + count);
+        point.setRevenue(point.getRevenue().add(revenue));
+        if (point.getRevenueByPaymentMethod() != null) {
+            point.getRevenueByPaymentMethod().merge(paymentMethod, revenue, BigDecimal::add);
+        }
+    }
+
+    private static LocalDate bucketStart(LocalDate day, RevenueGranularity granularity) {
+        return switch (granularity) {
+            case DAY -> day;
+            case WEEK -> day.with(DayOfWeek.MONDAY);
+            case MONTH -> day.withDayOfMonth(1);
+        };
+    }
+
+    private static LocalDate next(LocalDate start, RevenueGranularity granularity) {
+        return switch (granularity) {
+            case DAY -> start.plusDays(1);
+            case WEEK -> start.plusWeeks(1);
+            case MONTH -> start.plusMonths(1);
+        };
+    }
+
+    private static String label(LocalDate start, RevenueGranularity granularity) {
+        return switch (granularity) {
+            case DAY -> start.toString();
+            case WEEK -> String.format("%d-W%02d",
+                    start.get(IsoFields.WEEK_BASED_YEAR), start.get(IsoFields.WEEK_OF_WEEK_BASED_YEAR));
+            case MONTH -> String.format("%d-%02d", start.getYear(), start.getMonthValue());
+        };
+    }
+
+    private static BigDecimal negate(BigDecimal value) {
+        return amount(value).negate();
+    }
+
+    private static BigDecimal amount(BigDecimal value) {
+        return value != null ? value : BigDecimal.ZERO;
+    }
+
+    private record BucketKey(LocalDate day, String status, String paymentMethod) {
+    }
+
+    private static final class Bucket {
+        private long count;
+        private BigDecimal revenue = BigDecimal.ZERO;
+    }
+}
@@ -0,0 +1,49 @@
+package com.example.demo.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Chạy cùng một tác vụ trên nhiều thread, bắt đầu cùng lúc.
+ */
+final class ConcurrentLoad {
+
+    private ConcurrentLoad() {
+    }
+
+    /**
+     * Chạy {@code task} {@code perThread} lần trên mỗi thread; trả về số ms. Ngoại lệ của bất kỳ thread nào
+     * được ném lại ở đây.
+     */
+    static long run(int threads, int perThread, Runnable task) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Void>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            Callable<Void> worker = () -> {
+                start.await();
+                for (int i = 0; i < perThread; i++) {
+                    task.run();
+                }
+                return null;
+            };
+            futures.add(executor.submit(worker));
+        }
+        long started = System.nanoTime();
+        start.countDown();
+        try {
+            for (Future<Void> future : futures) {
+                future.get(2, TimeUnit.MINUTES);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        return (System.nanoTime() - started) / 1_000_000;
+    }
+}
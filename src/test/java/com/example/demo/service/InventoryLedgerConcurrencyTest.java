@@ -0,0 +1,218 @@
+package com.example.demo.service;
+
+import com.example.demo.entity.InventoryLedgerCheckpoint;
+import com.example.demo.repository.InventoryLedgerCheckpointRepository;
+import com.example.demo.repository.ProductCategoryStatsRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.server.ResponseStatusException;
+
+import javax.sql.DataSource;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Nhiều thread cùng đặt một sản phẩm đang nằm trong {@link InventoryLedger}: số đã bán không vượt tồn kho,
+ * kể cả khi có đơn rollback, khi sản phẩm bị hạ/nâng cấp liên tục và khi khởi động lại trước lần flush.
+ */
+class InventoryLedgerConcurrencyTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(InventoryLedgerConcurrencyTest.class);
+
+    private static final long PRODUCT = 1L;
+    private static final int STOCK = 500;
+    private static final int THREADS = 32;
+    private static final int ORDERS_PER_THREAD = 50;
+
+    @TempDir
+    Path logDirectory;
+
+    private JdbcTemplate jdbcTemplate;
+    private DataSourceTransactionManager transactionManager;
+    private TransactionTemplate transactionTemplate;
+    private ProductCategoryStatsService categoryStatsService;
+    private InventoryLedgerCheckpointRepository checkpointRepository;
+    private MeterRegistry meterRegistry;
+    private InventoryLedger ledger;
+    private InventoryService inventoryService;
+
+    @BeforeEach
+    void setUp() {
+        DataSource dataSource = InventoryTestDatabase.create();
+        transactionManager = new DataSourceTransactionManager(dataSource);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        categoryStatsService = new ProductCategoryStatsService(
+                mock(ProductCategoryStatsRepository.class), jdbcTemplate, event -> { }, transactionManager);
+        // Checkpoint đọc từ bảng mà ledger ghi cùng transaction với lô delta
+        checkpointRepository = mock(InventoryLedgerCheckpointRepository.class);
+        when(checkpointRepository.findById(InventoryLedgerCheckpoint.SINGLETON_ID)).thenAnswer(invocation ->
+                jdbcTemplate.queryForList("SELECT last_sequence FROM inventory_ledger_checkpoint WHERE id = ?",
+                        Long.class, InventoryLedgerCheckpoint.SINGLETON_ID).stream().findFirst().map(sequence -> {
+                    InventoryLedgerCheckpoint checkpoint = new InventoryLedgerCheckpoint();
+                    checkpoint.setId(InventoryLedgerCheckpoint.SINGLETON_ID);
+                    checkpoint.setLastSequence(sequence);
+                    return checkpoint;
+                }));
+        InventoryTestDatabase.insertProduct(jdbcTemplate, PRODUCT, STOCK);
+        startLedger(0);
+    }
+
+    @AfterEach
+    void tearDown() {
+        ledger.stop();
+    }
+
+    @Test
+    void concurrentHotReservationsNeverOversell() throws Exception {
+        promote();
+        AtomicInteger sold = new AtomicInteger(1);
+        AtomicInteger rejected = new AtomicInteger();
+
+        long elapsed = ConcurrentLoad.run(THREADS, ORDERS_PER_THREAD, () -> {
+            int quantity = ThreadLocalRandom.current().nextInt(1, 4);
+            boolean rollback = ThreadLocalRandom.current().nextInt(5) == 0;
+            try {
+                transactionTemplate.executeWithoutResult(status -> {
+                    inventoryService.reserve(Map.of(PRODUCT, quantity), productId -> "#" + productId);
+                    if (rollback) {
+                        // Đơn lỗi sau khi đã giữ hàng: hàng phải được trả lại
+                        status.setRollbackOnly();
+                    }
+                });
+                if (!rollback) {
+                    sold.addAndGet(quantity);
+                }
+            } catch (ResponseStatusException e) {
+                assertThat(e.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+                rejected.incrementAndGet();
+            }
+        });
+
+        logger.info("{} in-memory orders on one hot product from {} threads in {} ms ({} rejected)",
+                THREADS * ORDERS_PER_THREAD, THREADS, elapsed, rejected.get());
+        assertThat(hotProducts()).isEqualTo(1);
+        assertThat(sold.get()).isLessThanOrEqualTo(STOCK);
+        assertThat(STOCK - sold.get()).isLessThan(3);
+        ledger.flush();
+        assertThat(InventoryTestDatabase.stock(jdbcTemplate, PRODUCT)).isEqualTo(STOCK - sold.get());
+    }
+
+    @Test
+    void reservationsStayConsistentWhileProductIsDemotedAndPromoted() throws Exception {
+        ledger.stop();
+        // Mỗi chu kỳ hạ mọi sản phẩm rồi nâng lại sản phẩm vừa được đặt
+        startLedger(Long.MAX_VALUE);
+        promote();
+        AtomicInteger sold = new AtomicInteger(1);
+        AtomicBoolean done = new AtomicBoolean();
+        Thread rebalancer = new Thread(() -> {
+            while (!done.get()) {
+                ledger.rebalance();
+                ledger.flush();
+            }
+        });
+        rebalancer.start();
+        try {
+            ConcurrentLoad.run(THREADS, ORDERS_PER_THREAD, () -> {
+                try {
+                    transactionTemplate.executeWithoutResult(status ->
+                            inventoryService.reserve(Map.of(PRODUCT, 1), productId -> "#" + productId));
+                    sold.incrementAndGet();
+                } catch (ResponseStatusException e) {
+                    assertThat(e.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+                }
+            });
+        } finally {
+            done.set(true);
+            rebalancer.join();
+        }
+
+        assertThat(sold.get()).isLessThanOrEqualTo(STOCK);
+        ledger.flush();
+        assertThat(InventoryTestDatabase.stock(jdbcTemplate, PRODUCT)).isEqualTo(STOCK - sold.get());
+    }
+
+    @Test
+    void adminOverwriteDemotesAfterFlushAndBlocksPromotion() {
+        promote();
+        transactionTemplate.executeWithoutResult(status ->
+                inventoryService.reserve(Map.of(PRODUCT, 10), productId -> "#" + productId));
+
+        transactionTemplate.executeWithoutResult(status -> {
+            ledger.demoteUntilCompletion(List.of(PRODUCT));
+            // Delta trong bộ nhớ đã xuống DB trước khi admin ghi đè
+            assertThat(InventoryTestDatabase.stock(jdbcTemplate, PRODUCT)).isEqualTo(STOCK - 11);
+            assertThat(hotProducts()).isZero();
+            // Đơn 10 sản phẩm ở trên đủ ngưỡng nâng cấp nhưng sản phẩm đang bị admin ghi đè
+            ledger.rebalance();
+            assertThat(hotProducts()).isZero();
+            jdbcTemplate.update("UPDATE products SET stock = 50 WHERE id = ?", PRODUCT);
+        });
+
+        // Nâng cấp lại sau khi admin commit thì đọc số tồn kho mới
+        promote();
+        transactionTemplate.executeWithoutResult(status ->
+                inventoryService.reserve(Map.of(PRODUCT, 5), productId -> "#" + productId));
+        ledger.flush();
+        assertThat(InventoryTestDatabase.stock(jdbcTemplate, PRODUCT)).isEqualTo(50 - 1 - 5);
+    }
+
+    @Test
+    void restartReplaysReservationsNotYetFlushed() {
+        promote();
+        for (int i = 0; i < 10; i++) {
+            transactionTemplate.executeWithoutResult(status ->
+                    inventoryService.reserve(Map.of(PRODUCT, 2), productId -> "#" + productId));
+        }
+        ledger.flush();
+        for (int i = 0; i < 5; i++) {
+            transactionTemplate.executeWithoutResult(status ->
+                    inventoryService.reserve(Map.of(PRODUCT, 3), productId -> "#" + productId));
+        }
+
+        // Sự cố: ledger cũ không kịp flush, ledger mới khôi phục từ nhật ký
+        startLedger(0);
+        assertThat(InventoryTestDatabase.stock(jdbcTemplate, PRODUCT)).isEqualTo(STOCK - 1 - 20 - 15);
+    }
+
+    private void startLedger(long coldThreshold) {
+        meterRegistry = new SimpleMeterRegistry();
+        ledger = new InventoryLedger(jdbcTemplate, transactionManager, checkpointRepository, categoryStatsService,
+                meterRegistry, true, logDirectory.toString(), 1, coldThreshold, 1000);
+        ledger.start();
+        inventoryService = new InventoryService(jdbcTemplate, ledger, categoryStatsService);
+    }
+
+    /**
+     * Một đơn (1 sản phẩm) tạo nhu cầu rồi nâng sản phẩm lên bộ nhớ.
+     */
+    private void promote() {
+        transactionTemplate.executeWithoutResult(status ->
+                inventoryService.reserve(Map.of(PRODUCT, 1), productId -> "#" + productId));
+        ledger.rebalance();
+        assertThat(hotProducts()).isEqualTo(1);
+    }
+
+    private double hotProducts() {
+        return meterRegistry.get("inventory.ledger.hot_products").gauge().value();
+    }
+}
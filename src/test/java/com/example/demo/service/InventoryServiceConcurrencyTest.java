@@ -0,0 +1,127 @@
+package com.example.demo.service;
+
+import com.example.demo.repository.InventoryLedgerCheckpointRepository;
+import com.example.demo.repository.ProductCategoryStatsRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.server.ResponseStatusException;
+
+import javax.sql.DataSource;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Nhiều thread cùng đặt một sản phẩm nóng qua đường DB (UPDATE có điều kiện theo lô đã sắp):
+ * số đã bán đúng bằng tồn kho ban đầu, không bán vượt và không deadlock.
+ */
+class InventoryServiceConcurrencyTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(InventoryServiceConcurrencyTest.class);
+
+    private static final long HOT_PRODUCT = 1L;
+    private static final long OTHER_PRODUCT = 2L;
+    private static final int HOT_STOCK = 500;
+    private static final int OTHER_STOCK = 100_000;
+    private static final int THREADS = 32;
+    private static final int ORDERS_PER_THREAD = 50;
+
+    @TempDir
+    Path logDirectory;
+
+    private JdbcTemplate jdbcTemplate;
+    private TransactionTemplate transactionTemplate;
+    private InventoryService inventoryService;
+
+    @BeforeEach
+    void setUp() {
+        DataSource dataSource = InventoryTestDatabase.create();
+        DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(dataSource);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        ProductCategoryStatsService categoryStatsService = new ProductCategoryStatsService(
+                mock(ProductCategoryStatsRepository.class), jdbcTemplate, event -> { }, transactionManager);
+        InventoryLedger ledger = new InventoryLedger(jdbcTemplate, transactionManager,
+                mock(InventoryLedgerCheckpointRepository.class), categoryStatsService, new SimpleMeterRegistry(),
+                false, logDirectory.toString(), 20, 2, 1000);
+        inventoryService = new InventoryService(jdbcTemplate, ledger, categoryStatsService);
+        InventoryTestDatabase.insertProduct(jdbcTemplate, HOT_PRODUCT, HOT_STOCK);
+        InventoryTestDatabase.insertProduct(jdbcTemplate, OTHER_PRODUCT, OTHER_STOCK);
+    }
+
+    @Test
+    void concurrentOrdersNeverOversellHotProduct() throws Exception {
+        AtomicInteger hotSold = new AtomicInteger();
+        AtomicInteger otherSold = new AtomicInteger();
+        AtomicInteger rejected = new AtomicInteger();
+
+        // Lỗi khác 400 (deadlock, hết thời gian chờ khóa) làm test thất bại
+        long elapsed = ConcurrentLoad.run(THREADS, ORDERS_PER_THREAD, () -> {
+            // Thứ tự sản phẩm trong đơn khác nhau giữa các thread: lô đã sắp theo id nên không deadlock
+            int quantity = ThreadLocalRandom.current().nextInt(1, 4);
+            Map<Long, Integer> order = new LinkedHashMap<>();
+            if (ThreadLocalRandom.current().nextBoolean()) {
+                order.put(OTHER_PRODUCT, 1);
+                order.put(HOT_PRODUCT, quantity);
+            } else {
+                order.put(HOT_PRODUCT, quantity);
+                order.put(OTHER_PRODUCT, 1);
+            }
+            try {
+                transactionTemplate.executeWithoutResult(status ->
+                        inventoryService.reserve(order, productId -> "#" + productId));
+                hotSold.addAndGet(quantity);
+                otherSold.incrementAndGet();
+            } catch (ResponseStatusException e) {
+                assertThat(e.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+                rejected.incrementAndGet();
+            }
+        });
+
+        logger.info("{} orders on one hot product from {} threads in {} ms ({} rejected)",
+                THREADS * ORDERS_PER_THREAD, THREADS, elapsed, rejected.get());
+        // Nhu cầu (trung bình 2 x 1600) vượt tồn kho nên sản phẩm nóng phải bán hết, không hơn
+        assertThat(hotSold.get()).isLessThanOrEqualTo(HOT_STOCK);
+        assertThat(HOT_STOCK - hotSold.get()).isLessThan(3);
+        assertThat(InventoryTestDatabase.stock(jdbcTemplate, HOT_PRODUCT)).isEqualTo(HOT_STOCK - hotSold.get());
+        // Đơn bị từ chối rollback cả dòng của sản phẩm còn lại
+        assertThat(InventoryTestDatabase.stock(jdbcTemplate, OTHER_PRODUCT)).isEqualTo(OTHER_STOCK - otherSold.get());
+    }
+
+    @Test
+    void concurrentReserveAndReleaseKeepStockConsistent() throws Exception {
+        AtomicInteger sold = new AtomicInteger();
+
+        ConcurrentLoad.run(THREADS, ORDERS_PER_THREAD, () -> {
+            Map<Long, Integer> order = Map.of(HOT_PRODUCT, 1);
+            try {
+                transactionTemplate.executeWithoutResult(status ->
+                        inventoryService.reserve(order, productId -> "#" + productId));
+            } catch (ResponseStatusException e) {
+                return;
+            }
+            // Một nửa số đơn bị xóa ngay sau khi đặt
+            if (ThreadLocalRandom.current().nextBoolean()) {
+                transactionTemplate.executeWithoutResult(status -> inventoryService.release(order));
+            } else {
+                sold.incrementAndGet();
+            }
+        });
+
+        assertThat(sold.get()).isLessThanOrEqualTo(HOT_STOCK);
+        assertThat(InventoryTestDatabase.stock(jdbcTemplate, HOT_PRODUCT)).isEqualTo(HOT_STOCK - sold.get());
+    }
+}
@@ -0,0 +1,37 @@
+package com.example.demo.service;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.util.UUID;
+
+/**
+ * CSDL H2 (chế độ MySQL) trong bộ nhớ với các bảng mà đường giữ hàng dùng tới.
+ */
+final class InventoryTestDatabase {
+
+    private InventoryTestDatabase() {
+    }
+
+    static DataSource create() {
+        JdbcDataSource dataSource = new JdbcDataSource();
+        // LOCK_TIMEOUT lớn: các thread tranh cùng một dòng phải chờ chứ không lỗi
+        dataSource.setURL("jdbc:h2:mem:" + UUID.randomUUID() + ";MODE=MySQL;DB_CLOSE_DELAY=-1;LOCK_TIMEOUT=60000");
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("CREATE TABLE products (id BIGINT PRIMARY KEY, name VARCHAR(255) NOT NULL, " +
+                "price DECIMAL(19, 2) NOT NULL, stock INT NOT NULL, category VARCHAR(255) NOT NULL, " +
+                "version BIGINT NOT NULL DEFAULT 0)");
+        jdbcTemplate.execute("CREATE TABLE inventory_ledger_checkpoint (id INT PRIMARY KEY, last_sequence BIGINT NOT NULL)");
+        return dataSource;
+    }
+
+    static void insertProduct(JdbcTemplate jdbcTemplate, long id, int stock) {
+        jdbcTemplate.update("INSERT INTO products (id, name, price, stock, category) VALUES (?, ?, 10.00, ?, 'test')",
+                id, "Sản phẩm " + id, stock);
+    }
+
+    static int stock(JdbcTemplate jdbcTemplate, long id) {
+        return jdbcTemplate.queryForObject("SELECT stock FROM products WHERE id = ?", Integer.class, id);
+    }
+}